@@ -9,10 +9,31 @@ import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import com.vinylsystem.common.JsonUtils;
 import com.vinylsystem.common.LookupMessage;
+import com.vinylsystem.common.MusicArtist;
+import com.vinylsystem.common.MusicRelease;
+import com.vinylsystem.common.MusicSearchRequest;
+import com.vinylsystem.common.MusicSearchResponse;
 import com.vinylsystem.common.ProtocolConstants;
+import com.vinylsystem.common.ResponseFraming;
 import com.vinylsystem.common.ResponseMessage;
 import com.vinylsystem.common.StatusCodes;
 import com.vinylsystem.common.ValidationUtils;
@@ -21,6 +42,10 @@ import com.vinylsystem.common.ValidationUtils;
  * Vinyl Client for directory lookups and server connections
  */
 public class VinylClient {
+    // Matches result rows produced by VinylServer: "1. Artist - Title (Year) [Format] [ID: 123]"
+    private static final Pattern RESULT_LINE = Pattern.compile(
+        "^\\d+\\. (.*?) - (.*) \\((.*?)\\) \\[(.*?)\\] \\[ID: (.*?)\\]$");
+    
     private final String directoryIP;
     private final int directoryUdpPort;
     
@@ -42,14 +67,79 @@ public class VinylClient {
             throw new IllegalArgumentException("Invalid server name format. Expected: <string>.group#.pro2[x|y]");
         }
         
+        // Create lookup message
+        LookupMessage message = new LookupMessage(ProtocolConstants.MSG_LOOKUP, serverName);
+        
+        System.out.println("Looking up server: " + serverName);
+        String responseJson = sendLookupRequest(JsonUtils.toJson(message), ProtocolConstants.MAX_MESSAGE_SIZE);
+        
+        // Parse response
+        try {
+            ResponseMessage response = JsonUtils.parseResponseMessage(responseJson);
+            
+            if (StatusCodes.SUCCESS.equals(response.getStatusCode())) {
+                if (response.getServerIP() != null && response.getServerPort() != null) {
+                    return new ServerInfo(serverName, response.getServerIP(), response.getServerPort());
+                } else {
+                    throw new IOException("Invalid server information in response");
+                }
+            } else {
+                throw new ServerNotFoundException("Server lookup failed: " + response.getMessage() + 
+                                                " (Status: " + response.getStatusCode() + ")");
+            }
+            
+        } catch (Exception e) {
+            throw new IOException("Invalid response format from directory: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Lookup every live server in a group, e.g. *.group1.pro2x
+     */
+    public List<ServerInfo> lookupGroup(String groupPattern) throws IOException {
+        if (!ValidationUtils.isValidGroupPattern(groupPattern)) {
+            throw new IllegalArgumentException("Invalid group pattern format. Expected: *.group#.pro2[x|y]");
+        }
+        
+        LookupMessage message = new LookupMessage(ProtocolConstants.MSG_LOOKUP_GROUP, groupPattern);
+        
+        System.out.println("Looking up group: " + groupPattern);
+        String responseJson = sendLookupRequest(JsonUtils.toJson(message), ProtocolConstants.MAX_GROUP_RESPONSE_SIZE);
+        
+        ResponseMessage response = JsonUtils.parseResponseMessage(responseJson);
+        if (!StatusCodes.SUCCESS.equals(response.getStatusCode())) {
+            throw new ServerNotFoundException("Group lookup failed: " + response.getMessage() +
+                                            " (Status: " + response.getStatusCode() + ")");
+        }
+        if (response.getServers() == null) {
+            throw new IOException("Invalid group information in response");
+        }
+        
+        List<ServerInfo> servers = new ArrayList<>();
+        for (String entry : response.getServers()) {
+            int at = entry.lastIndexOf('@');
+            int colon = entry.lastIndexOf(':');
+            if (at <= 0 || colon < at) {
+                System.err.println("Skipping malformed group entry: " + entry);
+                continue;
+            }
+            try {
+                servers.add(new ServerInfo(entry.substring(0, at), entry.substring(at + 1, colon),
+                                           Integer.parseInt(entry.substring(colon + 1))));
+            } catch (NumberFormatException e) {
+                System.err.println("Skipping malformed group entry: " + entry);
+            }
+        }
+        return servers;
+    }
+    
+    /**
+     * Send a lookup datagram to the directory and return the raw JSON reply
+     */
+    private String sendLookupRequest(String jsonMessage, int responseBufferSize) throws IOException {
         try (DatagramSocket socket = new DatagramSocket()) {
             socket.setSoTimeout(ProtocolConstants.SOCKET_TIMEOUT);
             
-            // Create lookup message
-            LookupMessage message = new LookupMessage(ProtocolConstants.MSG_LOOKUP, serverName);
-            String jsonMessage = JsonUtils.toJson(message);
-            
-            System.out.println("Looking up server: " + serverName);
             System.out.println("Sending lookup request: " + jsonMessage);
             
             // Send lookup request
@@ -62,31 +152,13 @@ public class VinylClient {
             socket.send(requestPacket);
             
             // Receive response
-            byte[] responseBuffer = new byte[ProtocolConstants.MAX_MESSAGE_SIZE];
+            byte[] responseBuffer = new byte[responseBufferSize];
             DatagramPacket responsePacket = new DatagramPacket(responseBuffer, responseBuffer.length);
             socket.receive(responsePacket);
             
             String responseJson = new String(responsePacket.getData(), 0, responsePacket.getLength());
             System.out.println("Directory response: " + responseJson);
-            
-            // Parse response
-            try {
-                ResponseMessage response = JsonUtils.parseResponseMessage(responseJson);
-                
-                if (StatusCodes.SUCCESS.equals(response.getStatusCode())) {
-                    if (response.getServerIP() != null && response.getServerPort() != null) {
-                        return new ServerInfo(serverName, response.getServerIP(), response.getServerPort());
-                    } else {
-                        throw new IOException("Invalid server information in response");
-                    }
-                } else {
-                    throw new ServerNotFoundException("Server lookup failed: " + response.getMessage() + 
-                                                    " (Status: " + response.getStatusCode() + ")");
-                }
-                
-            } catch (Exception e) {
-                throw new IOException("Invalid response format from directory: " + e.getMessage());
-            }
+            return responseJson;
         }
     }
     
@@ -126,13 +198,213 @@ public class VinylClient {
             System.out.println("Sending message: " + message);
             writer.println(message);
             
-            String response = reader.readLine();
+            String response = ResponseFraming.readResponse(reader);
             System.out.println("Server response: " + response);
             
             return response;
         }
     }
     
+    /**
+     * Send a structured SEARCH_MUSIC request and parse the typed response
+     * @param searchType one of the ProtocolConstants.SEARCH_TYPE_* values
+     */
+    public MusicSearchResponse searchMusic(String serverName, String searchType, String query, int limit) throws IOException {
+        MusicSearchRequest request = new MusicSearchRequest(ProtocolConstants.MSG_SEARCH_MUSIC, query, searchType, limit);
+        String response = sendMessage(serverName, JsonUtils.toJson(request));
+        if (response == null) {
+            throw new IOException("Server closed connection without response");
+        }
+        if (response.startsWith(ProtocolConstants.BUSY_PREFIX)) {
+            return new MusicSearchResponse(ProtocolConstants.MSG_MUSIC_RESPONSE, StatusCodes.BUSY, response);
+        }
+        return JsonUtils.parseMusicSearchResponse(response);
+    }
+    
+    /**
+     * Search every server in a group in parallel and merge the results.
+     * Servers that fail or miss the global deadline are reported instead of failing the search.
+     */
+    public FederatedSearchResult federatedSearch(String groupPattern, String query, long timeoutMillis) throws IOException {
+        long startTime = System.nanoTime();
+        long deadline = startTime + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        
+        List<ServerInfo> servers = lookupGroup(groupPattern);
+        FederatedSearchResult result = new FederatedSearchResult(query);
+        if (servers.isEmpty()) {
+            return result;
+        }
+        
+        System.out.println("Federated search for '" + query + "' across " + servers.size() + " servers");
+        
+        int threads = Math.min(servers.size(), ProtocolConstants.FEDERATED_SEARCH_MAX_THREADS);
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "federated-search");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        try {
+            Map<ServerInfo, Future<List<MusicRelease>>> pending = new LinkedHashMap<>();
+            for (ServerInfo server : servers) {
+                pending.put(server, pool.submit(() -> searchServer(server, query, deadline)));
+            }
+            
+            List<List<MusicRelease>> responses = new ArrayList<>();
+            for (Map.Entry<ServerInfo, Future<List<MusicRelease>>> entry : pending.entrySet()) {
+                String name = entry.getKey().getName();
+                Future<List<MusicRelease>> future = entry.getValue();
+                try {
+                    long remaining = deadline - System.nanoTime();
+                    responses.add(future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS));
+                    result.addRespondedServer(name);
+                } catch (TimeoutException e) {
+                    future.cancel(true);
+                    result.addFailedServer(name, "deadline exceeded");
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    result.addFailedServer(name, cause.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    future.cancel(true);
+                    result.addFailedServer(name, "interrupted");
+                }
+            }
+            
+            result.setReleases(mergeResults(responses));
+        } finally {
+            pool.shutdownNow();
+        }
+        
+        result.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        return result;
+    }
+    
+    /**
+     * Send a single search to one server, bounded by the federated deadline
+     */
+    private List<MusicRelease> searchServer(ServerInfo server, String query, long deadline) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(server.getIp(), server.getPort()), remainingMillis(deadline));
+            socket.setSoTimeout(remainingMillis(deadline));
+            
+            PrintWriter writer = new PrintWriter(socket.getOutputStream(), true);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            
+            writer.println(query);
+            
+            List<MusicRelease> releases = new ArrayList<>();
+            String[] error = new String[1];
+            boolean received = ResponseFraming.readResponse(reader, line -> {
+                MusicRelease release = parseResultLine(line);
+                if (release != null) {
+                    releases.add(release);
+                } else if (line.startsWith("Error") || line.startsWith("ERROR")
+                           || line.startsWith(ProtocolConstants.BUSY_PREFIX)) {
+                    error[0] = line;
+                }
+            });
+            if (!received) {
+                throw new IOException("Server closed connection without response");
+            }
+            if (error[0] != null) {
+                throw new IOException(error[0]);
+            }
+            return releases;
+        }
+    }
+    
+    /**
+     * Fetch one page of search results, handing each release over as soon as its line arrives
+     * @param cursor "Next cursor" of the previous page, or null for the first page
+     * @return cursor of the following page, or null if this was the last one
+     */
+    public String searchPage(ServerInfo server, String query, int pageSize, String cursor,
+                             Consumer<MusicRelease> onResult) throws IOException {
+        try (Socket socket = connectToServer(server);
+             PrintWriter writer = new PrintWriter(socket.getOutputStream(), true);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
+            
+            socket.setSoTimeout(ProtocolConstants.SOCKET_TIMEOUT);
+            writer.println(query + " limit:" + pageSize + (cursor != null ? " cursor:" + cursor : ""));
+            
+            String[] next = new String[1];
+            String[] error = new String[1];
+            boolean received = ResponseFraming.readResponse(reader, line -> {
+                MusicRelease release = parseResultLine(line);
+                if (release != null) {
+                    onResult.accept(release);
+                } else if (line.startsWith(ProtocolConstants.NEXT_CURSOR_PREFIX)) {
+                    next[0] = line.substring(ProtocolConstants.NEXT_CURSOR_PREFIX.length()).trim();
+                } else if (line.startsWith("Error") || line.startsWith("ERROR")
+                           || line.startsWith(ProtocolConstants.BUSY_PREFIX)) {
+                    error[0] = line;
+                }
+            });
+            if (!received) {
+                throw new IOException("Server closed connection without response");
+            }
+            if (error[0] != null) {
+                throw new IOException(error[0]);
+            }
+            return next[0];
+        }
+    }
+    
+    private static int remainingMillis(long deadline) throws SocketTimeoutException {
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remaining <= 0) {
+            throw new SocketTimeoutException("Federated search deadline exceeded");
+        }
+        return (int) Math.min(remaining, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Parse one result row of a vinyl server search response
+     */
+    static MusicRelease parseResultLine(String line) {
+        Matcher matcher = RESULT_LINE.matcher(line.trim());
+        if (!matcher.matches()) {
+            return null;
+        }
+        MusicRelease release = new MusicRelease();
+        release.setArtist(matcher.group(1));
+        release.setTitle(matcher.group(2));
+        release.setYear(matcher.group(3));
+        release.setFormat(matcher.group(4));
+        String id = matcher.group(5);
+        release.setId("-".equals(id) ? null : id);
+        return release;
+    }
+    
+    /**
+     * Interleave per-server results by rank and drop duplicates by Discogs release ID
+     */
+    static List<MusicRelease> mergeResults(List<List<MusicRelease>> responses) {
+        Map<String, MusicRelease> merged = new LinkedHashMap<>();
+        int maxSize = 0;
+        for (List<MusicRelease> releases : responses) {
+            maxSize = Math.max(maxSize, releases.size());
+        }
+        
+        for (int rank = 0; rank < maxSize; rank++) {
+            for (List<MusicRelease> releases : responses) {
+                if (rank < releases.size()) {
+                    MusicRelease release = releases.get(rank);
+                    merged.putIfAbsent(dedupeKey(release), release);
+                }
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
+    
+    private static String dedupeKey(MusicRelease release) {
+        if (release.getId() != null) {
+            return "id:" + release.getId();
+        }
+        return ("row:" + release.getArtist() + "|" + release.getTitle() + "|" + release.getYear()).toLowerCase(Locale.ROOT);
+    }
+    
     /**
      * Interactive client session
      */
@@ -147,19 +419,36 @@ public class VinylClient {
             
             socket.setSoTimeout(0); // No timeout for interactive session
             
-            System.out.println("Connected! Type messages (or 'quit' to exit):");
+            System.out.println("Connected! Type messages, 'more' for the next page (or 'quit' to exit):");
             
+            String lastQuery = null;
+            String[] nextCursor = new String[1];
             String userInput;
             while ((userInput = consoleReader.readLine()) != null) {
                 if ("quit".equalsIgnoreCase(userInput.trim())) {
                     break;
                 }
+                if ("more".equalsIgnoreCase(userInput.trim())) {
+                    if (nextCursor[0] == null) {
+                        System.out.println("No more results");
+                        continue;
+                    }
+                    userInput = lastQuery + " cursor:" + nextCursor[0];
+                } else {
+                    lastQuery = userInput;
+                }
                 
                 writer.println(userInput);
-                String response = reader.readLine();
-                if (response != null) {
-                    System.out.println("Server: " + response);
-                } else {
+                nextCursor[0] = null;
+                System.out.println("Server:");
+                // Print streamed results as they arrive
+                boolean received = ResponseFraming.readResponse(reader, line -> {
+                    System.out.println(line);
+                    if (line.startsWith(ProtocolConstants.NEXT_CURSOR_PREFIX)) {
+                        nextCursor[0] = line.substring(ProtocolConstants.NEXT_CURSOR_PREFIX.length()).trim();
+                    }
+                });
+                if (!received) {
                     System.out.println("Server disconnected");
                     break;
                 }
@@ -193,6 +482,46 @@ public class VinylClient {
         }
     }
     
+    /**
+     * Merged outcome of a federated search, including servers that did not answer in time
+     */
+    public static class FederatedSearchResult {
+        private final String query;
+        private List<MusicRelease> releases = Collections.emptyList();
+        private final List<String> respondedServers = new ArrayList<>();
+        private final Map<String, String> failedServers = new LinkedHashMap<>();
+        private long elapsedMillis;
+        
+        public FederatedSearchResult(String query) {
+            this.query = query;
+        }
+        
+        public String getQuery() { return query; }
+        
+        public List<MusicRelease> getReleases() { return releases; }
+        public void setReleases(List<MusicRelease> releases) { this.releases = releases; }
+        
+        public List<String> getRespondedServers() { return respondedServers; }
+        public void addRespondedServer(String name) { respondedServers.add(name); }
+        
+        public Map<String, String> getFailedServers() { return failedServers; }
+        public void addFailedServer(String name, String reason) { failedServers.put(name, reason); }
+        
+        public long getElapsedMillis() { return elapsedMillis; }
+        public void setElapsedMillis(long elapsedMillis) { this.elapsedMillis = elapsedMillis; }
+        
+        public boolean isPartial() {
+            return !failedServers.isEmpty();
+        }
+        
+        @Override
+        public String toString() {
+            return "FederatedSearchResult{query='" + query + "', releases=" + releases.size() +
+                   ", responded=" + respondedServers.size() + ", failed=" + failedServers.size() +
+                   ", elapsedMillis=" + elapsedMillis + "}";
+        }
+    }
+    
     /**
      * Exception for server not found
      */
@@ -208,8 +537,10 @@ public class VinylClient {
     public static void main(String[] args) {
         if (args.length < 1) {
             System.err.println("Usage: java VinylClient <server-name> [directory-ip] [directory-port] [mode]");
-            System.err.println("Modes: lookup, connect, message <text>, interactive");
+            System.err.println("Modes: lookup, connect, message <text>, interactive, federated <query>,");
+            System.err.println("       music <release|artist|release_id> <query>");
             System.err.println("Example: java VinylClient myserver.group1.pro2x localhost 8081 interactive");
+            System.err.println("Example: java VinylClient *.group1.pro2x localhost 8081 federated \"Pink Floyd\"");
             System.exit(1);
         }
         
@@ -245,6 +576,41 @@ public class VinylClient {
                     client.startInteractiveSession(serverName);
                     break;
                     
+                case "federated":
+                    String query = args.length > 4 ? args[4] : "Pink Floyd";
+                    FederatedSearchResult result = client.federatedSearch(
+                        serverName, query, ProtocolConstants.FEDERATED_SEARCH_TIMEOUT);
+                    System.out.println("Federated results for '" + query + "' (" + result.getReleases().size() +
+                                       " unique releases, " + result.getElapsedMillis() + " ms):");
+                    for (int i = 0; i < result.getReleases().size(); i++) {
+                        MusicRelease release = result.getReleases().get(i);
+                        System.out.println((i + 1) + ". " + release.getArtist() + " - " + release.getTitle() +
+                                           " (" + release.getYear() + ") [ID: " + release.getId() + "]");
+                    }
+                    System.out.println("Responded: " + result.getRespondedServers());
+                    if (result.isPartial()) {
+                        System.out.println("Partial results, unavailable servers: " + result.getFailedServers());
+                    }
+                    break;
+                    
+                case "music":
+                    String searchType = args.length > 4 ? args[4] : ProtocolConstants.SEARCH_TYPE_RELEASE;
+                    String musicQuery = args.length > 5 ? args[5] : "Pink Floyd";
+                    MusicSearchResponse music = client.searchMusic(
+                        serverName, searchType, musicQuery, ProtocolConstants.DEFAULT_SEARCH_PAGE_SIZE);
+                    System.out.println(music);
+                    if (music.getResults() != null) {
+                        for (MusicRelease release : music.getResults()) {
+                            System.out.println("  " + release);
+                        }
+                    }
+                    if (music.getArtists() != null) {
+                        for (MusicArtist artist : music.getArtists()) {
+                            System.out.println("  " + artist);
+                        }
+                    }
+                    break;
+                    
                 default:
                     System.err.println("Unknown mode: " + mode);
                     System.exit(1);
@@ -0,0 +1,162 @@
+package com.vinylsystem.common;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Serves searches and release details from the memory and disk caches and fills
+ * them from the providers behind it on a miss. Artist searches are not cached.
+ *
+ * Searches use stale-while-revalidate: an expired result that is still within the
+ * cache's stale window is answered at once, marked stale, while one background
+ * refresh per query asks the providers behind. If they are down, the stale result
+ * keeps being served until the refresh succeeds or the stale window ends.
+ */
+public class CachedCatalogProvider implements MusicCatalogProvider {
+    private final SearchResultCache searchCache;
+    private final ReleaseDetailCache releaseCache;
+    private final MusicCatalogProvider delegate;
+    private final ThreadPoolExecutor refresher;
+    // Cache keys with a refresh queued or running
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    public CachedCatalogProvider(SearchResultCache searchCache, ReleaseDetailCache releaseCache,
+                                 MusicCatalogProvider delegate) {
+        this.searchCache = searchCache;
+        this.releaseCache = releaseCache;
+        this.delegate = delegate;
+        this.refresher = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(ProtocolConstants.CACHE_REFRESH_QUEUE_SIZE), runnable -> {
+                Thread thread = new Thread(runnable, "cache-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.refresher.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public String getName() {
+        return "cache -> " + delegate.getName();
+    }
+
+    @Override
+    public DiscogsSearchResult searchReleaseResults(String query, int limit, DiscogsRateLimiter.Priority priority)
+        throws IOException {
+        List<MusicRelease> results = searchCache.get(query, limit);
+        if (results != null) {
+            return new DiscogsSearchResult(results, results.size());
+        }
+        results = searchCache.getStale(query, limit);
+        if (results != null) {
+            refresh(SearchResultCache.cacheKey(query, limit), () -> {
+                DiscogsSearchResult fresh = delegate.searchReleaseResults(query, limit, priority);
+                if (fresh != null && !fresh.isStale()) {
+                    searchCache.put(query, limit, fresh.getResults());
+                }
+            });
+            return staleResult(results, 0, 0);
+        }
+        DiscogsSearchResult result = delegate.searchReleaseResults(query, limit, priority);
+        if (result != null && !result.isStale()) {
+            result.setResults(searchCache.put(query, limit, result.getResults()));
+        }
+        return result;
+    }
+
+    /**
+     * A cached page reports no page count; callers treat a short page as the last one
+     */
+    @Override
+    public DiscogsSearchResult searchReleasesPage(String query, int page, int perPage, DiscogsRateLimiter.Priority priority,
+                                                  Consumer<MusicRelease> consumer) throws IOException {
+        List<MusicRelease> releases = searchCache.getPage(query, page, perPage);
+        if (releases != null) {
+            releases.forEach(consumer);
+            DiscogsSearchResult result = new DiscogsSearchResult(releases, 0);
+            result.setPage(page);
+            result.setPerPage(perPage);
+            return result;
+        }
+        releases = searchCache.getStalePage(query, page, perPage);
+        if (releases != null) {
+            refresh(SearchResultCache.pageKey(query, page, perPage), () -> {
+                DiscogsSearchResult fresh = delegate.searchReleasesPage(query, page, perPage, priority, release -> { });
+                if (fresh != null && !fresh.isStale()) {
+                    searchCache.putPage(query, page, perPage, fresh.getResults());
+                }
+            });
+            releases.forEach(consumer);
+            return staleResult(releases, page, perPage);
+        }
+        DiscogsSearchResult result = delegate.searchReleasesPage(query, page, perPage, priority, consumer);
+        if (result != null && !result.isStale()) {
+            searchCache.putPage(query, page, perPage, result.getResults());
+        }
+        return result;
+    }
+
+    @Override
+    public List<MusicArtist> searchArtists(String artistName, int limit) throws IOException {
+        return delegate.searchArtists(artistName, limit);
+    }
+
+    @Override
+    public MusicRelease getRelease(String releaseId, DiscogsRateLimiter.Priority priority) throws IOException {
+        MusicRelease release = releaseCache.get(releaseId);
+        if (release == null) {
+            release = delegate.getRelease(releaseId, priority);
+            if (release != null) {
+                releaseCache.put(releaseId, release);
+            }
+        }
+        return release;
+    }
+
+    @Override
+    public int getAvailableRequests() {
+        return delegate.getAvailableRequests();
+    }
+
+    private static DiscogsSearchResult staleResult(List<MusicRelease> releases, int page, int perPage) {
+        DiscogsSearchResult result = new DiscogsSearchResult(releases, page > 0 ? 0 : releases.size());
+        result.setPage(page);
+        result.setPerPage(perPage);
+        result.setStale(true);
+        return result;
+    }
+
+    /**
+     * Run a refresh in the background unless one for the key is already pending.
+     * Refreshes that do not fit in the queue are dropped; the next stale hit retries.
+     */
+    private void refresh(String key, Refresh refresh) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+        try {
+            refresher.execute(() -> {
+                try {
+                    refresh.run();
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Background refresh of " + key + " failed: " + e.getMessage());
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(key);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Refresh {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,83 @@
+package com.vinylsystem.common;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * An immutable list of releases held by the {@link SearchResultCache}. It can also hold
+ * the encoded responses a server built from it, keyed by format and request, so answering
+ * the same request from the same cached results again needs no formatting or encoding.
+ * A refreshed result is a new list, so its responses are encoded afresh.
+ *
+ * The releases are kept in a {@link CompactReleaseStore} and read as
+ * {@link CompactRelease} views.
+ */
+public class CachedReleaseList extends AbstractList<MusicRelease> implements RandomAccess {
+    // Request variants kept per list; further ones are encoded on every hit
+    private static final int MAX_ENCODED_RESPONSES = 4;
+
+    private final CompactReleaseStore releases;
+    private final Map<String, ByteBuffer> encoded = new ConcurrentHashMap<>(4);
+    private final AtomicLong encodedBytes = new AtomicLong();
+    private final Consumer<CachedReleaseList> onEncoded;
+
+    public CachedReleaseList(List<MusicRelease> releases) {
+        this(releases, null);
+    }
+
+    /**
+     * @param onEncoded called after an encoded response was kept, so the holder can weigh
+     *                  the list again; may be null
+     */
+    CachedReleaseList(List<MusicRelease> releases, Consumer<CachedReleaseList> onEncoded) {
+        this.onEncoded = onEncoded;
+        this.releases = new CompactReleaseStore(releases.size());
+        for (MusicRelease release : releases) {
+            this.releases.add(release);
+        }
+        this.releases.trimToSize();
+    }
+
+    @Override
+    public MusicRelease get(int index) {
+        return releases.get(index);
+    }
+
+    @Override
+    public int size() {
+        return releases.size();
+    }
+
+    /**
+     * Approximate memory held by the releases and the encoded responses kept with them
+     */
+    public long memoryBytes() {
+        return releases.memoryBytes() + encodedBytes.get();
+    }
+
+    /**
+     * A private view of the response stored for the key, or null
+     */
+    public ByteBuffer getEncoded(String key) {
+        ByteBuffer bytes = encoded.get(key);
+        return bytes != null ? bytes.duplicate() : null;
+    }
+
+    /**
+     * Keep an encoded response; the buffer must not be changed afterwards
+     */
+    public void putEncoded(String key, ByteBuffer bytes) {
+        if (encoded.size() < MAX_ENCODED_RESPONSES && encoded.putIfAbsent(key, bytes.asReadOnlyBuffer()) == null) {
+            encodedBytes.addAndGet(bytes.remaining());
+            if (onEncoded != null) {
+                onEncoded.accept(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.vinylsystem.common;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Asks a list of providers in order and returns the first answer. A provider that
+ * returns null or fails is skipped; if every provider fails, the last failure is thrown.
+ */
+public class CatalogProviderChain implements MusicCatalogProvider {
+    private final List<MusicCatalogProvider> providers;
+
+    public CatalogProviderChain(List<MusicCatalogProvider> providers) {
+        if (providers.isEmpty()) {
+            throw new IllegalArgumentException("A catalog provider chain needs at least one provider");
+        }
+        this.providers = List.copyOf(providers);
+    }
+
+    public List<MusicCatalogProvider> getProviders() {
+        return providers;
+    }
+
+    @Override
+    public String getName() {
+        StringBuilder name = new StringBuilder();
+        for (MusicCatalogProvider provider : providers) {
+            if (name.length() > 0) name.append(" -> ");
+            name.append(provider.getName());
+        }
+        return name.toString();
+    }
+
+    @Override
+    public DiscogsSearchResult searchReleaseResults(String query, int limit, DiscogsRateLimiter.Priority priority)
+        throws IOException {
+        return first(provider -> provider.searchReleaseResults(query, limit, priority));
+    }
+
+    @Override
+    public DiscogsSearchResult searchReleasesPage(String query, int page, int perPage, DiscogsRateLimiter.Priority priority,
+                                                  Consumer<MusicRelease> consumer) throws IOException {
+        return first(provider -> provider.searchReleasesPage(query, page, perPage, priority, consumer));
+    }
+
+    @Override
+    public List<MusicArtist> searchArtists(String artistName, int limit) throws IOException {
+        return first(provider -> provider.searchArtists(artistName, limit));
+    }
+
+    @Override
+    public MusicRelease getRelease(String releaseId, DiscogsRateLimiter.Priority priority) throws IOException {
+        return first(provider -> provider.getRelease(releaseId, priority));
+    }
+
+    /**
+     * The smallest budget of any provider, since a miss may fall through to it
+     */
+    @Override
+    public int getAvailableRequests() {
+        int available = Integer.MAX_VALUE;
+        for (MusicCatalogProvider provider : providers) {
+            available = Math.min(available, provider.getAvailableRequests());
+        }
+        return available;
+    }
+
+    private <T> T first(Lookup<T> lookup) throws IOException {
+        IOException failure = null;
+        for (MusicCatalogProvider provider : providers) {
+            try {
+                T answer = lookup.apply(provider);
+                if (answer != null) {
+                    return answer;
+                }
+            } catch (IOException e) {
+                System.err.println("Catalog provider " + provider.getName() + " failed: " + e.getMessage());
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return null;
+    }
+
+    @FunctionalInterface
+    private interface Lookup<T> {
+        T apply(MusicCatalogProvider provider) throws IOException;
+    }
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+}
@@ -0,0 +1,93 @@
+package com.vinylsystem.common;
+
+/**
+ * Stops calls to an upstream that keeps failing.
+ *
+ * After a run of consecutive failures the breaker opens and calls are refused
+ * for a cool-down period. Then a single trial call is let through (half-open):
+ * if it succeeds the breaker closes, otherwise it opens for another period.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openUntil;
+
+    private long opened;
+    private long rejected;
+
+    /**
+     * @param failureThreshold consecutive failures that open the breaker
+     * @param openMillis how long calls are refused before a trial call
+     */
+    public CircuitBreaker(String name, int failureThreshold, long openMillis) {
+        if (failureThreshold <= 0 || openMillis <= 0) {
+            throw new IllegalArgumentException("Circuit breaker threshold and open time must be positive");
+        }
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * Admit a call, or refuse it while the breaker is open. Once the cool-down has
+     * passed one caller is admitted as the trial; the others are refused until it reports.
+     * @throws UpstreamUnavailableException if the call must not be made
+     */
+    public synchronized void acquire() throws UpstreamUnavailableException {
+        if (state == State.CLOSED) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (now < openUntil) {
+            rejected++;
+            throw new UpstreamUnavailableException(name + " unavailable: circuit breaker open for another " +
+                                                   (openUntil - now) + " ms");
+        }
+        // Trial call; a trial that never reports frees the next one after another period
+        state = State.HALF_OPEN;
+        openUntil = now + openMillis;
+    }
+
+    public synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            System.out.println(name + " circuit breaker closed");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openUntil = System.currentTimeMillis() + openMillis;
+            opened++;
+            System.err.println(name + " circuit breaker opened after " + consecutiveFailures +
+                               " consecutive failures; retrying in " + openMillis + " ms");
+        }
+    }
+
+    /**
+     * Whether calls are currently refused
+     */
+    public synchronized boolean isOpen() {
+        return state != State.CLOSED && System.currentTimeMillis() < openUntil;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "state=" + state + ", consecutiveFailures=" + consecutiveFailures +
+               ", opened=" + opened + ", rejected=" + rejected;
+    }
+}
@@ -0,0 +1,99 @@
+package com.vinylsystem.common;
+
+/**
+ * View of one release in a {@link CompactReleaseStore}. Dictionary fields return shared
+ * strings, and text fields are decoded from the store on each call. The first setter call
+ * copies every field into this object, which from then on behaves as a plain
+ * {@link MusicRelease}; the store itself never changes.
+ */
+public class CompactRelease extends MusicRelease {
+    private final CompactReleaseStore store;
+    private final int doc;
+    private boolean detached;
+
+    CompactRelease(CompactReleaseStore store, int doc) {
+        this.store = store;
+        this.doc = doc;
+    }
+
+    /**
+     * A plain release holding all fields
+     */
+    public MusicRelease toMusicRelease() {
+        MusicRelease release = new MusicRelease(getId(), getTitle(), getArtist(), getYear());
+        release.setGenre(getGenre());
+        release.setStyle(getStyle());
+        release.setFormat(getFormat());
+        release.setLabel(getLabel());
+        release.setCatalogNumber(getCatalogNumber());
+        release.setCoverImage(getCoverImage());
+        release.setCountry(getCountry());
+        return release;
+    }
+
+    /**
+     * The year as a number, or 0 if it is missing or not numeric
+     */
+    public int getYearValue() {
+        if (!detached) {
+            return store.yearValue(doc);
+        }
+        // Same rule as the store: up to four digits without a leading zero
+        String year = super.getYear();
+        if (year == null || year.isEmpty() || year.length() > 4 || (year.length() > 1 && year.charAt(0) == '0')
+            || !year.chars().allMatch(c -> c >= '0' && c <= '9')) {
+            return 0;
+        }
+        return Integer.parseInt(year);
+    }
+
+    @Override public String getId() { return detached ? super.getId() : store.text(doc, CompactReleaseStore.ID); }
+    @Override public String getTitle() { return detached ? super.getTitle() : store.text(doc, CompactReleaseStore.TITLE); }
+    @Override public String getArtist() { return detached ? super.getArtist() : store.text(doc, CompactReleaseStore.ARTIST); }
+    @Override public String getYear() { return detached ? super.getYear() : store.year(doc); }
+    @Override public String getGenre() { return detached ? super.getGenre() : store.coded(doc, CompactReleaseStore.GENRE); }
+    @Override public String getStyle() { return detached ? super.getStyle() : store.coded(doc, CompactReleaseStore.STYLE); }
+    @Override public String getFormat() { return detached ? super.getFormat() : store.coded(doc, CompactReleaseStore.FORMAT); }
+    @Override public String getLabel() { return detached ? super.getLabel() : store.coded(doc, CompactReleaseStore.LABEL); }
+    @Override public String getCatalogNumber() { return detached ? super.getCatalogNumber() : store.text(doc, CompactReleaseStore.CATALOG_NUMBER); }
+    @Override public String getCoverImage() { return detached ? super.getCoverImage() : store.text(doc, CompactReleaseStore.COVER_IMAGE); }
+    @Override public String getCountry() { return detached ? super.getCountry() : store.coded(doc, CompactReleaseStore.COUNTRY); }
+
+    @Override public void setId(String id) { detach(); super.setId(id); }
+    @Override public void setTitle(String title) { detach(); super.setTitle(title); }
+    @Override public void setArtist(String artist) { detach(); super.setArtist(artist); }
+    @Override public void setYear(String year) { detach(); super.setYear(year); }
+    @Override public void setGenre(String genre) { detach(); super.setGenre(genre); }
+    @Override public void setStyle(String style) { detach(); super.setStyle(style); }
+    @Override public void setFormat(String format) { detach(); super.setFormat(format); }
+    @Override public void setLabel(String label) { detach(); super.setLabel(label); }
+    @Override public void setCatalogNumber(String catalogNumber) { detach(); super.setCatalogNumber(catalogNumber); }
+    @Override public void setCoverImage(String coverImage) { detach(); super.setCoverImage(coverImage); }
+    @Override public void setCountry(String country) { detach(); super.setCountry(country); }
+
+    /**
+     * Copies every field from the store into this object, once
+     */
+    private void detach() {
+        if (detached) {
+            return;
+        }
+        super.setId(getId());
+        super.setTitle(getTitle());
+        super.setArtist(getArtist());
+        super.setYear(getYear());
+        super.setGenre(getGenre());
+        super.setStyle(getStyle());
+        super.setFormat(getFormat());
+        super.setLabel(getLabel());
+        super.setCatalogNumber(getCatalogNumber());
+        super.setCoverImage(getCoverImage());
+        super.setCountry(getCountry());
+        detached = true;
+    }
+
+    @Override
+    public String toString() {
+        return toMusicRelease().toString();
+    }
+}
@@ -0,0 +1,334 @@
+package com.vinylsystem.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Column store of releases for caches and indexes. A release costs a few fixed-size
+ * slots instead of a MusicRelease with eleven String objects:
+ * <ul>
+ *   <li>genre, style, format, country and label as codes into per-store dictionaries,
+ *       so each distinct value is held once</li>
+ *   <li>the year as a short</li>
+ *   <li>ID, title, artist, catalog number and cover image as length-prefixed UTF-8,
+ *       one run per release, in shared byte slabs</li>
+ * </ul>
+ * Releases are read through {@link CompactRelease} views, which decode a field when it
+ * is asked for and copy themselves out of the store if a setter is called;
+ * {@link CompactRelease#toMusicRelease()} builds a plain copy.
+ *
+ * Releases are appended from one thread. Once filled and safely published, for example
+ * through a final field, a store may be read from any thread.
+ */
+public class CompactReleaseStore {
+    static final int GENRE = 0;
+    static final int STYLE = 1;
+    static final int FORMAT = 2;
+    static final int COUNTRY = 3;
+    static final int LABEL = 4;
+    private static final int CODED_FIELDS = 5;
+
+    static final int ID = 0;
+    static final int TITLE = 1;
+    static final int ARTIST = 2;
+    static final int CATALOG_NUMBER = 3;
+    static final int COVER_IMAGE = 4;
+    private static final int TEXT_FIELDS = 5;
+
+    private static final short NO_YEAR = Short.MIN_VALUE;
+    private static final short IRREGULAR_YEAR = Short.MIN_VALUE + 1;
+    private static final int MIN_SLAB = 256;
+    private static final int MAX_SLAB = 1 << 20;
+
+    private final Dictionary[] dictionaries = new Dictionary[CODED_FIELDS];
+    // Per field, dictionary code + 1 per release; 0 for null
+    private final int[][] codes = new int[CODED_FIELDS][];
+    private short[] years;
+    // Years that do not round-trip through a short, such as "1970s"
+    private Map<Integer, String> irregularYears;
+    // Slab index << 32 | offset of each release's text fields
+    private long[] textOffsets;
+    private final List<byte[]> slabs = new ArrayList<>();
+    private byte[] slab;
+    private int slabPosition;
+    private long slabBytes;
+    private int size;
+
+    public CompactReleaseStore() {
+        this(16);
+    }
+
+    /**
+     * @param expectedReleases initial capacity
+     */
+    public CompactReleaseStore(int expectedReleases) {
+        int capacity = Math.max(1, expectedReleases);
+        for (int f = 0; f < CODED_FIELDS; f++) {
+            dictionaries[f] = new Dictionary();
+            codes[f] = new int[capacity];
+        }
+        years = new short[capacity];
+        textOffsets = new long[capacity];
+    }
+
+    /**
+     * Append a release
+     * @return its position in the store
+     */
+    public int add(MusicRelease release) {
+        if (size == years.length) {
+            grow();
+        }
+        int doc = size;
+        codes[GENRE][doc] = dictionaries[GENRE].code(release.getGenre());
+        codes[STYLE][doc] = dictionaries[STYLE].code(release.getStyle());
+        codes[FORMAT][doc] = dictionaries[FORMAT].code(release.getFormat());
+        codes[COUNTRY][doc] = dictionaries[COUNTRY].code(release.getCountry());
+        codes[LABEL][doc] = dictionaries[LABEL].code(release.getLabel());
+        years[doc] = encodeYear(doc, release.getYear());
+
+        byte[][] text = {
+            utf8(release.getId()), utf8(release.getTitle()), utf8(release.getArtist()),
+            utf8(release.getCatalogNumber()), utf8(release.getCoverImage())
+        };
+        int length = 0;
+        for (byte[] value : text) {
+            length += value == null ? 1 : varIntSize(value.length + 1) + value.length;
+        }
+        reserve(length);
+        textOffsets[doc] = (long) (slabs.size() - 1) << 32 | slabPosition;
+        for (byte[] value : text) {
+            if (value == null) {
+                slab[slabPosition++] = 0;
+            } else {
+                slabPosition = writeVarInt(slab, slabPosition, value.length + 1);
+                System.arraycopy(value, 0, slab, slabPosition, value.length);
+                slabPosition += value.length;
+            }
+        }
+        size++;
+        return doc;
+    }
+
+    /**
+     * A view of the release at a position
+     */
+    public CompactRelease get(int doc) {
+        if (doc < 0 || doc >= size) {
+            throw new IndexOutOfBoundsException("Release " + doc + " of " + size);
+        }
+        return new CompactRelease(this, doc);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Release the spare capacity of a store that is complete
+     */
+    public void trimToSize() {
+        for (int f = 0; f < CODED_FIELDS; f++) {
+            codes[f] = Arrays.copyOf(codes[f], size);
+            dictionaries[f].trim();
+        }
+        years = Arrays.copyOf(years, size);
+        textOffsets = Arrays.copyOf(textOffsets, size);
+        if (slab != null && slabPosition < slab.length) {
+            slabBytes -= slab.length - slabPosition;
+            slab = Arrays.copyOf(slab, slabPosition);
+            slabs.set(slabs.size() - 1, slab);
+        }
+    }
+
+    /**
+     * Approximate heap held by the store
+     */
+    public long memoryBytes() {
+        long bytes = 64 + slabBytes + 16L * slabs.size();
+        bytes += (long) years.length * (2 + 8 + 4 * CODED_FIELDS);
+        for (Dictionary dictionary : dictionaries) {
+            bytes += dictionary.memoryBytes();
+        }
+        if (irregularYears != null) {
+            bytes += irregularYears.size() * 64L;
+        }
+        return bytes;
+    }
+
+    String coded(int doc, int field) {
+        int code = codes[field][doc];
+        return code == 0 ? null : dictionaries[field].value(code - 1);
+    }
+
+    String text(int doc, int field) {
+        long offset = textOffsets[doc];
+        byte[] bytes = slabs.get((int) (offset >>> 32));
+        int position = (int) offset;
+        for (int f = 0; ; f++) {
+            int length = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                length |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            if (f == field) {
+                return length == 0 ? null : new String(bytes, position, length - 1, StandardCharsets.UTF_8);
+            }
+            position += Math.max(0, length - 1);
+        }
+    }
+
+    String year(int doc) {
+        short year = years[doc];
+        if (year == NO_YEAR) return null;
+        if (year == IRREGULAR_YEAR) return irregularYears.get(doc);
+        return Integer.toString(year);
+    }
+
+    /**
+     * The year as a number, or 0 if it is missing or not numeric
+     */
+    int yearValue(int doc) {
+        short year = years[doc];
+        return year == NO_YEAR || year == IRREGULAR_YEAR ? 0 : year;
+    }
+
+    private short encodeYear(int doc, String year) {
+        if (year == null) {
+            return NO_YEAR;
+        }
+        if (!year.isEmpty() && year.length() <= 4 && year.chars().allMatch(c -> c >= '0' && c <= '9')
+            && (year.length() == 1 || year.charAt(0) != '0')) {
+            return Short.parseShort(year);
+        }
+        if (irregularYears == null) {
+            irregularYears = new HashMap<>();
+        }
+        irregularYears.put(doc, year);
+        return IRREGULAR_YEAR;
+    }
+
+    private void grow() {
+        // A trimmed empty store has no capacity left to double
+        int capacity = Math.max(years.length * 2, 1);
+        for (int f = 0; f < CODED_FIELDS; f++) {
+            codes[f] = Arrays.copyOf(codes[f], capacity);
+        }
+        years = Arrays.copyOf(years, capacity);
+        textOffsets = Arrays.copyOf(textOffsets, capacity);
+    }
+
+    /**
+     * Make room for one release's text in the current slab, starting a new slab if needed.
+     * Slabs double from MIN_SLAB up to MAX_SLAB, so small stores stay small.
+     */
+    private void reserve(int length) {
+        if (slab != null && slab.length - slabPosition >= length) {
+            return;
+        }
+        int next = slab == null ? MIN_SLAB : Math.min(MAX_SLAB, slab.length * 2);
+        slab = new byte[Math.max(next, length)];
+        slabPosition = 0;
+        slabs.add(slab);
+        slabBytes += slab.length;
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) size++;
+        return size;
+    }
+
+    private static int writeVarInt(byte[] bytes, int position, int value) {
+        while ((value & ~0x7f) != 0) {
+            bytes[position++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        return position;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("releases=%d, slabs=%d (%d KB), labels=%d, styles=%d, ~%d KB",
+                size, slabs.size(), slabBytes / 1024, dictionaries[LABEL].size(),
+                dictionaries[STYLE].size(), memoryBytes() / 1024);
+    }
+
+    /**
+     * Distinct values of one field. Small dictionaries are searched linearly, so stores
+     * of a few releases do not pay for a hash map.
+     */
+    private static class Dictionary {
+        private static final int LINEAR_LIMIT = 8;
+
+        private String[] values = new String[4];
+        private int size;
+        private Map<String, Integer> codes;
+
+        int code(String value) {
+            if (value == null) {
+                return 0;
+            }
+            if (codes != null) {
+                Integer code = codes.get(value);
+                if (code != null) return code + 1;
+            } else {
+                for (int i = 0; i < size; i++) {
+                    if (values[i].equals(value)) return i + 1;
+                }
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size] = value;
+            if (codes == null && size + 1 > LINEAR_LIMIT) {
+                codes = new HashMap<>();
+                for (int i = 0; i <= size; i++) {
+                    codes.put(values[i], i);
+                }
+            } else if (codes != null) {
+                codes.put(value, size);
+            }
+            return ++size;
+        }
+
+        String value(int code) {
+            return values[code];
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Drop the lookup map and spare slots; later appends rebuild the map if needed
+         */
+        void trim() {
+            values = Arrays.copyOf(values, Math.max(1, size));
+            codes = null;
+        }
+
+        long memoryBytes() {
+            long bytes = 32 + 8L * values.length;
+            for (int i = 0; i < size; i++) {
+                bytes += 48 + values[i].length();
+            }
+            if (codes != null) {
+                bytes += 48L * size;
+            }
+            return bytes;
+        }
+    }
+}
@@ -70,6 +70,31 @@ public class ConfigManager {
         return value;
     }
     
+    /**
+     * Get a numeric configuration value, falling back to the default if missing or malformed
+     */
+    public static long getLongConfig(String key, long defaultValue) {
+        String value = getConfig(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid numeric value for " + key + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+    
+    public static int getIntConfig(String key, int defaultValue) {
+        return (int) getLongConfig(key, defaultValue);
+    }
+    
+    public static boolean getBooleanConfig(String key, boolean defaultValue) {
+        String value = getConfig(key, null);
+        return value == null ? defaultValue : Boolean.parseBoolean(value);
+    }
+    
     // Discogs API specific getters
     public static String getDiscogsAccessToken() {
         return getConfig("discogs.access.token", null);
@@ -1,22 +1,54 @@
 package com.vinylsystem.common;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  * Service class for interacting with the Discogs API
  */
-public class DiscogsApiService {
+public class DiscogsApiService implements MusicCatalogProvider {
     private final String baseUrl;
     private final String accessToken;
     private final Map<String, String> defaultHeaders;
+    // Identical concurrent requests share one upstream call
+    private final SingleFlight<String> inFlightRequests = new SingleFlight<>();
+    private final DiscogsRateLimiter rateLimiter;
+    // Fails fast while Discogs keeps failing, and bounds the threads waiting on it
+    private final CircuitBreaker circuitBreaker;
+    private final Semaphore bulkhead;
+    private final int maxConcurrent;
+    private final long bulkheadWaitMillis;
+    private final long requestTimeoutMillis;
+    private final AtomicLong bulkheadRejections = new AtomicLong();
+    // Fetches the pages of searches with limits above one Discogs page concurrently
+    private final ParallelPageFetcher pageFetcher;
+    // Raw responses are saved here for ReplayCatalogProvider when set
+    private final Path recordDir;
     
     public DiscogsApiService() {
+        this(new ParallelPageFetcher(
+            ConfigManager.getIntConfig("discogs.page.parallelism", ProtocolConstants.DEFAULT_DISCOGS_PAGE_PARALLELISM),
+            ProtocolConstants.PAGE_FETCH_QUEUE_SIZE));
+    }
+    
+    /**
+     * @param pageFetcher pool for the pages of large searches, shared with the caller, which shuts it down
+     */
+    public DiscogsApiService(ParallelPageFetcher pageFetcher) {
         this.baseUrl = ConfigManager.getDiscogsBaseUrl();
         this.accessToken = ConfigManager.getDiscogsAccessToken();
+        String recordDir = ConfigManager.getConfig("discogs.record.dir", null);
+        this.recordDir = recordDir != null && !recordDir.isBlank() ? Paths.get(recordDir) : null;
         
         if (accessToken == null) {
             throw new IllegalStateException("Discogs access token is required. " +
@@ -28,29 +60,62 @@ public class DiscogsApiService {
         // Use the Personal Access Token in Authorization header
         this.defaultHeaders.put("Authorization", "Discogs token=" + accessToken);
         this.defaultHeaders.put("User-Agent", "VinylSystem/1.0 +https://github.com/Ghiyathali/VinylSystem");
+        
+        // Pace outbound requests to stay under the per-token budget
+        this.rateLimiter = new DiscogsRateLimiter(
+            ConfigManager.getIntConfig("discogs.rate.limit", ProtocolConstants.DEFAULT_DISCOGS_RATE_LIMIT),
+            ConfigManager.getIntConfig("discogs.rate.reserve", ProtocolConstants.DEFAULT_DISCOGS_RATE_RESERVE),
+            ConfigManager.getLongConfig("discogs.rate.max.wait.ms", ProtocolConstants.DEFAULT_DISCOGS_RATE_MAX_WAIT_MS));
+        
+        this.circuitBreaker = new CircuitBreaker("Discogs",
+            ConfigManager.getIntConfig("discogs.breaker.failures", ProtocolConstants.DEFAULT_DISCOGS_BREAKER_FAILURES),
+            ConfigManager.getLongConfig("discogs.breaker.open.ms", ProtocolConstants.DEFAULT_DISCOGS_BREAKER_OPEN_MS));
+        this.maxConcurrent = Math.max(1,
+            ConfigManager.getIntConfig("discogs.max.concurrent", ProtocolConstants.DEFAULT_DISCOGS_MAX_CONCURRENT));
+        this.bulkhead = new Semaphore(maxConcurrent);
+        this.bulkheadWaitMillis = ConfigManager.getLongConfig("discogs.bulkhead.wait.ms",
+                                                              ProtocolConstants.DEFAULT_DISCOGS_BULKHEAD_WAIT_MS);
+        this.requestTimeoutMillis = ConfigManager.getLongConfig("discogs.timeout.ms",
+                                                                ProtocolConstants.DEFAULT_DISCOGS_TIMEOUT_MS);
+        this.pageFetcher = pageFetcher;
+    }
+    
+    @Override
+    public String getName() {
+        return "discogs";
     }
     
     /**
      * Search for releases (albums/singles) by query
      * @param query Search query (artist, album, etc.)
-     * @param limit Maximum number of results (default 10, max 100)
+     * @param limit Maximum number of results (default 10); limits above one Discogs page
+     *              fetch the first page, then the remaining pages concurrently
      * @return List of matching music releases
      * @throws IOException If the API request fails
      */
     public List<MusicRelease> searchReleases(String query, int limit) throws IOException {
+        return searchReleases(query, limit, DiscogsRateLimiter.Priority.INTERACTIVE);
+    }
+    
+    /**
+     * Search for releases at the given scheduling priority
+     */
+    public List<MusicRelease> searchReleases(String query, int limit, DiscogsRateLimiter.Priority priority)
+        throws IOException {
         if (query == null || query.trim().isEmpty()) {
             throw new IllegalArgumentException("Search query cannot be empty");
         }
+        if (limit > ProtocolConstants.MAX_DISCOGS_PAGE_SIZE) {
+            return searchReleasePages(query, limit, priority);
+        }
         
         // Build API URL (use Authorization header instead of query parameter)
-        String encodedQuery = HttpClient.urlEncode(query.trim());
-        String url = String.format("%s/database/search?q=%s&type=release&per_page=%d",
-                baseUrl, encodedQuery, Math.min(limit, 100));
+        String url = searchUrl(baseUrl, query, limit);
         
         System.out.println("Discogs API Request: " + url);
         
         // Make API request
-        String response = HttpClient.get(url, defaultHeaders);
+        String response = fetch(url, priority);
         
         // Debug: Print more of response to see structure
         System.out.println("API Response preview: " + 
@@ -67,7 +132,49 @@ public class DiscogsApiService {
         }
         
         // Parse the response (simplified JSON parsing)
-        return parseSearchResponse(response);
+        return DiscogsJson.parseReleases(response, limit);
+    }
+    
+    private List<MusicRelease> searchReleasePages(String query, int limit, DiscogsRateLimiter.Priority priority)
+        throws IOException {
+        int perPage = ProtocolConstants.MAX_DISCOGS_PAGE_SIZE;
+        long start = System.nanoTime();
+        List<MusicRelease> releases = new ArrayList<>(limit);
+        DiscogsSearchResult result = pageFetcher.fetch(this, query, 1, (limit + perPage - 1) / perPage, perPage, priority, release -> {
+            if (releases.size() < limit) releases.add(release);
+        });
+        System.out.printf("Discogs search: %d results from %d pages in %.1f ms%n",
+                          releases.size(), result.getPage(), (System.nanoTime() - start) / 1e6);
+        return releases;
+    }
+    
+    /**
+     * Fetch one page of release search results, handing each release to the
+     * consumer as soon as it is parsed
+     * @param page 1-based Discogs page number
+     * @param perPage results per Discogs page (max 100)
+     * @return the page's releases and the pagination Discogs reports
+     * @throws IOException If the API request fails
+     */
+    @Override
+    public DiscogsSearchResult searchReleasesPage(String query, int page, int perPage, DiscogsRateLimiter.Priority priority,
+                                                  Consumer<MusicRelease> consumer) throws IOException {
+        if (query == null || query.trim().isEmpty()) {
+            throw new IllegalArgumentException("Search query cannot be empty");
+        }
+        int pageSize = Math.max(1, Math.min(perPage, ProtocolConstants.MAX_DISCOGS_PAGE_SIZE));
+        String url = pageUrl(baseUrl, query, page, pageSize);
+        
+        System.out.println("Discogs API Request: " + url);
+        
+        return DiscogsJson.parseReleasePage(fetch(url, priority), page, pageSize, consumer);
+    }
+    
+    @Override
+    public DiscogsSearchResult searchReleaseResults(String query, int limit, DiscogsRateLimiter.Priority priority)
+        throws IOException {
+        List<MusicRelease> releases = searchReleases(query, limit, priority);
+        return new DiscogsSearchResult(releases, releases.size());
     }
     
     /**
@@ -84,18 +191,26 @@ public class DiscogsApiService {
      * @throws IOException If the API request fails
      */
     public MusicRelease getRelease(String releaseId) throws IOException {
+        return getRelease(releaseId, DiscogsRateLimiter.Priority.INTERACTIVE);
+    }
+    
+    /**
+     * Get detailed information about a specific release at the given scheduling priority
+     */
+    @Override
+    public MusicRelease getRelease(String releaseId, DiscogsRateLimiter.Priority priority) throws IOException {
         if (releaseId == null || releaseId.trim().isEmpty()) {
             throw new IllegalArgumentException("Release ID cannot be empty");
         }
         
-                String url = String.format("%s/releases/%s", baseUrl, releaseId.trim());
+        String url = releaseUrl(baseUrl, releaseId);
         
         System.out.println("Discogs API Request: " + url);
         
-        String response = HttpClient.get(url, defaultHeaders);
+        String response = fetch(url, priority);
         
         // Parse the detailed release response
-        return parseReleaseResponse(response);
+        return DiscogsJson.parseRelease(response);
     }
     
     /**
@@ -105,184 +220,146 @@ public class DiscogsApiService {
      * @return List of matching artists
      * @throws IOException If the API request fails
      */
+    @Override
     public List<MusicArtist> searchArtists(String artistName, int limit) throws IOException {
         if (artistName == null || artistName.trim().isEmpty()) {
             throw new IllegalArgumentException("Artist name cannot be empty");
         }
         
-        String encodedName = HttpClient.urlEncode(artistName.trim());
-        String url = String.format("%s/database/search?q=%s&type=artist&per_page=%d",
-                baseUrl, encodedName, Math.min(limit, 100));
+        String url = artistSearchUrl(baseUrl, artistName, limit);
         
         System.out.println("Discogs API Request: " + url);
         
-        String response = HttpClient.get(url, defaultHeaders);
+        String response = fetch(url);
         
-        return parseArtistSearchResponse(response);
+        return DiscogsJson.parseArtists(response, limit);
     }
     
-    // Simplified JSON parsing methods
-    // Note: In a production system, you'd use a proper JSON library like Jackson or Gson
+    /**
+     * Number of requests that were served by an identical request already in flight
+     */
+    public long getCoalescedRequestCount() {
+        return inFlightRequests.getCoalescedCount();
+    }
     
-    private List<MusicRelease> parseSearchResponse(String json) {
-        List<MusicRelease> releases = new ArrayList<>();
-        
-        try {
-            // Find the results array in the JSON (handle with or without space)
-            String resultsStart1 = "\"results\":[";
-            String resultsStart2 = "\"results\": [";
-            int startIndex = json.indexOf(resultsStart1);
-            String actualResultsStart = resultsStart1;
-            
-            if (startIndex == -1) {
-                startIndex = json.indexOf(resultsStart2);
-                actualResultsStart = resultsStart2;
-            }
-            
-            if (startIndex == -1) {
-                System.out.println("Debug: No 'results' array found (tried both with and without space)");
-                return releases; // No results found
-            }
-            
-            System.out.println("Debug: Found results array at index " + startIndex + " with pattern: " + actualResultsStart);
-            
-            // Find the end of the results array
-            int resultsArrayStart = startIndex + actualResultsStart.length();
-            int bracketCount = 1;
-            int endIndex = resultsArrayStart;
-            
-            while (bracketCount > 0 && endIndex < json.length()) {
-                char c = json.charAt(endIndex);
-                if (c == '[') bracketCount++;
-                else if (c == ']') bracketCount--;
-                endIndex++;
-            }
-            
-            String resultsArray = json.substring(resultsArrayStart, endIndex - 1);
-            System.out.println("Debug: Results array length: " + resultsArray.length());
-            System.out.println("Debug: Results array preview: " + 
-                (resultsArray.length() > 300 ? resultsArray.substring(0, 300) + "..." : resultsArray));
-            
-            // Simple parsing - split by object boundaries 
-            String[] objects = resultsArray.split("\\},\\s*\\{");
-            System.out.println("Debug: Split into " + objects.length + " objects");
-            
-            for (int i = 0; i < objects.length; i++) {
-                String obj = objects[i];
-                System.out.println("Debug: Processing object " + i + " (first 100 chars): " + 
-                    (obj.length() > 100 ? obj.substring(0, 100) + "..." : obj));
-                
-                // Clean up the object string
-                if (!obj.startsWith("{")) obj = "{" + obj;
-                if (!obj.endsWith("}")) obj = obj + "}";
-                
-                MusicRelease release = parseReleaseFromJson(obj);
-                if (release != null) {
-                    System.out.println("Debug: Successfully parsed release: " + release.getTitle());
-                    releases.add(release);
-                } else {
-                    System.out.println("Debug: Failed to parse object");
+    /**
+     * Requests that can be sent right now without waiting for rate limit budget
+     */
+    @Override
+    public int getAvailableRequests() {
+        return rateLimiter.availableRequests();
+    }
+    
+    /**
+     * Whether Discogs calls are currently refused by the circuit breaker
+     */
+    public boolean isCircuitOpen() {
+        return circuitBreaker.isOpen();
+    }
+    
+    /**
+     * Circuit breaker and bulkhead state
+     */
+    public String getCircuitBreakerStatus() {
+        return circuitBreaker + ", inFlight=" + (maxConcurrent - bulkhead.availablePermits()) + "/" + maxConcurrent +
+               ", bulkheadRejected=" + bulkheadRejections.get();
+    }
+    
+    /**
+     * Current state of the outbound rate limiter
+     */
+    public String getRateLimiterStatus() {
+        return rateLimiter.toString();
+    }
+    
+    /**
+     * GET a Discogs URL at interactive priority
+     */
+    private String fetch(String url) throws IOException {
+        return fetch(url, DiscogsRateLimiter.Priority.INTERACTIVE);
+    }
+    
+    /**
+     * GET a Discogs URL within the rate budget, joining an identical request if one is already in flight.
+     * Fails fast with UpstreamUnavailableException while the circuit breaker is open or, once
+     * rate budget is granted, the bulkhead is full.
+     */
+    private String fetch(String url, DiscogsRateLimiter.Priority priority) throws IOException {
+        return inFlightRequests.execute(url, () -> {
+            circuitBreaker.acquire();
+            // The slot is taken only once the limiter grants a token, so calls queued for
+            // rate budget, such as prefetches, do not hold slots that interactive calls need
+            String body = rateLimiter.execute(priority, () -> {
+                acquireBulkhead();
+                try {
+                    return send(url);
+                } finally {
+                    bulkhead.release();
+                }
+            }).getBody();
+            if (recordDir != null) {
+                try {
+                    ReplayCatalogProvider.record(recordDir, url, body);
+                } catch (IOException e) {
+                    System.err.println("Could not record Discogs response for " + url + ": " + e.getMessage());
                 }
-                
-                if (releases.size() >= 10) break; // Limit results
             }
-            
-            System.out.println("Debug: Final release count: " + releases.size());
-            
-        } catch (Exception e) {
-            System.err.println("Error parsing Discogs response: " + e.getMessage());
-            e.printStackTrace();
-            // Return partial results if any were parsed
-        }
-        
-        return releases;
+            return body;
+        });
     }
     
-    private MusicRelease parseReleaseResponse(String json) {
-        return parseReleaseFromJson(json);
+    private void acquireBulkhead() throws IOException {
+        try {
+            if (!bulkhead.tryAcquire(bulkheadWaitMillis, TimeUnit.MILLISECONDS)) {
+                bulkheadRejections.incrementAndGet();
+                throw new UpstreamUnavailableException("Discogs unavailable: " + maxConcurrent + " requests already in flight");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a Discogs request slot");
+        }
     }
     
-    private MusicRelease parseReleaseFromJson(String json) {
+    /**
+     * One HTTP call, reported to the circuit breaker. Answers below 500 show that
+     * Discogs is up, even when they are errors.
+     */
+    private HttpClient.Response send(String url) throws IOException {
         try {
-            MusicRelease release = new MusicRelease();
-            
-            // Extract ID
-            release.setId(extractJsonValue(json, "\"id\":", ","));
-            
-            // Extract title
-            release.setTitle(extractJsonValue(json, "\"title\":", ","));
-            
-            // Extract year
-            release.setYear(extractJsonValue(json, "\"year\":", ","));
-            
-            // Extract format (look for vinyl, LP, etc.)
-            String format = extractJsonValue(json, "\"format\":", "]");
-            if (format != null && format.contains("LP")) {
-                release.setFormat("LP");
-            } else if (format != null && format.contains("Single")) {
-                release.setFormat("Single");
+            HttpClient.Response response = HttpClient.getResponse(url, defaultHeaders, requestTimeoutMillis);
+            circuitBreaker.recordSuccess();
+            return response;
+        } catch (HttpStatusException e) {
+            if (e.getStatusCode() >= 500) {
+                circuitBreaker.recordFailure();
             } else {
-                release.setFormat("Release");
-            }
-            
-            // Extract genre
-            String genre = extractJsonValue(json, "\"genre\":", "]");
-            if (genre != null) {
-                // Clean up genre string
-                genre = genre.replaceAll("[\\[\\]\"]", "").split(",")[0].trim();
-                release.setGenre(genre);
+                circuitBreaker.recordSuccess();
             }
-            
-            // Set a default artist if we can't parse it properly
-            if (release.getTitle() != null && release.getTitle().contains(" - ")) {
-                String[] parts = release.getTitle().split(" - ", 2);
-                release.setArtist(parts[0].trim());
-                release.setTitle(parts[1].trim());
-            }
-            
-            return release;
-            
-        } catch (Exception e) {
-            System.err.println("Error parsing individual release: " + e.getMessage());
-            return null;
+            throw e;
+        } catch (IOException e) {
+            circuitBreaker.recordFailure();
+            throw e;
         }
     }
     
-    private List<MusicArtist> parseArtistSearchResponse(String json) {
-        List<MusicArtist> artists = new ArrayList<>();
-        // Simplified implementation - would be enhanced in production
-        return artists;
+    // Request URLs; ReplayCatalogProvider builds the same ones to find its recordings
+    
+    static String searchUrl(String baseUrl, String query, int perPage) {
+        return String.format("%s/database/search?q=%s&type=release&per_page=%d",
+                baseUrl, HttpClient.urlEncode(QueryCanonicalizer.canonical(query)), perPage);
     }
     
-    // Simple helper method to extract JSON values
-    private String extractJsonValue(String json, String key, String endChar) {
-        try {
-            int startIndex = json.indexOf(key);
-            if (startIndex == -1) return null;
-            
-            startIndex += key.length();
-            
-            // Skip whitespace and quotes
-            while (startIndex < json.length() && 
-                   (json.charAt(startIndex) == ' ' || json.charAt(startIndex) == '"')) {
-                startIndex++;
-            }
-            
-            // Find end of value
-            int endIndex = json.indexOf(endChar, startIndex);
-            if (endIndex == -1) endIndex = json.length();
-            
-            // Look for quote before endChar
-            int quoteIndex = json.lastIndexOf('"', endIndex);
-            if (quoteIndex > startIndex && quoteIndex < endIndex) {
-                endIndex = quoteIndex;
-            }
-            
-            String value = json.substring(startIndex, endIndex).trim();
-            return value.isEmpty() ? null : value;
-            
-        } catch (Exception e) {
-            return null;
-        }
+    static String pageUrl(String baseUrl, String query, int page, int perPage) {
+        return String.format("%s/database/search?q=%s&type=release&page=%d&per_page=%d",
+                baseUrl, HttpClient.urlEncode(QueryCanonicalizer.canonical(query)), page, perPage);
+    }
+    
+    static String releaseUrl(String baseUrl, String releaseId) {
+        return String.format("%s/releases/%s", baseUrl, releaseId.trim());
+    }
+    
+    static String artistSearchUrl(String baseUrl, String artistName, int limit) {
+        return String.format("%s/database/search?q=%s&type=artist&per_page=%d",
+                baseUrl, HttpClient.urlEncode(QueryCanonicalizer.canonical(artistName)), Math.min(limit, 100));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,592 @@
+package com.vinylsystem.common;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Imports Discogs monthly XML data dumps (releases, artists) into a {@link LocalCatalog}.
+ *
+ * The dump is streamed with StAX, so memory use does not depend on the file
+ * size. Parsing, normalization and writing run as pipeline stages connected by
+ * bounded queues: one parser thread, several normalizer threads and one writer.
+ * A full queue blocks the stage in front of it, so a slow disk throttles the
+ * parser instead of buffering records. Progress and throughput are reported
+ * while the import runs.
+ *
+ * Usage: DiscogsDumpImporter [--threads=N] &lt;catalog-file&gt; &lt;dump.xml.gz&gt;...
+ */
+public class DiscogsDumpImporter {
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final int PROGRESS_INTERVAL_SECONDS = 5;
+    private static final int MAX_TEXT_LENGTH = 64 * 1024;
+    private static final int MAX_PROFILE_LENGTH = 4096;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    // Discogs disambiguates equal names with a numeric suffix, e.g. "Nirvana (2)"
+    private static final Pattern NAME_SUFFIX = Pattern.compile("\\s\\(\\d+\\)$");
+
+    /**
+     * Record kinds found in Discogs dumps, keyed by root element
+     */
+    enum DumpType {
+        RELEASES("releases", "release", "tracklist", "extraartists", "videos", "companies",
+                 "identifiers", "notes", "series"),
+        ARTISTS("artists", "artist", "members", "groups", "urls", "namevariations");
+
+        final String rootElement;
+        final String recordElement;
+        // Sub-trees that are never needed and skipped without building paths
+        final Set<String> skipped;
+
+        DumpType(String rootElement, String recordElement, String... skipped) {
+            this.rootElement = rootElement;
+            this.recordElement = recordElement;
+            this.skipped = new HashSet<>(Arrays.asList(skipped));
+        }
+
+        static DumpType forRoot(String root) throws IOException {
+            for (DumpType type : values()) {
+                if (type.rootElement.equals(root)) return type;
+            }
+            if ("labels".equals(root) || "masters".equals(root)) {
+                throw new IOException("The " + root + " dump is not supported: the catalog only holds releases and artists");
+            }
+            throw new IOException("Not a Discogs dump, unexpected root element <" + root + ">");
+        }
+    }
+
+    private static final RawRecord END_OF_INPUT = new RawRecord(null);
+    private static final Object END_OF_BATCH = new Object();
+
+    private final int normalizerThreads;
+
+    private final AtomicLong parsed = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final List<Thread> stages = new CopyOnWriteArrayList<>();
+
+    public DiscogsDumpImporter(int normalizerThreads) {
+        if (normalizerThreads <= 0) {
+            throw new IllegalArgumentException("Normalizer thread count must be positive");
+        }
+        this.normalizerThreads = normalizerThreads;
+    }
+
+    /**
+     * Import one dump file into the catalog writer
+     * @return number of records written
+     */
+    public long importDump(Path dumpFile, LocalCatalog.Writer catalog) throws IOException {
+        parsed.set(0);
+        written.set(0);
+        skipped.set(0);
+        failure.set(null);
+        stages.clear();
+        stages.add(Thread.currentThread()); // the parser runs on the calling thread
+
+        long fileSize = Files.size(dumpFile);
+        BlockingQueue<RawRecord> rawQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<Object> recordQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        long startNanos = System.nanoTime();
+
+        try (CountingInputStream counter = new CountingInputStream(Files.newInputStream(dumpFile))) {
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < normalizerThreads; i++) {
+                threads.add(startStage("dump-normalizer-" + i, () -> normalize(rawQueue, recordQueue)));
+            }
+            threads.add(startStage("dump-writer", () -> write(recordQueue, catalog)));
+            stages.addAll(threads);
+
+            ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "dump-progress");
+                thread.setDaemon(true);
+                return thread;
+            });
+            progress.scheduleAtFixedRate(() -> reportProgress(counter.getCount(), fileSize, startNanos),
+                PROGRESS_INTERVAL_SECONDS, PROGRESS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+            try {
+                parse(openDump(dumpFile, counter), rawQueue);
+            } catch (IOException | XMLStreamException | InterruptedException | RuntimeException e) {
+                fail(e);
+            } finally {
+                // A failing stage interrupts the parser too; clear that before shutting down
+                if (failure.get() != null && !(failure.get() instanceof InterruptedException)) {
+                    Thread.interrupted();
+                }
+                // Always release the normalizers, even after a parse failure
+                for (int i = 0; i < normalizerThreads; i++) {
+                    offerEnd(rawQueue, threads);
+                }
+            }
+
+            for (Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    fail(e);
+                    break;
+                }
+            }
+            progress.shutdownNow();
+        }
+
+        Throwable error = failure.get();
+        if (error != null) {
+            if (error instanceof IOException) throw (IOException) error;
+            if (error instanceof InterruptedException) throw new InterruptedIOException("Import interrupted");
+            throw new IOException("Import of " + dumpFile + " failed: " + error.getMessage(), error);
+        }
+
+        double seconds = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+        System.out.printf("Imported %,d records from %s in %.1f s (%,.0f records/s, %,d skipped)%n",
+                written.get(), dumpFile.getFileName(), seconds, written.get() / seconds, skipped.get());
+        return written.get();
+    }
+
+    private InputStream openDump(Path dumpFile, InputStream raw) throws IOException {
+        InputStream buffered = new BufferedInputStream(raw, 256 * 1024);
+        return dumpFile.getFileName().toString().endsWith(".gz")
+            ? new GZIPInputStream(buffered, 256 * 1024) : buffered;
+    }
+
+    /**
+     * Parser stage: turn each record element into a flat path/value record
+     */
+    private void parse(InputStream in, BlockingQueue<RawRecord> out)
+            throws XMLStreamException, InterruptedException, IOException {
+        XMLStreamReader xml = createInputFactory().createXMLStreamReader(in, "UTF-8");
+        try {
+            while (xml.hasNext() && xml.next() != XMLStreamConstants.START_ELEMENT) {
+                // skip prolog
+            }
+            if (!xml.isStartElement()) {
+                throw new IOException("Dump contains no XML elements");
+            }
+            DumpType type = DumpType.forRoot(xml.getLocalName());
+            System.out.println("Importing " + type.rootElement + " dump");
+
+            while (xml.hasNext() && failure.get() == null) {
+                if (xml.next() == XMLStreamConstants.START_ELEMENT
+                    && xml.getLocalName().equals(type.recordElement)) {
+                    out.put(readRecord(xml, type));
+                    parsed.incrementAndGet();
+                }
+            }
+        } finally {
+            xml.close();
+        }
+    }
+
+    private static RawRecord readRecord(XMLStreamReader xml, DumpType type) throws XMLStreamException {
+        RawRecord record = new RawRecord(type);
+        for (int i = 0; i < xml.getAttributeCount(); i++) {
+            record.add("@" + xml.getAttributeLocalName(i), xml.getAttributeValue(i));
+        }
+
+        Deque<String> paths = new ArrayDeque<>();
+        StringBuilder text = new StringBuilder();
+        boolean leaf = false;
+        while (true) {
+            switch (xml.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    String name = xml.getLocalName();
+                    if (paths.isEmpty() && type.skipped.contains(name)) {
+                        skipElement(xml);
+                        break;
+                    }
+                    String path = paths.isEmpty() ? name : paths.peek() + "/" + name;
+                    paths.push(path);
+                    for (int i = 0; i < xml.getAttributeCount(); i++) {
+                        record.add(path + "@" + xml.getAttributeLocalName(i), xml.getAttributeValue(i));
+                    }
+                    text.setLength(0);
+                    leaf = true;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                    if (leaf && text.length() < MAX_TEXT_LENGTH) {
+                        text.append(xml.getText());
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (paths.isEmpty()) {
+                        return record; // end of the record element
+                    }
+                    String closed = paths.pop();
+                    if (leaf) {
+                        record.add(closed, text.toString());
+                    }
+                    leaf = false;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private static void skipElement(XMLStreamReader xml) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT) depth--;
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        try {
+            // Every &amp; counts towards the JDK's accumulated entity limit, which multi-GB dumps exceed
+            factory.setProperty("http://www.oracle.com/xml/jaxp/properties/totalEntitySizeLimit", "0");
+        } catch (IllegalArgumentException e) {
+            // not the JDK's built-in parser; it has no such limit
+        }
+        return factory;
+    }
+
+    /**
+     * Normalizer stage: map raw records to catalog records
+     */
+    private void normalize(BlockingQueue<RawRecord> in, BlockingQueue<Object> out) throws InterruptedException {
+        try {
+            while (true) {
+                RawRecord raw = in.take();
+                if (raw == END_OF_INPUT) {
+                    return;
+                }
+                Object record = raw.type == DumpType.RELEASES ? toRelease(raw) : toArtist(raw);
+                if (record != null) {
+                    out.put(record);
+                } else {
+                    skipped.incrementAndGet();
+                }
+            }
+        } finally {
+            // After a failure the writer may be gone, so never block on a full queue
+            if (failure.get() == null) {
+                out.put(END_OF_BATCH);
+            } else {
+                out.offer(END_OF_BATCH);
+            }
+        }
+    }
+
+    /**
+     * Writer stage: append records to the catalog until every normalizer has finished
+     */
+    private void write(BlockingQueue<Object> in, LocalCatalog.Writer catalog) throws InterruptedException, IOException {
+        int finished = 0;
+        while (finished < normalizerThreads) {
+            Object record = in.take();
+            if (record == END_OF_BATCH) {
+                finished++;
+            } else if (failure.get() == null) {
+                if (record instanceof MusicRelease) {
+                    catalog.writeRelease((MusicRelease) record);
+                } else {
+                    catalog.writeArtist((MusicArtist) record);
+                }
+                written.incrementAndGet();
+            }
+        }
+    }
+
+    static MusicRelease toRelease(RawRecord raw) {
+        String id = clean(raw.first("@id"));
+        String title = clean(raw.first("title"));
+        if (id == null || title == null) {
+            return null;
+        }
+
+        MusicRelease release = new MusicRelease();
+        release.setId(id);
+        release.setTitle(title);
+        release.setArtist(joinArtists(raw.all("artists/artist/name"), raw.all("artists/artist/join")));
+        release.setYear(yearOf(raw.first("released")));
+        release.setGenre(clean(raw.first("genres/genre")));
+        release.setStyle(clean(raw.first("styles/style")));
+        release.setFormat(formatOf(raw));
+        release.setLabel(clean(raw.first("labels/label@name")));
+        release.setCatalogNumber(clean(raw.first("labels/label@catno")));
+        release.setCoverImage(primaryImage(raw));
+        release.setCountry(clean(raw.first("country")));
+        return release;
+    }
+
+    static MusicArtist toArtist(RawRecord raw) {
+        String id = clean(raw.first("id"));
+        String name = stripNameSuffix(clean(raw.first("name")));
+        if (id == null || name == null) {
+            return null;
+        }
+
+        MusicArtist artist = new MusicArtist(id, name);
+        artist.setRealName(clean(raw.first("realname")));
+        String profile = clean(raw.first("profile"));
+        if (profile != null && profile.length() > MAX_PROFILE_LENGTH) {
+            profile = profile.substring(0, MAX_PROFILE_LENGTH);
+        }
+        artist.setProfile(profile);
+        artist.setAliases(cleanAll(raw.all("aliases/name"), true));
+        artist.setImages(cleanAll(raw.all("images/image@uri"), false));
+        return artist;
+    }
+
+    private static String joinArtists(List<String> names, List<String> joins) {
+        StringBuilder artist = new StringBuilder();
+        for (int i = 0; i < names.size(); i++) {
+            String name = stripNameSuffix(clean(names.get(i)));
+            if (name == null) continue;
+            if (artist.length() > 0) {
+                // The join of the previous artist links it to this one
+                String join = i - 1 < joins.size() ? clean(joins.get(i - 1)) : null;
+                if (join == null || join.equals(",")) {
+                    artist.append(", ");
+                } else {
+                    artist.append(' ').append(join).append(' ');
+                }
+            }
+            artist.append(name);
+        }
+        return artist.length() > 0 ? artist.toString() : null;
+    }
+
+    private static String yearOf(String released) {
+        String value = clean(released);
+        if (value == null || value.length() < 4) return null;
+        String year = value.substring(0, 4);
+        for (int i = 0; i < 4; i++) {
+            if (!Character.isDigit(year.charAt(i))) return null;
+        }
+        return "0000".equals(year) ? null : year;
+    }
+
+    // Same LP/Single classification as search results, otherwise the physical format name
+    private static String formatOf(RawRecord raw) {
+        for (String description : raw.all("formats/format/descriptions/description")) {
+            if (description.contains("LP")) return "LP";
+        }
+        for (String description : raw.all("formats/format/descriptions/description")) {
+            if (description.contains("Single")) return "Single";
+        }
+        return clean(raw.first("formats/format@name"));
+    }
+
+    private static String primaryImage(RawRecord raw) {
+        List<String> uris = raw.all("images/image@uri");
+        List<String> types = raw.all("images/image@type");
+        for (int i = 0; i < uris.size() && i < types.size(); i++) {
+            if ("primary".equals(types.get(i))) {
+                String uri = clean(uris.get(i));
+                if (uri != null) return uri;
+            }
+        }
+        for (String uri : uris) {
+            if (clean(uri) != null) return clean(uri);
+        }
+        return null;
+    }
+
+    private static String[] cleanAll(List<String> values, boolean stripSuffix) {
+        List<String> cleaned = new ArrayList<>(values.size());
+        for (String value : values) {
+            String clean = clean(value);
+            if (clean != null) {
+                cleaned.add(stripSuffix ? stripNameSuffix(clean) : clean);
+            }
+        }
+        return cleaned.isEmpty() ? null : cleaned.toArray(new String[0]);
+    }
+
+    private static String stripNameSuffix(String name) {
+        return name == null ? null : NAME_SUFFIX.matcher(name).replaceFirst("");
+    }
+
+    /**
+     * Trim, collapse whitespace and NFC-normalize; blank becomes null
+     */
+    static String clean(String value) {
+        if (value == null) return null;
+        String trimmed = WHITESPACE.matcher(value.trim()).replaceAll(" ");
+        if (trimmed.isEmpty()) return null;
+        return Normalizer.isNormalized(trimmed, Normalizer.Form.NFC)
+            ? trimmed : Normalizer.normalize(trimmed, Normalizer.Form.NFC);
+    }
+
+    private interface Stage {
+        void run() throws Exception;
+    }
+
+    private Thread startStage(String name, Stage stage) {
+        Thread thread = new Thread(() -> {
+            try {
+                stage.run();
+            } catch (Exception e) {
+                fail(e);
+            }
+        }, name);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Record the first failure and interrupt every stage blocked on a queue
+     */
+    private void fail(Throwable error) {
+        if (failure.compareAndSet(null, error)) {
+            for (Thread thread : stages) {
+                if (thread != Thread.currentThread()) {
+                    thread.interrupt();
+                }
+            }
+        }
+    }
+
+    private void offerEnd(BlockingQueue<RawRecord> queue, List<Thread> threads) {
+        try {
+            while (!queue.offer(END_OF_INPUT, 100, TimeUnit.MILLISECONDS)) {
+                if (threads.stream().noneMatch(Thread::isAlive)) return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void reportProgress(long bytesRead, long fileSize, long startNanos) {
+        double seconds = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+        System.out.printf("Progress: %,d parsed, %,d written (%,.0f records/s), %,d MB of %,d MB read (%.1f%%), %,d skipped%n",
+                parsed.get(), written.get(), written.get() / seconds, bytesRead >> 20, fileSize >> 20,
+                fileSize == 0 ? 100.0 : 100.0 * bytesRead / fileSize, skipped.get());
+    }
+
+    /**
+     * Flat view of one dump record: element paths (relative to the record
+     * element, attributes as path@name) mapped to their values in document order
+     */
+    static class RawRecord {
+        private final DumpType type;
+        private final Map<String, List<String>> values = new HashMap<>();
+
+        RawRecord(DumpType type) {
+            this.type = type;
+        }
+
+        void add(String path, String value) {
+            values.computeIfAbsent(path, p -> new ArrayList<>(2)).add(value);
+        }
+
+        String first(String path) {
+            List<String> list = values.get(path);
+            return list == null ? null : list.get(0);
+        }
+
+        List<String> all(String path) {
+            List<String> list = values.get(path);
+            return list == null ? List.of() : list;
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skippedBytes = super.skip(n);
+            count += skippedBytes;
+            return skippedBytes;
+        }
+    }
+
+    public static void main(String[] args) {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 2);
+        List<String> files = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else {
+                files.add(arg);
+            }
+        }
+        if (files.size() < 2) {
+            System.out.println("Usage: java DiscogsDumpImporter [--threads=N] <catalog-file> <dump.xml.gz>...");
+            System.out.println("Example: java DiscogsDumpImporter catalog/discogs.cat " +
+                               "discogs_20240101_releases.xml.gz discogs_20240101_artists.xml.gz");
+            System.exit(1);
+        }
+
+        DiscogsDumpImporter importer = new DiscogsDumpImporter(threads);
+        LocalCatalog.Writer catalog = null;
+        try {
+            catalog = new LocalCatalog.Writer(Paths.get(files.get(0)));
+            for (String dump : files.subList(1, files.size())) {
+                importer.importDump(Paths.get(dump), catalog);
+            }
+            catalog.close();
+            System.out.println("Catalog written to " + files.get(0) + ": " + catalog.getReleaseCount() +
+                               " releases, " + catalog.getArtistCount() + " artists");
+        } catch (IOException | IllegalArgumentException e) {
+            if (catalog != null) {
+                catalog.abort();
+            }
+            System.err.println("Import failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
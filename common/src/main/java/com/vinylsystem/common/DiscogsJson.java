@@ -0,0 +1,215 @@
+package com.vinylsystem.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Parsing of Discogs API responses, shared by {@link DiscogsApiService} and
+ * {@link ReplayCatalogProvider}.
+ * Note: In a production system, you'd use a proper JSON library like Jackson or Gson
+ */
+public class DiscogsJson {
+    
+    private DiscogsJson() {
+    }
+    
+    /**
+     * Releases of a search response, at most limit of them
+     */
+    public static List<MusicRelease> parseReleases(String json, int limit) {
+        List<MusicRelease> releases = new ArrayList<>();
+        try {
+            forEachResult(json, limit, DiscogsJson::parseReleaseFromJson, releases::add);
+        } catch (Exception e) {
+            System.err.println("Error parsing Discogs response: " + e.getMessage());
+            // Return partial results if any were parsed
+        }
+        System.out.println("Debug: Final release count: " + releases.size());
+        return releases;
+    }
+    
+    /**
+     * Parse the objects of the "results" array one at a time, in order.
+     * Objects are delimited by tracking nesting outside of strings, so nested
+     * objects and arrays inside a result do not split it.
+     * @return number of parsed results handed to the consumer
+     */
+    private static <T> int forEachResult(String json, int limit, Function<String, T> parser, Consumer<T> consumer) {
+        int arrayStart = json.indexOf("\"results\"");
+        arrayStart = arrayStart == -1 ? -1 : json.indexOf('[', arrayStart);
+        if (arrayStart == -1) {
+            System.out.println("Debug: No 'results' array found");
+            return 0;
+        }
+        
+        int count = 0;
+        int depth = 0;
+        int objectStart = -1;
+        boolean inString = false;
+        for (int i = arrayStart + 1; i < json.length() && count < limit; i++) {
+            char c = json.charAt(i);
+            if (inString) {
+                if (c == '\\') i++;
+                else if (c == '"') inString = false;
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                if (depth++ == 0 && c == '{') objectStart = i;
+            } else if (c == '}' || c == ']') {
+                if (depth == 0) break; // end of the results array
+                if (--depth == 0 && objectStart >= 0) {
+                    T result = parser.apply(json.substring(objectStart, i + 1));
+                    if (result != null) {
+                        consumer.accept(result);
+                        count++;
+                    }
+                    objectStart = -1;
+                }
+            }
+        }
+        return count;
+    }
+    
+    private static int parseCount(String json, String key) {
+        String value = extractJsonValue(json, key, ",");
+        if (value == null) return 0;
+        try {
+            return Integer.parseInt(value.replace("}", "").trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+    
+    /**
+     * One page of a release search, handing each release to the consumer as it is parsed
+     */
+    public static DiscogsSearchResult parseReleasePage(String json, int page, int pageSize,
+                                                       Consumer<MusicRelease> consumer) {
+        List<MusicRelease> releases = new ArrayList<>();
+        forEachResult(json, pageSize, DiscogsJson::parseReleaseFromJson, release -> {
+            releases.add(release);
+            consumer.accept(release);
+        });
+        
+        DiscogsSearchResult result = new DiscogsSearchResult(releases, parseCount(json, "\"items\":"));
+        result.setPage(page);
+        result.setPages(parseCount(json, "\"pages\":"));
+        result.setPerPage(pageSize);
+        return result;
+    }
+    
+    /**
+     * A release detail response
+     */
+    public static MusicRelease parseRelease(String json) {
+        return parseReleaseFromJson(json);
+    }
+    
+    private static MusicRelease parseReleaseFromJson(String json) {
+        try {
+            MusicRelease release = new MusicRelease();
+            
+            // Extract ID
+            release.setId(extractJsonValue(json, "\"id\":", ","));
+            
+            // Extract title
+            release.setTitle(extractJsonValue(json, "\"title\":", ","));
+            
+            // Extract year
+            release.setYear(extractJsonValue(json, "\"year\":", ","));
+            
+            // Extract format (look for vinyl, LP, etc.)
+            String format = extractJsonValue(json, "\"format\":", "]");
+            if (format != null && format.contains("LP")) {
+                release.setFormat("LP");
+            } else if (format != null && format.contains("Single")) {
+                release.setFormat("Single");
+            } else {
+                release.setFormat("Release");
+            }
+            
+            // Extract genre
+            String genre = extractJsonValue(json, "\"genre\":", "]");
+            if (genre != null) {
+                // Clean up genre string
+                genre = genre.replaceAll("[\\[\\]\"]", "").split(",")[0].trim();
+                release.setGenre(genre);
+            }
+            
+            // Set a default artist if we can't parse it properly
+            if (release.getTitle() != null && release.getTitle().contains(" - ")) {
+                String[] parts = release.getTitle().split(" - ", 2);
+                release.setArtist(parts[0].trim());
+                release.setTitle(parts[1].trim());
+            }
+            
+            return release;
+            
+        } catch (Exception e) {
+            System.err.println("Error parsing individual release: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Artists of an artist search response, at most limit of them
+     */
+    public static List<MusicArtist> parseArtists(String json, int limit) {
+        List<MusicArtist> artists = new ArrayList<>();
+        try {
+            forEachResult(json, limit, DiscogsJson::parseArtistFromJson, artists::add);
+        } catch (Exception e) {
+            System.err.println("Error parsing Discogs artist response: " + e.getMessage());
+        }
+        return artists;
+    }
+    
+    private static MusicArtist parseArtistFromJson(String json) {
+        // Artist search results carry the name as "title"
+        String id = extractJsonValue(json, "\"id\":", ",");
+        String name = extractJsonValue(json, "\"title\":", ",");
+        if (id == null || name == null) {
+            return null;
+        }
+        MusicArtist artist = new MusicArtist(id, name);
+        String image = extractJsonValue(json, "\"cover_image\":", ",");
+        if (image != null) {
+            artist.setImages(new String[] {image});
+        }
+        return artist;
+    }
+    
+    // Simple helper method to extract JSON values
+    private static String extractJsonValue(String json, String key, String endChar) {
+        try {
+            int startIndex = json.indexOf(key);
+            if (startIndex == -1) return null;
+            
+            startIndex += key.length();
+            
+            // Skip whitespace and quotes
+            while (startIndex < json.length() && 
+                   (json.charAt(startIndex) == ' ' || json.charAt(startIndex) == '"')) {
+                startIndex++;
+            }
+            
+            // Find end of value
+            int endIndex = json.indexOf(endChar, startIndex);
+            if (endIndex == -1) endIndex = json.length();
+            
+            // Look for quote before endChar
+            int quoteIndex = json.lastIndexOf('"', endIndex);
+            if (quoteIndex > startIndex && quoteIndex < endIndex) {
+                endIndex = quoteIndex;
+            }
+            
+            String value = json.substring(startIndex, endIndex).trim();
+            return value.isEmpty() ? null : value;
+            
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.vinylsystem.common;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Outbound scheduler that keeps Discogs traffic under the per-token rate limit.
+ *
+ * Requests take a token from a bucket that refills at the advertised limit per
+ * minute. After every response the bucket is reconciled with the
+ * X-Discogs-Ratelimit-* headers, so the local view never claims more budget
+ * than Discogs reports as remaining (minus a small reserve). When the bucket is
+ * empty, requests queue by priority (interactive searches before prefetches
+ * before background work) instead of failing. A 429 answer drains the bucket
+ * and the request is retried once budget is available again.
+ */
+public class DiscogsRateLimiter {
+
+    /**
+     * Scheduling priority of an outbound request, highest first
+     */
+    public enum Priority { INTERACTIVE, PREFETCH, BACKGROUND }
+
+    /**
+     * The request being scheduled
+     */
+    public interface Request {
+        HttpClient.Response send() throws IOException;
+    }
+
+    private static final String HEADER_LIMIT = "x-discogs-ratelimit";
+    private static final String HEADER_REMAINING = "x-discogs-ratelimit-remaining";
+    private static final int MAX_THROTTLE_RETRIES = 3;
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final PriorityQueue<Ticket> waiting = new PriorityQueue<>();
+    private final int reserve;
+    private final long maxWaitNanos;
+
+    private int limit;
+    private double tokens;
+    private double tokensPerNano;
+    private long lastRefill;
+    private long sequence;
+
+    private long granted;
+    private long throttled;
+    private long timedOut;
+    private int lastRemaining = -1;
+
+    /**
+     * @param requestsPerMinute initial budget, replaced by the limit Discogs reports
+     * @param reserve requests kept back from the reported remaining budget
+     * @param maxWaitMillis longest a request may queue before giving up
+     */
+    public DiscogsRateLimiter(int requestsPerMinute, int reserve, long maxWaitMillis) {
+        if (requestsPerMinute <= 0) {
+            throw new IllegalArgumentException("Rate limit must be positive");
+        }
+        this.reserve = Math.max(0, reserve);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.lastRefill = System.nanoTime();
+        setLimit(requestsPerMinute);
+        this.tokens = Math.max(1, requestsPerMinute - this.reserve);
+    }
+
+    /**
+     * Send a request once budget is available, retrying if Discogs answers 429
+     */
+    public HttpClient.Response execute(Priority priority, Request request) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            acquire(priority);
+            try {
+                HttpClient.Response response = request.send();
+                onResponse(response.getHeaders());
+                return response;
+            } catch (HttpStatusException e) {
+                onResponse(e.getHeaders());
+                if (e.getStatusCode() != 429 || attempt >= MAX_THROTTLE_RETRIES) {
+                    throw e;
+                }
+                onThrottled();
+            }
+        }
+    }
+
+    /**
+     * Block until the caller may send one request
+     */
+    public void acquire(Priority priority) throws IOException {
+        lock.lock();
+        try {
+            Ticket ticket = new Ticket(priority, sequence++);
+            waiting.add(ticket);
+            long deadline = System.nanoTime() + maxWaitNanos;
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    refill(now);
+                    if (waiting.peek() == ticket && tokens >= 1.0) {
+                        waiting.poll();
+                        tokens -= 1.0;
+                        granted++;
+                        changed.signalAll(); // let the next ticket in line check the bucket
+                        return;
+                    }
+
+                    long remaining = deadline - now;
+                    if (remaining <= 0) {
+                        waiting.remove(ticket);
+                        timedOut++;
+                        changed.signalAll();
+                        throw new IOException("Discogs rate limit budget exhausted; request waited " +
+                                              TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + " ms");
+                    }
+
+                    long untilToken = waiting.peek() == ticket
+                        ? (long) Math.ceil((1.0 - tokens) / tokensPerNano) : remaining;
+                    changed.awaitNanos(Math.max(1, Math.min(untilToken, remaining)));
+                }
+            } catch (InterruptedException e) {
+                waiting.remove(ticket);
+                changed.signalAll();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for Discogs rate limit budget");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reconcile the bucket with the rate limit headers of a response
+     */
+    public void onResponse(Map<String, String> headers) {
+        int reportedLimit = parseHeader(headers, HEADER_LIMIT);
+        int reportedRemaining = parseHeader(headers, HEADER_REMAINING);
+        if (reportedLimit <= 0 && reportedRemaining < 0) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            refill(System.nanoTime());
+            if (reportedLimit > 0 && reportedLimit != limit) {
+                System.out.println("Discogs rate limit is " + reportedLimit + " requests/minute");
+                setLimit(reportedLimit);
+            }
+            if (reportedRemaining >= 0) {
+                lastRemaining = reportedRemaining;
+                tokens = Math.min(tokens, Math.max(0, reportedRemaining - reserve));
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Requests that could be sent right now without queueing
+     */
+    public int availableRequests() {
+        lock.lock();
+        try {
+            refill(System.nanoTime());
+            return waiting.isEmpty() ? (int) tokens : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onThrottled() {
+        lock.lock();
+        try {
+            throttled++;
+            tokens = 0;
+            System.err.println("Discogs answered 429 Too Many Requests; pausing outbound requests");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void setLimit(int requestsPerMinute) {
+        this.limit = requestsPerMinute;
+        this.tokensPerNano = (double) requestsPerMinute / WINDOW_NANOS;
+        this.tokens = Math.min(tokens, capacity());
+    }
+
+    private double capacity() {
+        return Math.max(1, limit - reserve);
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(capacity(), tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+
+    private static int parseHeader(Map<String, String> headers, String name) {
+        String value = headers != null ? headers.get(name) : null;
+        if (value == null) return -1;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return String.format("limit=%d/min, tokens=%.1f, queued=%d, granted=%d, throttled=%d, timedOut=%d, lastRemaining=%d",
+                    limit, tokens, waiting.size(), granted, throttled, timedOut, lastRemaining);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static class Ticket implements Comparable<Ticket> {
+        final Priority priority;
+        final long sequence;
+
+        Ticket(Priority priority, long sequence) {
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Ticket other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
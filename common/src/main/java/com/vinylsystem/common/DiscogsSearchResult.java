@@ -11,6 +11,7 @@ public class DiscogsSearchResult {
     private int page;
     private int pages;
     private int perPage;
+    private boolean stale; // served from an expired cache entry
     
     // Default constructor for JSON parsing
     public DiscogsSearchResult() {}
@@ -36,6 +37,9 @@ public class DiscogsSearchResult {
     public int getPerPage() { return perPage; }
     public void setPerPage(int perPage) { this.perPage = perPage; }
     
+    public boolean isStale() { return stale; }
+    public void setStale(boolean stale) { this.stale = stale; }
+    
     @Override
     public String toString() {
         return String.format("DiscogsSearchResult{totalResults=%d, page=%d, pages=%d, results=%d}",
@@ -0,0 +1,594 @@
+package com.vinylsystem.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent key/value store for cached Discogs data.
+ *
+ * Records are appended to log segment files and located through an in-memory
+ * hash index that is rebuilt by scanning the segments on startup. Reads go
+ * through memory-mapped views of the segments. Every record carries a CRC32,
+ * so torn writes after a crash and on-disk corruption are detected and dropped
+ * instead of being served. Overwritten, deleted and expired records are
+ * reclaimed by a background compaction that copies the live records of mostly
+ * dead segments into the active segment and deletes the old file.
+ *
+ * Recovery replays the segments oldest first, so a deleted or expired key must
+ * keep a tombstone until no older segment can hold a value for it. The store
+ * remembers, per key, the oldest segment that may hold one of its records, and
+ * compaction carries tombstones forward while such a segment remains.
+ *
+ * Record layout: magic, crc32, key length, value length (-1 = tombstone),
+ * expiry time (epoch millis), key bytes, value bytes.
+ */
+public class DiskCacheStore implements Closeable {
+    private static final int MAGIC = 0x56434431; // "VCD1"
+    private static final int HEADER_SIZE = 24;
+    private static final int CRC_OFFSET = 8;     // checksum covers everything after magic + crc
+    private static final int MAX_KEY_BYTES = 4096;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final double COMPACTION_DEAD_RATIO = 0.5;
+    private static final long REMAP_THRESHOLD = 1024 * 1024;
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            System.err.println("Disk cache: mappings are released by the garbage collector (" + e + ")");
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final Path directory;
+    private final long segmentMaxBytes;
+    private final Map<String, Location> index = new HashMap<>();
+    // Deleted or expired keys whose older records may still be on disk
+    private final Map<String, Tombstone> tombstones = new HashMap<>();
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final ScheduledExecutorService compactor;
+    private Segment active;
+
+    private long hits;
+    private long misses;
+    private long corruptRecords;
+    private long writes;
+    private long compactions;
+    private long bytesReclaimed;
+
+    private DiskCacheStore(Path directory, long segmentMaxBytes) {
+        this.directory = directory;
+        this.segmentMaxBytes = segmentMaxBytes;
+        this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "disk-cache-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Open (or create) a store in the directory and rebuild its index
+     */
+    public static DiskCacheStore open(Path directory, long segmentMaxBytes, long compactionIntervalSeconds) throws IOException {
+        Files.createDirectories(directory);
+        DiskCacheStore store = new DiskCacheStore(directory, segmentMaxBytes);
+        store.recover();
+        store.compactor.scheduleWithFixedDelay(store::compactQuietly,
+            compactionIntervalSeconds, compactionIntervalSeconds, TimeUnit.SECONDS);
+        return store;
+    }
+
+    /**
+     * Value for the key, or null if absent, expired or corrupt
+     */
+    public synchronized byte[] get(String key) {
+        Location location = index.get(key);
+        if (location == null) {
+            misses++;
+            return null;
+        }
+        if (location.expiresAt <= System.currentTimeMillis()) {
+            dropFromIndex(key, location);
+            misses++;
+            return null;
+        }
+
+        try {
+            ByteBuffer record = location.segment.read(location.offset, location.length);
+            byte[] value = decodeRecord(record, key);
+            if (value == null) {
+                corruptRecords++;
+                dropFromIndex(key, location);
+                misses++;
+                System.err.println("Disk cache: checksum mismatch for key " + key + ", record dropped");
+                return null;
+            }
+            hits++;
+            return value;
+        } catch (IOException e) {
+            System.err.println("Disk cache read failed: " + e.getMessage());
+            misses++;
+            return null;
+        }
+    }
+
+    /**
+     * Expiry time (epoch millis) of the value stored for the key, or 0 if there is none
+     */
+    public synchronized long expiresAt(String key) {
+        Location location = index.get(key);
+        return location != null ? location.expiresAt : 0;
+    }
+
+    /**
+     * Append a value; it replaces any older value for the key
+     */
+    public synchronized void put(String key, byte[] value, long ttlMillis) throws IOException {
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        Location location = append(key, value, expiresAt);
+        location.oldestSegment = oldestSegment(key, index.get(key), location.segment.id);
+        tombstones.remove(key);
+        Location previous = index.put(key, location);
+        if (previous != null) {
+            previous.segment.deadBytes += previous.length;
+        }
+        writes++;
+    }
+
+    /**
+     * Remove a key (persisted as a tombstone record)
+     */
+    public synchronized void remove(String key) throws IOException {
+        Location previous = index.remove(key);
+        if (previous != null) {
+            previous.segment.deadBytes += previous.length;
+            Location tombstone = append(key, null, 0);
+            tombstone.segment.deadBytes += tombstone.length;
+            tombstones.put(key, new Tombstone(tombstone.segment, previous.oldestSegment));
+        }
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * Compact every segment whose dead space exceeds the threshold
+     */
+    public void compact() throws IOException {
+        List<Long> candidates = new ArrayList<>();
+        synchronized (this) {
+            for (Segment segment : segments.values()) {
+                if (segment != active && segment.size > 0
+                    && (double) segment.deadBytes / segment.size >= COMPACTION_DEAD_RATIO) {
+                    candidates.add(segment.id);
+                }
+            }
+        }
+        // One segment per lock hold keeps reader pauses short
+        for (Long id : candidates) {
+            compactSegment(id);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        compactor.shutdownNow();
+        if (active != null) {
+            active.channel.force(false);
+        }
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+        segments.clear();
+        index.clear();
+        tombstones.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        long totalBytes = 0;
+        long deadBytes = 0;
+        for (Segment segment : segments.values()) {
+            totalBytes += segment.size;
+            deadBytes += segment.deadBytes;
+        }
+        return String.format("entries=%d, segments=%d, disk=%d KB (%d KB dead), hits=%d, misses=%d, " +
+                             "writes=%d, corrupt=%d, compactions=%d, reclaimed=%d KB",
+                index.size(), segments.size(), totalBytes / 1024, deadBytes / 1024, hits, misses,
+                writes, corruptRecords, compactions, bytesReclaimed / 1024);
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException e) {
+            System.err.println("Disk cache compaction failed: " + e.getMessage());
+        }
+    }
+
+    private synchronized void compactSegment(long id) throws IOException {
+        Segment segment = segments.get(id);
+        if (segment == null || segment == active) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Location>> entries = index.entrySet().iterator();
+        List<String> liveKeys = new ArrayList<>();
+        List<byte[]> liveValues = new ArrayList<>();
+        List<Location> liveLocations = new ArrayList<>();
+        while (entries.hasNext()) {
+            Map.Entry<String, Location> entry = entries.next();
+            Location location = entry.getValue();
+            if (location.segment != segment) {
+                continue;
+            }
+            entries.remove();
+            byte[] value = location.expiresAt <= now ? null
+                : decodeRecord(segment.read(location.offset, location.length), entry.getKey());
+            if (value != null) {
+                liveKeys.add(entry.getKey());
+                liveValues.add(value);
+                liveLocations.add(location);
+            } else {
+                tombstones.put(entry.getKey(), new Tombstone(segment, location.oldestSegment));
+            }
+        }
+
+        for (int i = 0; i < liveKeys.size(); i++) {
+            Location copy = append(liveKeys.get(i), liveValues.get(i), liveLocations.get(i).expiresAt);
+            copy.oldestSegment = liveLocations.get(i).oldestSegment;
+            index.put(liveKeys.get(i), copy);
+        }
+
+        // Tombstones recorded in this segment move forward while an older segment may hold the key
+        int keptTombstones = 0;
+        Iterator<Map.Entry<String, Tombstone>> deleted = tombstones.entrySet().iterator();
+        List<String> carriedKeys = new ArrayList<>();
+        while (deleted.hasNext()) {
+            Map.Entry<String, Tombstone> entry = deleted.next();
+            Tombstone tombstone = entry.getValue();
+            if (tombstone.segment != segment) {
+                continue;
+            }
+            if (segments.subMap(tombstone.oldestSegment, id).isEmpty()) {
+                deleted.remove();
+            } else {
+                carriedKeys.add(entry.getKey());
+            }
+        }
+        for (String key : carriedKeys) {
+            Location copy = append(key, null, 0);
+            copy.segment.deadBytes += copy.length;
+            tombstones.get(key).segment = copy.segment;
+            keptTombstones++;
+        }
+
+        // The copies must be durable before the only other copy is deleted
+        if (active != null) {
+            active.channel.force(false);
+        }
+        long reclaimed = segment.size;
+        segments.remove(id);
+        segment.close();
+        Files.deleteIfExists(segment.path);
+        compactions++;
+        bytesReclaimed += reclaimed;
+        System.out.println("Disk cache: compacted " + segment.path.getFileName() + ", kept " +
+                           liveKeys.size() + " live records and " + keptTombstones + " tombstones");
+    }
+
+    private Location append(String key, byte[] value, long expiresAt) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length > MAX_KEY_BYTES) {
+            throw new IllegalArgumentException("Cache key too long");
+        }
+        int valueLength = value != null ? value.length : -1;
+        int length = HEADER_SIZE + keyBytes.length + Math.max(0, valueLength);
+
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(MAGIC);
+        record.putInt(0); // checksum placeholder
+        record.putInt(keyBytes.length);
+        record.putInt(valueLength);
+        record.putLong(expiresAt);
+        record.put(keyBytes);
+        if (value != null) {
+            record.put(value);
+        }
+        record.putInt(4, checksum(record.array(), CRC_OFFSET, length - CRC_OFFSET));
+        record.flip();
+
+        if (active == null || active.size + length > segmentMaxBytes) {
+            rollSegment();
+        }
+        long offset = active.size;
+        while (record.hasRemaining()) {
+            active.channel.write(record, offset + record.position());
+        }
+        active.size += length;
+        return new Location(active, offset, length, expiresAt);
+    }
+
+    private void rollSegment() throws IOException {
+        long id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        Path path = directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        active = new Segment(id, path, FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE), 0);
+        segments.put(id, active);
+    }
+
+    /**
+     * Rebuild the index from the segment files, truncating torn or corrupt tails
+     */
+    private void recover() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                paths.add(path);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        for (Path path : paths) {
+            String name = path.getFileName().toString();
+            long id;
+            try {
+                id = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segments.put(id, new Segment(id, path, channel, channel.size()));
+        }
+
+        for (Segment segment : segments.values()) {
+            long validEnd = scanSegment(segment, now);
+            if (validEnd < segment.size) {
+                System.err.println("Disk cache: truncating " + segment.path.getFileName() + " from " +
+                                   segment.size + " to " + validEnd + " bytes (torn or corrupt tail)");
+                segment.channel.truncate(validEnd);
+                segment.size = validEnd;
+                segment.mapped = null;
+            }
+        }
+
+        if (!segments.isEmpty()) {
+            active = segments.lastEntry().getValue();
+        }
+        System.out.println("Disk cache opened at " + directory + ": " + index.size() + " entries in " +
+                           segments.size() + " segments");
+    }
+
+    private long scanSegment(Segment segment, long now) throws IOException {
+        if (segment.size == 0) {
+            return 0;
+        }
+        MappedByteBuffer data = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.size);
+        try {
+            return scanRecords(segment, data, now);
+        } finally {
+            unmap(data);
+        }
+    }
+
+    private long scanRecords(Segment segment, ByteBuffer data, long now) {
+        long position = 0;
+        while (position + HEADER_SIZE <= segment.size) {
+            int start = (int) position;
+            if (data.getInt(start) != MAGIC) break;
+            int keyLength = data.getInt(start + 8);
+            int valueLength = data.getInt(start + 12);
+            long expiresAt = data.getLong(start + 16);
+            if (keyLength < 0 || keyLength > MAX_KEY_BYTES || valueLength < -1) break;
+            int length = HEADER_SIZE + keyLength + Math.max(0, valueLength);
+            if (position + length > segment.size) break;
+
+            ByteBuffer record = data.duplicate();
+            record.position(start).limit(start + length);
+            record = record.slice();
+            byte[] bytes = new byte[length];
+            record.get(bytes);
+            if (checksum(bytes, CRC_OFFSET, length - CRC_OFFSET) != data.getInt(start + 4)) {
+                corruptRecords++;
+                break;
+            }
+
+            String key = new String(bytes, HEADER_SIZE, keyLength, StandardCharsets.UTF_8);
+            Location previous;
+            if (valueLength < 0 || expiresAt <= now) {
+                long oldest = oldestSegment(key, index.get(key), segment.id);
+                previous = index.remove(key);
+                segment.deadBytes += length;
+                tombstones.put(key, new Tombstone(segment, oldest));
+            } else {
+                Location location = new Location(segment, position, length, expiresAt);
+                location.oldestSegment = oldestSegment(key, index.get(key), segment.id);
+                tombstones.remove(key);
+                previous = index.put(key, location);
+            }
+            if (previous != null) {
+                previous.segment.deadBytes += previous.length;
+            }
+            position += length;
+        }
+        return position;
+    }
+
+    /**
+     * Verify a record and return its value, or null if it is corrupt or belongs to another key
+     */
+    private static byte[] decodeRecord(ByteBuffer record, String expectedKey) {
+        int length = record.remaining();
+        if (length < HEADER_SIZE) return null;
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        ByteBuffer header = ByteBuffer.wrap(bytes);
+        if (header.getInt(0) != MAGIC) return null;
+        if (checksum(bytes, CRC_OFFSET, length - CRC_OFFSET) != header.getInt(4)) return null;
+
+        int keyLength = header.getInt(8);
+        int valueLength = header.getInt(12);
+        if (valueLength < 0 || HEADER_SIZE + keyLength + valueLength != length) return null;
+        String key = new String(bytes, HEADER_SIZE, keyLength, StandardCharsets.UTF_8);
+        if (!key.equals(expectedKey)) return null;
+
+        byte[] value = new byte[valueLength];
+        System.arraycopy(bytes, HEADER_SIZE + keyLength, value, 0, valueLength);
+        return value;
+    }
+
+    /**
+     * Forget a record that is expired or unreadable. It stays on disk, so compaction
+     * must replace it with a tombstone if an older record for the key may exist.
+     */
+    private void dropFromIndex(String key, Location location) {
+        index.remove(key);
+        location.segment.deadBytes += location.length;
+        tombstones.put(key, new Tombstone(location.segment, location.oldestSegment));
+    }
+
+    /**
+     * Oldest segment that may hold a record for the key, given its current location
+     */
+    private long oldestSegment(String key, Location current, long segmentId) {
+        if (current != null) {
+            return current.oldestSegment;
+        }
+        Tombstone tombstone = tombstones.get(key);
+        return tombstone != null ? Math.min(tombstone.oldestSegment, segmentId) : segmentId;
+    }
+
+    /**
+     * Release a mapping now rather than when it is garbage collected, since Windows
+     * cannot delete or truncate a file that is still mapped. Callers hold the store's
+     * lock and no view of the buffer may be used afterwards.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        if (buffer == null || INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Left to the garbage collector
+        }
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private static class Location {
+        final Segment segment;
+        final long offset;
+        final int length;
+        final long expiresAt;
+        long oldestSegment;
+
+        Location(Segment segment, long offset, int length, long expiresAt) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.expiresAt = expiresAt;
+            this.oldestSegment = segment.id;
+        }
+    }
+
+    /**
+     * Where the latest tombstone (or dropped record) for a key lies, and the oldest
+     * segment that may still hold a value for it
+     */
+    private static class Tombstone {
+        Segment segment;
+        final long oldestSegment;
+
+        Tombstone(Segment segment, long oldestSegment) {
+            this.segment = segment;
+            this.oldestSegment = oldestSegment;
+        }
+    }
+
+    private static class Segment {
+        final long id;
+        final Path path;
+        final FileChannel channel;
+        long size;
+        long deadBytes;
+        MappedByteBuffer mapped;
+
+        Segment(long id, Path path, FileChannel channel, long size) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.size = size;
+        }
+
+        /**
+         * View of a record through the segment's memory mapping. Bytes appended
+         * since the last mapping are read directly until the unmapped tail is
+         * large enough to be worth remapping.
+         */
+        ByteBuffer read(long offset, int length) throws IOException {
+            long end = offset + length;
+            long mappedSize = mapped != null ? mapped.capacity() : 0;
+            if (end > mappedSize && (mapped == null || size - mappedSize >= REMAP_THRESHOLD || size > Integer.MAX_VALUE)) {
+                unmap(mapped);
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, Integer.MAX_VALUE));
+                mappedSize = mapped.capacity();
+            }
+            if (end <= mappedSize) {
+                ByteBuffer view = mapped.duplicate();
+                view.position((int) offset).limit((int) end);
+                return view.slice();
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of segment " + path.getFileName());
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+
+        void close() throws IOException {
+            unmap(mapped);
+            mapped = null;
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.vinylsystem.common;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Test program for {@link DiskCacheStore} in temporary directories: deleted and
+ * expired keys stay gone through compaction and a restart, and a torn last record
+ * is dropped on recovery. Exits with status 1 if a check fails.
+ */
+public class DiskCacheStoreTest {
+    // Three 1000-byte records fill a segment and a 2000-byte one always starts a new one,
+    // so the tests control which segment holds what
+    private static final long SEGMENT_BYTES = 4096;
+    private static final long COMPACTION_INTERVAL_SECONDS = 3600;
+    private static final long HOUR_MILLIS = 3_600_000;
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Testing DiskCacheStore...\n");
+
+        System.out.println("=== Test 1: Deleted key stays gone after compaction and reopen ===");
+        testDeleteSurvivesCompaction();
+
+        System.out.println("=== Test 2: Expired key stays gone after compaction and reopen ===");
+        testExpiredSurvivesCompaction();
+
+        System.out.println("=== Test 3: Torn last record is dropped on reopen ===");
+        testTornTail();
+
+        System.out.println(failures == 0 ? "\n=== DiskCacheStore Test Complete! ===" : "\n=== " + failures + " checks failed ===");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void testDeleteSurvivesCompaction() throws IOException {
+        Path directory = Files.createTempDirectory("disk-cache-test");
+        try {
+            DiskCacheStore store = DiskCacheStore.open(directory, SEGMENT_BYTES, COMPACTION_INTERVAL_SECONDS);
+            // Segment 1 keeps the old value of "deleted" and is too live to be compacted
+            store.put("deleted", value("old", 1000), HOUR_MILLIS);
+            store.put("kept-1", value("kept-1", 1000), HOUR_MILLIS);
+            store.put("kept-2", value("kept-2", 1000), HOUR_MILLIS);
+            // Segment 2 holds the tombstone and is mostly overwritten, so it is compacted
+            store.put("filler", value("filler-0", 1000), HOUR_MILLIS);
+            store.remove("deleted");
+            for (int i = 1; i < 3; i++) {
+                store.put("filler", value("filler-" + i, 1000), HOUR_MILLIS);
+            }
+            store.put("active", value("active", 2000), HOUR_MILLIS);
+            store.compact();
+            check("deleted key absent after compaction", store.get("deleted") == null);
+            store.close();
+
+            store = DiskCacheStore.open(directory, SEGMENT_BYTES, COMPACTION_INTERVAL_SECONDS);
+            check("deleted key absent after reopen", store.get("deleted") == null);
+            check("older key kept", Arrays.equals(value("kept-1", 1000), store.get("kept-1")));
+            check("compacted key kept with its last value", Arrays.equals(value("filler-2", 1000), store.get("filler")));
+            store.close();
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    private static void testExpiredSurvivesCompaction() throws Exception {
+        Path directory = Files.createTempDirectory("disk-cache-test");
+        try {
+            DiskCacheStore store = DiskCacheStore.open(directory, SEGMENT_BYTES, COMPACTION_INTERVAL_SECONDS);
+            // Segment 1 keeps a long-lived value of "expiring"
+            store.put("expiring", value("old", 1000), HOUR_MILLIS);
+            store.put("kept-1", value("kept-1", 1000), HOUR_MILLIS);
+            store.put("kept-2", value("kept-2", 1000), HOUR_MILLIS);
+            // Segment 2 replaces it with a short-lived value, then fills up with overwrites
+            store.put("expiring", value("new", 1000), 100);
+            for (int i = 0; i < 12; i++) {
+                store.put("filler", value("filler-" + i, 100), HOUR_MILLIS);
+            }
+            store.put("active", value("active", 2000), HOUR_MILLIS);
+            Thread.sleep(200);
+            store.compact();
+            check("expired key absent after compaction", store.get("expiring") == null);
+            store.close();
+
+            store = DiskCacheStore.open(directory, SEGMENT_BYTES, COMPACTION_INTERVAL_SECONDS);
+            check("older value of expired key not resurrected", store.get("expiring") == null);
+            check("compacted key kept with its last value", Arrays.equals(value("filler-11", 100), store.get("filler")));
+            store.close();
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    private static void testTornTail() throws IOException {
+        Path directory = Files.createTempDirectory("disk-cache-test");
+        try {
+            DiskCacheStore store = DiskCacheStore.open(directory, SEGMENT_BYTES, COMPACTION_INTERVAL_SECONDS);
+            store.put("complete", value("complete", 100), HOUR_MILLIS);
+            store.put("torn", value("torn", 100), HOUR_MILLIS);
+            store.close();
+
+            // Cut the last record short, as a crash in the middle of a write would
+            Path segment = onlySegment(directory);
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                channel.truncate(channel.size() - 10);
+            }
+
+            store = DiskCacheStore.open(directory, SEGMENT_BYTES, COMPACTION_INTERVAL_SECONDS);
+            check("complete record kept", Arrays.equals(value("complete", 100), store.get("complete")));
+            check("torn record dropped", store.get("torn") == null);
+            store.put("after", value("after", 100), HOUR_MILLIS);
+            store.close();
+
+            // A write after recovery must follow the last good record, not the torn bytes
+            store = DiskCacheStore.open(directory, SEGMENT_BYTES, COMPACTION_INTERVAL_SECONDS);
+            check("record written after recovery kept", Arrays.equals(value("after", 100), store.get("after")));
+            check("entry count", store.size() == 2);
+            store.close();
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    private static byte[] value(String text, int length) {
+        byte[] bytes = Arrays.copyOf(text.getBytes(StandardCharsets.UTF_8), length);
+        Arrays.fill(bytes, Math.min(text.length(), length), length, (byte) '.');
+        return bytes;
+    }
+
+    private static Path onlySegment(Path directory) throws IOException {
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "segment-*.log")) {
+            return segments.iterator().next();
+        }
+    }
+
+    private static void check(String name, boolean passed) {
+        System.out.println((passed ? "  PASS " : "  FAIL ") + name);
+        if (!passed) {
+            failures++;
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.vinylsystem.common;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Per-value document bitmaps for the facet fields of indexed releases.
+ *
+ * Every distinct genre, style, year, format and country has a
+ * {@link RoaringBitmap} of the documents carrying it. Filters combine the
+ * bitmaps (OR within a facet, AND across facets) and facet counts intersect
+ * each value's bitmap with the bitmap of matching documents chunk by chunk,
+ * so counting never touches the documents themselves. Values are matched
+ * case-insensitively.
+ */
+public class FacetIndex {
+
+    /**
+     * Facet fields of a release
+     */
+    public enum Facet {
+        GENRE, STYLE, YEAR, FORMAT, COUNTRY;
+
+        String valueOf(MusicRelease release) {
+            switch (this) {
+                case GENRE: return release.getGenre();
+                case STYLE: return release.getStyle();
+                case YEAR: return release.getYear();
+                case FORMAT: return release.getFormat();
+                default: return release.getCountry();
+            }
+        }
+
+        /**
+         * Facet for a query option name such as "genre", or null
+         */
+        public static Facet forName(String name) {
+            for (Facet facet : values()) {
+                if (facet.name().equalsIgnoreCase(name)) return facet;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Number of matching documents with one facet value
+     */
+    public static class Count {
+        private final String value;
+        private final int count;
+
+        Count(String value, int count) {
+            this.value = value;
+            this.count = count;
+        }
+
+        public String getValue() { return value; }
+        public int getCount() { return count; }
+
+        @Override
+        public String toString() {
+            return value + " (" + count + ")";
+        }
+    }
+
+    private static final Facet[] FACETS = Facet.values();
+    private static final int MIN_YEAR = 1000;
+    private static final int MAX_YEAR = 2999;
+
+    // Per facet: normalized value -> value label and documents
+    private final List<Map<String, Value>> values;
+
+    private FacetIndex(List<Map<String, Value>> values) {
+        this.values = values;
+    }
+
+    /**
+     * Documents passing every filter; null when there are no filters.
+     * Values of one facet are alternatives; years may be ranges such as "1970-1979".
+     */
+    public RoaringBitmap select(Map<Facet, List<String>> filters) {
+        RoaringBitmap selected = null;
+        for (Map.Entry<Facet, List<String>> filter : filters.entrySet()) {
+            if (filter.getValue().isEmpty()) continue;
+            RoaringBitmap facetMatches = new RoaringBitmap();
+            for (String value : filter.getValue()) {
+                for (RoaringBitmap bitmap : bitmapsFor(filter.getKey(), value)) {
+                    facetMatches = facetMatches.or(bitmap);
+                }
+            }
+            selected = selected == null ? facetMatches : selected.and(facetMatches);
+            if (selected.isEmpty()) break;
+        }
+        return selected;
+    }
+
+    /**
+     * Most frequent values of a facet among the matching documents
+     */
+    public List<Count> counts(Facet facet, RoaringBitmap matches, int top) {
+        List<Count> counts = new ArrayList<>();
+        for (Value value : values.get(facet.ordinal()).values()) {
+            int count = value.documents.andCardinality(matches);
+            if (count > 0) {
+                counts.add(new Count(value.label, count));
+            }
+        }
+        counts.sort((a, b) -> a.count != b.count ? Integer.compare(b.count, a.count) : a.value.compareTo(b.value));
+        return counts.size() > top ? new ArrayList<>(counts.subList(0, top)) : counts;
+    }
+
+    /**
+     * Facet counts for every facet, keyed in facet order
+     */
+    public Map<Facet, List<Count>> allCounts(RoaringBitmap matches, int top) {
+        Map<Facet, List<Count>> all = new EnumMap<>(Facet.class);
+        for (Facet facet : FACETS) {
+            all.put(facet, counts(facet, matches, top));
+        }
+        return all;
+    }
+
+    public int valueCount(Facet facet) {
+        return values.get(facet.ordinal()).size();
+    }
+
+    @Override
+    public String toString() {
+        long bytes = 0;
+        StringBuilder summary = new StringBuilder();
+        for (Facet facet : FACETS) {
+            for (Value value : values.get(facet.ordinal()).values()) {
+                bytes += value.documents.sizeInBytes();
+            }
+            summary.append(facet.name().toLowerCase(Locale.ROOT)).append('=')
+                   .append(valueCount(facet)).append(", ");
+        }
+        return summary.append("bitmaps=").append(bytes / 1024).append(" KB").toString();
+    }
+
+    private List<RoaringBitmap> bitmapsFor(Facet facet, String value) {
+        Map<String, Value> facetValues = values.get(facet.ordinal());
+        List<RoaringBitmap> bitmaps = new ArrayList<>();
+        if (facet == Facet.YEAR) {
+            int[] range = parseYearRange(value);
+            for (int year = range[0]; year <= range[1]; year++) {
+                Value match = facetValues.get(Integer.toString(year));
+                if (match != null) bitmaps.add(match.documents);
+            }
+        } else {
+            Value match = facetValues.get(normalize(value));
+            if (match != null) bitmaps.add(match.documents);
+        }
+        return bitmaps;
+    }
+
+    /**
+     * {from, to} for "1975", "1970-1979" (any dash) or "1970s"
+     */
+    static int[] parseYearRange(String value) {
+        String range = value.trim().replace('–', '-').replace('—', '-');
+        try {
+            int from;
+            int to;
+            if (range.endsWith("s") && range.length() == 5) {
+                from = Integer.parseInt(range.substring(0, 4));
+                to = from + 9;
+            } else if (range.indexOf('-') > 0) {
+                int dash = range.indexOf('-');
+                from = Integer.parseInt(range.substring(0, dash).trim());
+                to = Integer.parseInt(range.substring(dash + 1).trim());
+            } else {
+                from = to = Integer.parseInt(range);
+            }
+            if (from < MIN_YEAR || to > MAX_YEAR || from > to) {
+                throw new IllegalArgumentException("Invalid year range: " + value);
+            }
+            return new int[] {from, to};
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid year: " + value);
+        }
+    }
+
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static class Value {
+        final String label;
+        final RoaringBitmap documents = new RoaringBitmap();
+
+        Value(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * Collects facet values of documents added in increasing id order
+     */
+    static class Builder {
+        private final List<Map<String, Value>> values = new ArrayList<>();
+
+        Builder() {
+            for (int i = 0; i < FACETS.length; i++) {
+                values.add(new HashMap<>());
+            }
+        }
+
+        void add(int doc, MusicRelease release) {
+            for (Facet facet : FACETS) {
+                String raw = facet.valueOf(release);
+                if (raw == null || raw.isBlank()) continue;
+                String value = raw.trim();
+                values.get(facet.ordinal()).computeIfAbsent(normalize(value), key -> new Value(value))
+                      .documents.add(doc);
+            }
+        }
+
+        FacetIndex build() {
+            List<Map<String, Value>> finished = new ArrayList<>();
+            for (Map<String, Value> facetValues : values) {
+                for (Value value : facetValues.values()) {
+                    value.documents.trim();
+                }
+                finished.add(new HashMap<>(facetValues));
+            }
+            return new FacetIndex(finished);
+        }
+    }
+}
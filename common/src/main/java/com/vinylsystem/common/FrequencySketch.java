@@ -0,0 +1,93 @@
+package com.vinylsystem.common;
+
+/**
+ * Count-min sketch of 4-bit counters used as the TinyLFU frequency filter.
+ * Each long packs sixteen counters; an item maps to four of them and its
+ * estimated frequency is their minimum. All counters are halved once the
+ * number of increments reaches ten times the table size, so the sketch
+ * follows changes in popularity instead of remembering the past forever.
+ * Not thread-safe; callers synchronize.
+ */
+public class FrequencySketch {
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+    
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int size;
+    
+    public FrequencySketch(int expectedEntries) {
+        int capacity = Integer.highestOneBit(Math.max(16, Math.min(expectedEntries, 1 << 26)) - 1) << 1;
+        this.table = new long[capacity];
+        this.tableMask = capacity - 1;
+        this.sampleSize = 10 * capacity;
+    }
+    
+    /**
+     * Estimated number of recent occurrences of the item, capped at 15
+     */
+    public int frequency(int itemHash) {
+        int hash = spread(itemHash);
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+    
+    /**
+     * Record one occurrence of the item
+     */
+    public void increment(int itemHash) {
+        int hash = spread(itemHash);
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++size >= sampleSize) {
+            reset();
+        }
+    }
+    
+    private boolean incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = 0xfL << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Halve every counter (aging)
+     */
+    private void reset() {
+        int oddCounters = 0;
+        for (int i = 0; i < table.length; i++) {
+            oddCounters += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (oddCounters >>> 2);
+    }
+    
+    private int indexOf(int hash, int depth) {
+        long h = (hash + SEEDS[depth]) * SEEDS[depth];
+        h += h >>> 32;
+        return ((int) h) & tableMask;
+    }
+    
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
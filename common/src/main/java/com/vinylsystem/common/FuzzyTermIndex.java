@@ -0,0 +1,249 @@
+package com.vinylsystem.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds dictionary terms within a small edit distance of a (misspelled) query term.
+ *
+ * Every term is split into the trigrams of "$term$". Trigram posting lists are
+ * partitioned by term length, so a lookup only reads the lists for lengths
+ * that can be within the allowed distance. Only the rarest lists (which any
+ * close term must appear in) introduce candidates; long lists for common
+ * trigrams are probed for the candidates only. Terms sharing enough trigrams
+ * are verified with a banded Levenshtein distance that gives up as soon as
+ * the distance bound is exceeded. Terms containing digits (years,
+ * catalog numbers) are matched exactly only.
+ */
+public class FuzzyTermIndex {
+    private static final int MIN_FUZZY_LENGTH = 4;
+    private static final int TWO_EDITS_LENGTH = 8;
+    private static final int MAX_TERM_LENGTH = 40;
+
+    /**
+     * A dictionary term close to the query term
+     */
+    public static class Match {
+        private final String term;
+        private final int distance;
+        private final int weight;
+
+        Match(String term, int distance, int weight) {
+            this.term = term;
+            this.distance = distance;
+            this.weight = weight;
+        }
+
+        public String getTerm() { return term; }
+        public int getDistance() { return distance; }
+        public int getWeight() { return weight; }
+    }
+
+    private final String[] terms;
+    private final int[] weights;
+    // (trigram, term length) -> sorted ids of terms with that trigram and length
+    private final Map<Long, int[]> trigramPostings;
+    private final ThreadLocal<int[]> overlapCounts;
+
+    /**
+     * @param termWeights dictionary terms with a popularity weight (e.g. document frequency)
+     */
+    public FuzzyTermIndex(Map<String, Integer> termWeights) {
+        List<String> eligible = new ArrayList<>();
+        for (String term : termWeights.keySet()) {
+            if (isFuzzyCandidate(term)) {
+                eligible.add(term);
+            }
+        }
+        this.terms = eligible.toArray(new String[0]);
+        this.weights = new int[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            weights[i] = termWeights.get(terms[i]);
+        }
+
+        Map<Long, IntList> building = new HashMap<>();
+        for (int id = 0; id < terms.length; id++) {
+            long lengthKey = terms[id].length();
+            for (long trigram : distinctTrigrams(terms[id])) {
+                building.computeIfAbsent(trigram << 8 | lengthKey, k -> new IntList()).add(id);
+            }
+        }
+        this.trigramPostings = new HashMap<>(building.size() * 4 / 3 + 1);
+        for (Map.Entry<Long, IntList> entry : building.entrySet()) {
+            trigramPostings.put(entry.getKey(), entry.getValue().toArray());
+        }
+
+        int termCount = terms.length;
+        this.overlapCounts = ThreadLocal.withInitial(() -> new int[termCount]);
+    }
+
+    /**
+     * Closest dictionary terms to a query term, nearest and most popular first
+     * @param maxMatches upper bound on the candidate set
+     */
+    public List<Match> lookup(String query, int maxMatches) {
+        if (!isFuzzyCandidate(query) || maxMatches <= 0) {
+            return List.of();
+        }
+        int maxDistance = query.length() >= TWO_EDITS_LENGTH ? 2 : 1;
+        long[] queryTrigrams = distinctTrigrams(query);
+        // Each edit destroys at most three trigrams of the padded term, so a term within
+        // maxDistance shares at least minOverlap of them and therefore appears in at least
+        // one of any (trigrams - minOverlap + 1) query trigram lists
+        int minOverlap = Math.max(1, queryTrigrams.length - 3 * maxDistance);
+        int candidateLists = queryTrigrams.length - minOverlap + 1;
+
+        int[] counts = overlapCounts.get();
+        int[] touched = new int[64];
+        int touchedCount = 0;
+        try {
+            for (int length = query.length() - maxDistance; length <= query.length() + maxDistance; length++) {
+                if (length < 1) continue;
+                int[][] lists = new int[queryTrigrams.length][];
+                int listCount = 0;
+                for (long trigram : queryTrigrams) {
+                    int[] postings = trigramPostings.get(trigram << 8 | length);
+                    if (postings != null) {
+                        lists[listCount++] = postings;
+                    }
+                }
+                // Missing lists are empty, i.e. the rarest ones
+                int missing = queryTrigrams.length - listCount;
+                if (listCount < minOverlap) continue;
+                Arrays.sort(lists, 0, listCount, (x, y) -> Integer.compare(x.length, y.length));
+
+                // The rarest lists introduce candidates...
+                int firstTouched = touchedCount;
+                int introducing = Math.max(0, candidateLists - missing);
+                for (int l = 0; l < introducing; l++) {
+                    for (int id : lists[l]) {
+                        if (counts[id]++ == 0) {
+                            if (touchedCount == touched.length) {
+                                touched = Arrays.copyOf(touched, touchedCount * 2);
+                            }
+                            touched[touchedCount++] = id;
+                        }
+                    }
+                }
+                // ...the longer ones only add to their overlap counts
+                int candidates = touchedCount - firstTouched;
+                for (int l = introducing; l < listCount && candidates > 0; l++) {
+                    int[] postings = lists[l];
+                    if ((long) candidates * 20 < postings.length) {
+                        for (int i = firstTouched; i < touchedCount; i++) {
+                            if (Arrays.binarySearch(postings, touched[i]) >= 0) counts[touched[i]]++;
+                        }
+                    } else {
+                        for (int id : postings) {
+                            if (counts[id] > 0) counts[id]++;
+                        }
+                    }
+                }
+            }
+
+            List<Match> matches = new ArrayList<>();
+            for (int i = 0; i < touchedCount; i++) {
+                int id = touched[i];
+                if (counts[id] < minOverlap) continue;
+                int distance = boundedDistance(query, terms[id], maxDistance);
+                if (distance <= maxDistance && distance > 0) {
+                    matches.add(new Match(terms[id], distance, weights[id]));
+                }
+            }
+            matches.sort((a, b) -> a.distance != b.distance
+                ? Integer.compare(a.distance, b.distance) : Integer.compare(b.weight, a.weight));
+            return matches.size() > maxMatches ? new ArrayList<>(matches.subList(0, maxMatches)) : matches;
+        } finally {
+            for (int i = 0; i < touchedCount; i++) {
+                counts[touched[i]] = 0;
+            }
+        }
+    }
+
+    public int size() {
+        return terms.length;
+    }
+
+    static boolean isFuzzyCandidate(String term) {
+        if (term.length() < MIN_FUZZY_LENGTH || term.length() > MAX_TERM_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < term.length(); i++) {
+            if (Character.isDigit(term.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Levenshtein distance, or maxDistance + 1 once it is certain to exceed maxDistance.
+     * Only a diagonal band of width 2 * maxDistance + 1 is computed.
+     */
+    static int boundedDistance(String a, String b, int maxDistance) {
+        int n = a.length();
+        int m = b.length();
+        if (Math.abs(n - m) > maxDistance) {
+            return maxDistance + 1;
+        }
+        int infinity = maxDistance + 1;
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++) {
+            previous[j] = j <= maxDistance ? j : infinity;
+        }
+        for (int i = 1; i <= n; i++) {
+            int from = Math.max(1, i - maxDistance);
+            int to = Math.min(m, i + maxDistance);
+            Arrays.fill(current, infinity);
+            current[0] = i <= maxDistance ? i : infinity;
+            int rowMin = current[0];
+            char ca = a.charAt(i - 1);
+            for (int j = from; j <= to; j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(previous[j - 1] + cost, Math.min(previous[j] + 1, current[j - 1] + 1));
+                current[j] = Math.min(value, infinity);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxDistance) {
+                return infinity;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[m];
+    }
+
+    private static long[] distinctTrigrams(String term) {
+        String padded = "$" + term + "$";
+        long[] trigrams = new long[padded.length() - 2];
+        int count = 0;
+        outer:
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            long trigram = (long) padded.charAt(i) << 32 | (long) padded.charAt(i + 1) << 16 | padded.charAt(i + 2);
+            for (int j = 0; j < count; j++) {
+                if (trigrams[j] == trigram) continue outer;
+            }
+            trigrams[count++] = trigram;
+        }
+        return count == trigrams.length ? trigrams : Arrays.copyOf(trigrams, count);
+    }
+
+    private static class IntList {
+        int[] data = new int[2];
+        int size;
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
@@ -1,19 +1,60 @@
 package com.vinylsystem.common;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
 
 /**
- * Simple HTTP client for making GET requests to REST APIs
+ * Simple HTTP client for making GET requests to REST APIs.
+ *
+ * All requests share one {@link java.net.http.HttpClient}, so connections are
+ * kept alive and reused, and HTTP/2 is negotiated where the server offers it.
+ * Responses are requested gzip-compressed and decompressed while streaming.
+ * The timeout covers the whole exchange, so a server that stalls while sending the
+ * body cannot hold the calling thread.
  */
 public class HttpClient {
     private static final int DEFAULT_TIMEOUT = 10000; // 10 seconds
     private static final String USER_AGENT = "VinylSystem/1.0";
     
+    private static final java.net.http.HttpClient CLIENT = java.net.http.HttpClient.newBuilder()
+        .version(java.net.http.HttpClient.Version.HTTP_2)
+        .connectTimeout(Duration.ofMillis(DEFAULT_TIMEOUT))
+        .followRedirects(java.net.http.HttpClient.Redirect.NORMAL)
+        .build();
+    
+    /**
+     * Create the shared client ahead of the first request; setting up TLS
+     * takes several hundred milliseconds
+     */
+    public static void warmUp() {
+        CLIENT.version();
+    }
+    
     /**
      * Make a GET request to the specified URL
      * @param url The URL to request
@@ -32,47 +73,315 @@ public class HttpClient {
      * @throws IOException If the request fails
      */
     public static String get(String url, Map<String, String> headers) throws IOException {
-        HttpURLConnection connection = null;
+        return getResponse(url, headers).getBody();
+    }
+    
+    /**
+     * Make a GET request and return the body together with the response headers
+     * @param url The URL to request
+     * @param headers Map of headers to include in the request
+     * @return The response
+     * @throws HttpStatusException If the server answers with a non-200 status
+     * @throws IOException If the request fails
+     */
+    public static Response getResponse(String url, Map<String, String> headers) throws IOException {
+        return getResponse(url, headers, DEFAULT_TIMEOUT);
+    }
+    
+    /**
+     * Make a GET request that gives up after the given time
+     * @param timeoutMillis how long the whole exchange, body included, may take
+     * @throws HttpTimeoutException If the response is not complete in time
+     */
+    public static Response getResponse(String url, Map<String, String> headers, long timeoutMillis) throws IOException {
+        CompletableFuture<Response> response = getResponseAsync(url, headers, timeoutMillis);
         try {
-            URL requestUrl = new URL(url);
-            connection = (HttpURLConnection) requestUrl.openConnection();
-            
-            // Set request properties
-            connection.setRequestMethod("GET");
-            connection.setConnectTimeout(DEFAULT_TIMEOUT);
-            connection.setReadTimeout(DEFAULT_TIMEOUT);
-            connection.setRequestProperty("User-Agent", USER_AGENT);
-            
-            // Add custom headers
-            if (headers != null) {
-                for (Map.Entry<String, String> header : headers.entrySet()) {
-                    connection.setRequestProperty(header.getKey(), header.getValue());
+            return response.get();
+        } catch (InterruptedException e) {
+            response.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while requesting " + url);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Request to " + url + " failed", cause);
+        }
+    }
+    
+    /**
+     * Make a GET request without blocking the caller
+     * @return The response body; completes exceptionally with the same exceptions as {@link #get}
+     */
+    public static CompletableFuture<String> getAsync(String url, Map<String, String> headers) {
+        return getResponseAsync(url, headers, DEFAULT_TIMEOUT).thenApply(Response::getBody);
+    }
+    
+    /**
+     * Make a GET request without blocking the caller. The body is decoded as it arrives,
+     * so no thread of the shared client blocks on reads.
+     * @param timeoutMillis how long the whole exchange, body included, may take
+     * @return The response; completes exceptionally with HttpStatusException for non-200 answers
+     *         and HttpTimeoutException if the response is not complete in time. Cancelling it
+     *         aborts the exchange.
+     */
+    public static CompletableFuture<Response> getResponseAsync(String url, Map<String, String> headers, long timeoutMillis) {
+        HttpRequest request;
+        try {
+            request = buildRequest(url, headers, timeoutMillis);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<HttpResponse<String>> exchange = CLIENT.sendAsync(request, HttpClient::bodySubscriber);
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        exchange.thenApply(response -> toResponse(url, response))
+            .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+            .whenComplete((response, failure) -> {
+                if (failure == null) {
+                    result.complete(response);
+                    return;
                 }
+                // Cancelling aborts the exchange and releases its connection
+                exchange.cancel(true);
+                Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause() : failure;
+                result.completeExceptionally(cause instanceof TimeoutException
+                    ? new HttpTimeoutException("request timed out") : cause);
+            });
+        result.whenComplete((response, failure) -> {
+            if (failure instanceof CancellationException) {
+                exchange.cancel(true);
+            }
+        });
+        return result;
+    }
+    
+    private static Response toResponse(String url, HttpResponse<String> response) {
+        Map<String, String> responseHeaders = readHeaders(response);
+        if (response.statusCode() != 200) {
+            throw new CompletionException(new HttpStatusException(response.statusCode(), url, responseHeaders));
+        }
+        return new Response(response.statusCode(), response.body(), responseHeaders);
+    }
+    
+    /**
+     * Decode a successful body as UTF-8, inflating gzip content as it arrives; error bodies are discarded
+     */
+    private static HttpResponse.BodySubscriber<String> bodySubscriber(HttpResponse.ResponseInfo info) {
+        if (info.statusCode() != 200) {
+            return HttpResponse.BodySubscribers.replacing(null);
+        }
+        String encoding = info.headers().firstValue("content-encoding").orElse("");
+        if (encoding.trim().equalsIgnoreCase("gzip")) {
+            return new GzipBodySubscriber();
+        }
+        return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8), String::trim);
+    }
+    
+    /**
+     * GET request with the default headers; caller headers replace defaults of the same name
+     */
+    private static HttpRequest buildRequest(String url, Map<String, String> headers, long timeoutMillis) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+            .timeout(Duration.ofMillis(timeoutMillis))
+            .setHeader("User-Agent", USER_AGENT)
+            .setHeader("Accept-Encoding", "gzip")
+            .GET();
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                request.setHeader(header.getKey(), header.getValue());
             }
-            
-            // Check response code
-            int responseCode = connection.getResponseCode();
-            if (responseCode != HttpURLConnection.HTTP_OK) {
-                throw new IOException("HTTP request failed with response code: " + responseCode + 
-                                    " for URL: " + url);
-            }
-            
-            // Read response
-            StringBuilder response = new StringBuilder();
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(connection.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    response.append(line).append('\n');
+        }
+        return request.build();
+    }
+    
+    /**
+     * Collect response headers with lower-case names (first value wins)
+     */
+    private static Map<String, String> readHeaders(HttpResponse<?> response) {
+        Map<String, String> headers = new HashMap<>();
+        for (Map.Entry<String, List<String>> header : response.headers().map().entrySet()) {
+            if (header.getKey() != null && !header.getValue().isEmpty()) {
+                headers.putIfAbsent(header.getKey().toLowerCase(Locale.ROOT), header.getValue().get(0));
+            }
+        }
+        return headers;
+    }
+    
+    /**
+     * Inflates a gzip body chunk by chunk as the client delivers it, so only the
+     * decompressed text is held in full. Checks the gzip trailer, so a truncated or
+     * damaged body fails instead of being returned short.
+     */
+    private static class GzipBodySubscriber implements HttpResponse.BodySubscriber<String> {
+        private static final int FHCRC = 2;
+        private static final int FEXTRA = 4;
+        private static final int FNAME = 8;
+        private static final int FCOMMENT = 16;
+        
+        private final CompletableFuture<String> body = new CompletableFuture<>();
+        private final Inflater inflater = new Inflater(true);
+        private final CRC32 crc = new CRC32();
+        private final ByteArrayOutputStream text = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream header = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream trailer = new ByteArrayOutputStream();
+        private final byte[] chunk = new byte[8192];
+        private boolean headerRead;
+        private Flow.Subscription subscription;
+        
+        @Override
+        public CompletionStage<String> getBody() {
+            return body;
+        }
+        
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+        
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            try {
+                for (ByteBuffer buffer : buffers) {
+                    accept(buffer);
+                }
+            } catch (IOException | DataFormatException e) {
+                subscription.cancel();
+                fail(e instanceof IOException ? (IOException) e : new ZipException(e.getMessage()));
+                return;
+            }
+            subscription.request(1);
+        }
+        
+        @Override
+        public void onError(Throwable failure) {
+            inflater.end();
+            body.completeExceptionally(failure);
+        }
+        
+        @Override
+        public void onComplete() {
+            if (body.isDone()) {
+                return;
+            }
+            byte[] end = trailer.toByteArray();
+            if (!inflater.finished() || end.length < 8) {
+                fail(new EOFException("Truncated gzip body"));
+            } else if (littleEndianInt(end, 0) != (int) crc.getValue()
+                       || littleEndianInt(end, 4) != (int) inflater.getBytesWritten()) {
+                fail(new ZipException("Corrupt gzip body"));
+            } else {
+                inflater.end();
+                body.complete(new String(text.toByteArray(), StandardCharsets.UTF_8).trim());
+            }
+        }
+        
+        private void accept(ByteBuffer buffer) throws IOException, DataFormatException {
+            if (!headerRead) {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                header.write(bytes);
+                byte[] received = header.toByteArray();
+                int length = headerLength(received);
+                if (length < 0) {
+                    return;
+                }
+                headerRead = true;
+                buffer = ByteBuffer.wrap(received, length, received.length - length);
+            }
+            if (inflater.finished()) {
+                collectTrailer(buffer);
+                return;
+            }
+            inflater.setInput(buffer);
+            while (!inflater.finished() && !inflater.needsInput()) {
+                int inflated = inflater.inflate(chunk);
+                if (inflated == 0 && inflater.needsDictionary()) {
+                    throw new ZipException("Unsupported gzip body");
+                }
+                crc.update(chunk, 0, inflated);
+                text.write(chunk, 0, inflated);
+            }
+            if (inflater.finished()) {
+                collectTrailer(buffer);
+            }
+        }
+        
+        private void collectTrailer(ByteBuffer buffer) {
+            while (buffer.hasRemaining() && trailer.size() < 8) {
+                trailer.write(buffer.get());
+            }
+        }
+        
+        /**
+         * Length of the gzip header at the start of the bytes, or -1 if it is not complete yet
+         */
+        private static int headerLength(byte[] bytes) throws ZipException {
+            if (bytes.length < 10) {
+                return -1;
+            }
+            if ((bytes[0] & 0xff) != 0x1f || (bytes[1] & 0xff) != 0x8b || bytes[2] != 8) {
+                throw new ZipException("Not in gzip format");
+            }
+            int flags = bytes[3];
+            int length = 10;
+            if ((flags & FEXTRA) != 0) {
+                if (bytes.length < length + 2) return -1;
+                length += 2 + ((bytes[length] & 0xff) | (bytes[length + 1] & 0xff) << 8);
+            }
+            for (int field : new int[] { FNAME, FCOMMENT }) {
+                if ((flags & field) != 0) {
+                    while (length < bytes.length && bytes[length] != 0) length++;
+                    if (length >= bytes.length) return -1;
+                    length++;
                 }
             }
-            
-            return response.toString().trim();
-            
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
+            if ((flags & FHCRC) != 0) {
+                length += 2;
             }
+            return length <= bytes.length ? length : -1;
+        }
+        
+        private static int littleEndianInt(byte[] bytes, int offset) {
+            return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8
+                 | (bytes[offset + 2] & 0xff) << 16 | (bytes[offset + 3] & 0xff) << 24;
+        }
+        
+        private void fail(IOException failure) {
+            inflater.end();
+            body.completeExceptionally(failure);
+        }
+    }
+    
+    /**
+     * A successful HTTP response
+     */
+    public static class Response {
+        private final int statusCode;
+        private final String body;
+        private final Map<String, String> headers;
+        
+        public Response(int statusCode, String body, Map<String, String> headers) {
+            this.statusCode = statusCode;
+            this.body = body;
+            this.headers = headers;
+        }
+        
+        public int getStatusCode() { return statusCode; }
+        public String getBody() { return body; }
+        
+        /**
+         * Response headers with lower-case names
+         */
+        public Map<String, String> getHeaders() { return headers; }
+        
+        public String getHeader(String name) {
+            return headers.get(name.toLowerCase(Locale.ROOT));
         }
     }
     
@@ -82,13 +391,6 @@ public class HttpClient {
      * @return The URL-encoded value
      */
     public static String urlEncode(String value) {
-        try {
-            return java.net.URLEncoder.encode(value, "UTF-8");
-        } catch (Exception e) {
-            // Fallback to simple replacement
-            return value.replace(" ", "%20")
-                       .replace("&", "%26")
-                       .replace("=", "%3D");
-        }
+        return java.net.URLEncoder.encode(value, StandardCharsets.UTF_8);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,180 @@
+package com.vinylsystem.common;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Test program for {@link HttpClient} against a local stub HTTP server: plain and
+ * gzip bodies, error statuses with headers, servers that stall before the headers
+ * or in the middle of the body, and asynchronous requests. Exits with status 1 if
+ * a check fails.
+ */
+public class HttpClientTest {
+    private static final long TIMEOUT_MILLIS = 1000;
+    // Random numbers compress poorly, so the gzip body arrives in many chunks
+    private static final String LARGE_TEXT = new Random(42).ints(100000, 0, 1000000)
+        .mapToObj(Integer::toString).collect(Collectors.joining(" "));
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Testing HttpClient against a stub server...\n");
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stub-http");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.createContext("/plain", exchange -> respond(exchange, 200, "hello vinyl".getBytes(StandardCharsets.UTF_8), null));
+        server.createContext("/gzip", exchange -> respond(exchange, 200, gzip("compressed vinyl"), "gzip"));
+        server.createContext("/gzip-large", exchange -> respond(exchange, 200, gzip(LARGE_TEXT), "gzip"));
+        server.createContext("/gzip-named", exchange -> respond(exchange, 200, withFileName(gzip("named vinyl")), "gzip"));
+        server.createContext("/gzip-truncated", exchange -> {
+            byte[] body = gzip(LARGE_TEXT);
+            respond(exchange, 200, Arrays.copyOf(body, body.length / 2), "gzip");
+        });
+        server.createContext("/limited", exchange -> {
+            exchange.getResponseHeaders().add("X-Discogs-Ratelimit-Remaining", "0");
+            respond(exchange, 429, "slow down".getBytes(StandardCharsets.UTF_8), null);
+        });
+        server.createContext("/slow-headers", exchange -> {
+            sleep(TIMEOUT_MILLIS * 5);
+            respond(exchange, 200, "late".getBytes(StandardCharsets.UTF_8), null);
+        });
+        server.createContext("/stalled-body", exchange -> {
+            exchange.sendResponseHeaders(200, 1000);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(new byte[10]);
+                out.flush();
+                sleep(TIMEOUT_MILLIS * 5);
+            } catch (IOException e) {
+                // the client gave up
+            }
+        });
+        server.start();
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        try {
+            System.out.println("=== Test 1: Plain body ===");
+            check("plain body", "hello vinyl".equals(HttpClient.get(base + "/plain")));
+
+            System.out.println("=== Test 2: Gzip body ===");
+            HttpClient.Response gzipped = HttpClient.getResponse(base + "/gzip", null, TIMEOUT_MILLIS);
+            check("gzip body decoded", "compressed vinyl".equals(gzipped.getBody()));
+
+            System.out.println("=== Test 3: Gzip body over many chunks, with a file name header ===");
+            check("large gzip body decoded", LARGE_TEXT.equals(HttpClient.get(base + "/gzip-large")));
+            check("gzip file name skipped", "named vinyl".equals(HttpClient.get(base + "/gzip-named")));
+            try {
+                HttpClient.get(base + "/gzip-truncated");
+                check("truncated gzip body fails", false);
+            } catch (IOException e) {
+                check("truncated gzip body fails", true);
+            }
+
+            System.out.println("=== Test 4: Error status ===");
+            try {
+                HttpClient.getResponse(base + "/limited", null, TIMEOUT_MILLIS);
+                check("429 throws", false);
+            } catch (HttpStatusException e) {
+                check("429 status", e.getStatusCode() == 429);
+                check("429 headers", "0".equals(e.getHeaders().get("x-discogs-ratelimit-remaining")));
+            }
+
+            System.out.println("=== Test 5: Server stalls before the headers ===");
+            expectTimeout("slow headers", base + "/slow-headers");
+
+            System.out.println("=== Test 6: Server stalls in the middle of the body ===");
+            expectTimeout("stalled body", base + "/stalled-body");
+
+            System.out.println("=== Test 7: Asynchronous requests ===");
+            CompletableFuture<HttpClient.Response> plain = HttpClient.getResponseAsync(base + "/plain", null, TIMEOUT_MILLIS);
+            CompletableFuture<HttpClient.Response> stalled = HttpClient.getResponseAsync(base + "/stalled-body", null, TIMEOUT_MILLIS);
+            check("async body", "hello vinyl".equals(plain.get().getBody()));
+            try {
+                stalled.get(TIMEOUT_MILLIS * 2, TimeUnit.MILLISECONDS);
+                check("async stalled body times out", false);
+            } catch (ExecutionException e) {
+                check("async stalled body times out", e.getCause() instanceof HttpTimeoutException);
+            }
+        } finally {
+            server.stop(0);
+        }
+
+        System.out.println(failures == 0 ? "\n=== HttpClient Test Complete! ===" : "\n=== " + failures + " checks failed ===");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void expectTimeout(String name, String url) throws IOException {
+        long start = System.nanoTime();
+        try {
+            HttpClient.getResponse(url, null, TIMEOUT_MILLIS);
+            check(name + " times out", false);
+        } catch (HttpTimeoutException e) {
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            check(name + " times out after " + elapsedMillis + " ms", elapsedMillis < TIMEOUT_MILLIS * 2);
+        }
+    }
+
+    private static void check(String name, boolean passed) {
+        System.out.println((passed ? "  PASS " : "  FAIL ") + name);
+        if (!passed) {
+            failures++;
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body, String encoding) throws IOException {
+        if (encoding != null) {
+            exchange.getResponseHeaders().add("Content-Encoding", encoding);
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Set the FNAME flag and insert a file name after the fixed 10-byte gzip header
+     */
+    private static byte[] withFileName(byte[] gzipped) {
+        byte[] name = "vinyl.txt\0".getBytes(StandardCharsets.ISO_8859_1);
+        byte[] named = new byte[gzipped.length + name.length];
+        System.arraycopy(gzipped, 0, named, 0, 10);
+        named[3] |= 8;
+        System.arraycopy(name, 0, named, 10, name.length);
+        System.arraycopy(gzipped, 10, named, 10 + name.length, gzipped.length - 10);
+        return named;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.vinylsystem.common;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Thrown when an HTTP request completes with a non-success status code.
+ * Carries the response headers so callers can react to rate limit information.
+ */
+public class HttpStatusException extends IOException {
+    private static final long serialVersionUID = 1L;
+    
+    private final int statusCode;
+    // Not serialized; a deserialized exception has no headers
+    private final transient Map<String, String> headers;
+    
+    public HttpStatusException(int statusCode, String url, Map<String, String> headers) {
+        super("HTTP request failed with response code: " + statusCode + " for URL: " + url);
+        this.statusCode = statusCode;
+        this.headers = headers != null ? headers : Collections.emptyMap();
+    }
+    
+    public int getStatusCode() { return statusCode; }
+    
+    /**
+     * Response headers with lower-case names
+     */
+    public Map<String, String> getHeaders() { return headers != null ? headers : Collections.emptyMap(); }
+}
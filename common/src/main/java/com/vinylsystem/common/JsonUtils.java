@@ -1,9 +1,13 @@
 package com.vinylsystem.common;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Simple JSON utility for the vinyl system (avoiding external dependencies)
  */
 public class JsonUtils {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
     
     /**
      * Create JSON string for RegistrationMessage
@@ -34,7 +38,17 @@ public class JsonUtils {
      * Create JSON string for ResponseMessage
      */
     public static String toJson(ResponseMessage msg) {
-        if (msg.getServerIP() != null && msg.getServerPort() != null) {
+        if (msg.getServers() != null) {
+            StringBuilder json = new StringBuilder();
+            json.append("{\"statusCode\":\"").append(escapeJson(msg.getStatusCode()))
+                .append("\",\"message\":\"").append(escapeJson(msg.getMessage()))
+                .append("\",\"servers\":[");
+            for (int i = 0; i < msg.getServers().size(); i++) {
+                if (i > 0) json.append(',');
+                json.append('"').append(escapeJson(msg.getServers().get(i))).append('"');
+            }
+            return json.append("]}").toString();
+        } else if (msg.getServerIP() != null && msg.getServerPort() != null) {
             return String.format(
                 "{\"statusCode\":\"%s\",\"message\":\"%s\",\"serverIP\":\"%s\",\"serverPort\":%d}",
                 escapeJson(msg.getStatusCode()),
@@ -51,6 +65,58 @@ public class JsonUtils {
         }
     }
     
+    /**
+     * Create JSON string for MusicSearchRequest
+     */
+    public static String toJson(MusicSearchRequest msg) {
+        StringBuilder json = new StringBuilder(96);
+        json.append("{\"messageType\":");
+        appendString(json, msg.getMessageType());
+        json.append(",\"query\":");
+        appendString(json, msg.getQuery());
+        json.append(",\"searchType\":");
+        appendString(json, msg.getSearchType());
+        return json.append(",\"limit\":").append(msg.getLimit()).append('}').toString();
+    }
+    
+    /**
+     * Create JSON string for MusicSearchResponse. Built in one pre-sized buffer,
+     * with absent (null) release and artist fields left out.
+     */
+    public static String toJson(MusicSearchResponse msg) {
+        List<MusicRelease> results = msg.getResults();
+        List<MusicArtist> artists = msg.getArtists();
+        int rows = (results != null ? results.size() : 0) + (artists != null ? artists.size() : 0);
+        StringBuilder json = new StringBuilder(128 + rows * 192);
+        json.append("{\"messageType\":");
+        appendString(json, msg.getMessageType());
+        json.append(",\"statusCode\":");
+        appendString(json, msg.getStatusCode());
+        json.append(",\"message\":");
+        appendString(json, msg.getMessage());
+        json.append(",\"totalFound\":").append(msg.getTotalFound());
+        if (msg.isStale()) {
+            json.append(",\"stale\":true");
+        }
+        if (results != null) {
+            json.append(",\"results\":[");
+            for (int i = 0; i < results.size(); i++) {
+                if (i > 0) json.append(',');
+                appendRelease(json, results.get(i));
+            }
+            json.append(']');
+        }
+        if (artists != null) {
+            json.append(",\"artists\":[");
+            for (int i = 0; i < artists.size(); i++) {
+                if (i > 0) json.append(',');
+                appendArtist(json, artists.get(i));
+            }
+            json.append(']');
+        }
+        return json.append('}').toString();
+    }
+    
     /**
      * Parse RegistrationMessage from JSON
      */
@@ -86,55 +152,292 @@ public class JsonUtils {
             msg.setServerIP(serverIP);
             msg.setServerPort(extractIntValue(json, "serverPort"));
         }
+        msg.setServers(extractStringArray(json, "servers"));
+        return msg;
+    }
+    
+    /**
+     * Parse MusicSearchRequest from JSON
+     */
+    public static MusicSearchRequest parseMusicSearchRequest(String json) {
+        MusicSearchRequest msg = new MusicSearchRequest();
+        msg.setMessageType(extractStringValue(json, "messageType"));
+        msg.setQuery(extractStringValue(json, "query"));
+        msg.setSearchType(extractStringValue(json, "searchType"));
+        msg.setLimit(extractIntValue(json, "limit"));
+        return msg;
+    }
+    
+    /**
+     * Parse MusicSearchResponse from JSON
+     */
+    public static MusicSearchResponse parseMusicSearchResponse(String json) {
+        MusicSearchResponse msg = new MusicSearchResponse();
+        msg.setMessageType(extractStringValue(json, "messageType"));
+        msg.setStatusCode(extractStringValue(json, "statusCode"));
+        msg.setMessage(extractStringValue(json, "message"));
+        msg.setTotalFound(extractIntValue(json, "totalFound"));
+        msg.setStale(extractBooleanValue(json, "stale"));
+        
+        List<String> releaseObjects = extractObjectArray(json, "results");
+        if (releaseObjects != null) {
+            List<MusicRelease> results = new ArrayList<>(releaseObjects.size());
+            for (String object : releaseObjects) {
+                MusicRelease release = new MusicRelease();
+                release.setId(extractStringValue(object, "id"));
+                release.setTitle(extractStringValue(object, "title"));
+                release.setArtist(extractStringValue(object, "artist"));
+                release.setYear(extractStringValue(object, "year"));
+                release.setGenre(extractStringValue(object, "genre"));
+                release.setStyle(extractStringValue(object, "style"));
+                release.setFormat(extractStringValue(object, "format"));
+                release.setLabel(extractStringValue(object, "label"));
+                release.setCatalogNumber(extractStringValue(object, "catalogNumber"));
+                release.setCountry(extractStringValue(object, "country"));
+                release.setCoverImage(extractStringValue(object, "coverImage"));
+                results.add(release);
+            }
+            msg.setResults(results);
+        }
+        
+        List<String> artistObjects = extractObjectArray(json, "artists");
+        if (artistObjects != null) {
+            List<MusicArtist> artists = new ArrayList<>(artistObjects.size());
+            for (String object : artistObjects) {
+                MusicArtist artist = new MusicArtist(extractStringValue(object, "id"), extractStringValue(object, "name"));
+                artist.setRealName(extractStringValue(object, "realName"));
+                artist.setProfile(extractStringValue(object, "profile"));
+                List<String> images = extractStringArray(object, "images");
+                if (images != null) {
+                    artist.setImages(images.toArray(new String[0]));
+                }
+                artists.add(artist);
+            }
+            msg.setArtists(artists);
+        }
         return msg;
     }
     
+    private static void appendRelease(StringBuilder json, MusicRelease release) {
+        json.append('{');
+        appendField(json, "id", release.getId());
+        appendField(json, "title", release.getTitle());
+        appendField(json, "artist", release.getArtist());
+        appendField(json, "year", release.getYear());
+        appendField(json, "genre", release.getGenre());
+        appendField(json, "style", release.getStyle());
+        appendField(json, "format", release.getFormat());
+        appendField(json, "label", release.getLabel());
+        appendField(json, "catalogNumber", release.getCatalogNumber());
+        appendField(json, "country", release.getCountry());
+        appendField(json, "coverImage", release.getCoverImage());
+        json.append('}');
+    }
+    
+    private static void appendArtist(StringBuilder json, MusicArtist artist) {
+        json.append('{');
+        appendField(json, "id", artist.getId());
+        appendField(json, "name", artist.getName());
+        appendField(json, "realName", artist.getRealName());
+        appendField(json, "profile", artist.getProfile());
+        if (artist.getImages() != null) {
+            if (json.charAt(json.length() - 1) != '{') json.append(',');
+            json.append("\"images\":[");
+            for (int i = 0; i < artist.getImages().length; i++) {
+                if (i > 0) json.append(',');
+                appendString(json, artist.getImages()[i]);
+            }
+            json.append(']');
+        }
+        json.append('}');
+    }
+    
+    /**
+     * Append "key":"value" to an object being written; skipped for null values
+     */
+    private static void appendField(StringBuilder json, String key, String value) {
+        if (value == null) return;
+        if (json.charAt(json.length() - 1) != '{') json.append(',');
+        json.append('"').append(key).append("\":");
+        appendString(json, value);
+    }
+    
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        if (value != null) appendEscaped(json, value);
+        json.append('"');
+    }
+    
     /**
-     * Extract string value from JSON
+     * Extract string value from JSON, resolving escape sequences
      */
     private static String extractStringValue(String json, String key) {
-        String pattern = "\"" + key + "\":\"";
-        int start = json.indexOf(pattern);
-        if (start == -1) return null;
+        int start = valueStart(json, key);
+        if (start == -1 || json.charAt(start) != '"') return null;
+        
+        StringBuilder value = null; // only needed once an escape shows up
+        int run = start + 1;
+        for (int i = run; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (c == '"') {
+                return value == null ? json.substring(run, i) : value.append(json, run, i).toString();
+            }
+            if (c == '\\' && i + 1 < json.length()) {
+                if (value == null) value = new StringBuilder();
+                value.append(json, run, i);
+                char escaped = json.charAt(++i);
+                switch (escaped) {
+                    case 'n': value.append('\n'); break;
+                    case 'r': value.append('\r'); break;
+                    case 't': value.append('\t'); break;
+                    case 'b': value.append('\b'); break;
+                    case 'f': value.append('\f'); break;
+                    case 'u':
+                        if (i + 4 >= json.length()) return null;
+                        try {
+                            value.append((char) Integer.parseInt(json.substring(i + 1, i + 5), 16));
+                        } catch (NumberFormatException e) {
+                            return null;
+                        }
+                        i += 4;
+                        break;
+                    default: value.append(escaped);
+                }
+                run = i + 1;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Extract array of plain strings from JSON (null if the key is absent)
+     */
+    private static List<String> extractStringArray(String json, String key) {
+        int start = valueStart(json, key);
+        if (start == -1 || json.charAt(start) != '[') return null;
         
-        start += pattern.length();
-        int end = json.indexOf("\"", start);
-        if (end == -1) return null;
+        List<String> values = new ArrayList<>();
+        int pos = skipWhitespace(json, start + 1);
+        while (pos < json.length() && json.charAt(pos) == '"') {
+            int end = json.indexOf("\"", pos + 1);
+            if (end == -1) break;
+            values.add(json.substring(pos + 1, end));
+            pos = skipWhitespace(json, end + 1);
+            if (pos < json.length() && json.charAt(pos) == ',') pos = skipWhitespace(json, pos + 1);
+        }
+        return values;
+    }
+    
+    /**
+     * Extract the objects of an array as JSON substrings (null if the key is absent).
+     * Nesting is tracked outside of strings, so nested objects stay in one piece.
+     */
+    private static List<String> extractObjectArray(String json, String key) {
+        int start = valueStart(json, key);
+        if (start == -1 || json.charAt(start) != '[') return null;
         
-        return json.substring(start, end);
+        List<String> objects = new ArrayList<>();
+        int depth = 0;
+        int objectStart = -1;
+        boolean inString = false;
+        for (int i = start + 1; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (inString) {
+                if (c == '\\') i++;
+                else if (c == '"') inString = false;
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                if (depth++ == 0 && c == '{') objectStart = i;
+            } else if (c == '}' || c == ']') {
+                if (depth == 0) break;
+                if (--depth == 0 && objectStart >= 0) {
+                    objects.add(json.substring(objectStart, i + 1));
+                    objectStart = -1;
+                }
+            }
+        }
+        return objects;
     }
     
     /**
      * Extract integer value from JSON
      */
     private static int extractIntValue(String json, String key) {
-        String pattern = "\"" + key + "\":";
-        int start = json.indexOf(pattern);
+        int start = valueStart(json, key);
         if (start == -1) return 0;
         
-        start += pattern.length();
-        int end = Math.min(
-            json.indexOf(",", start) == -1 ? json.length() : json.indexOf(",", start),
-            json.indexOf("}", start) == -1 ? json.length() : json.indexOf("}", start)
-        );
-        
-        String value = json.substring(start, end).trim();
+        int end = start;
+        while (end < json.length() && (Character.isDigit(json.charAt(end)) || json.charAt(end) == '-')) {
+            end++;
+        }
         try {
-            return Integer.parseInt(value);
+            return Integer.parseInt(json.substring(start, end));
         } catch (NumberFormatException e) {
             return 0;
         }
     }
     
+    /**
+     * Extract boolean value from JSON; false if absent
+     */
+    private static boolean extractBooleanValue(String json, String key) {
+        int start = valueStart(json, key);
+        return start != -1 && json.startsWith("true", start);
+    }
+    
+    /**
+     * Position of the value for a key ("key" followed by ':'), or -1 if the key is absent
+     */
+    private static int valueStart(String json, String key) {
+        String quoted = "\"" + key + "\"";
+        int from = 0;
+        while (true) {
+            int at = json.indexOf(quoted, from);
+            if (at == -1) return -1;
+            int pos = skipWhitespace(json, at + quoted.length());
+            if (pos < json.length() && json.charAt(pos) == ':') {
+                pos = skipWhitespace(json, pos + 1);
+                return pos < json.length() ? pos : -1;
+            }
+            from = at + 1;
+        }
+    }
+    
+    private static int skipWhitespace(String json, int pos) {
+        while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) pos++;
+        return pos;
+    }
+    
     /**
      * Escape JSON string
      */
     private static String escapeJson(String str) {
         if (str == null) return "";
-        return str.replace("\\", "\\\\")
-                  .replace("\"", "\\\"")
-                  .replace("\n", "\\n")
-                  .replace("\r", "\\r")
-                  .replace("\t", "\\t");
+        StringBuilder escaped = new StringBuilder(str.length() + 8);
+        appendEscaped(escaped, str);
+        return escaped.toString();
+    }
+    
+    /**
+     * Append a string with JSON escaping, copying unescaped runs in one go
+     */
+    private static void appendEscaped(StringBuilder json, String str) {
+        int run = 0;
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c != '"' && c != '\\' && c >= 0x20) continue;
+            json.append(str, run, i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default: json.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+            }
+            run = i + 1;
+        }
+        json.append(str, run, str.length());
     }
 }
\ No newline at end of file
@@ -0,0 +1,230 @@
+package com.vinylsystem.common;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local catalog file of releases and artists, built from Discogs data dumps.
+ *
+ * The file is a gzip stream holding a header, a sequence of tagged binary
+ * records (releases use {@link ReleaseCodec}) and a trailer with the record
+ * count. Readers stream through it, so catalogs of any size can be loaded
+ * record by record. A catalog without a trailer is reported as truncated.
+ */
+public class LocalCatalog {
+    private static final int MAGIC = 0x56434154; // "VCAT"
+    private static final int VERSION = 1;
+    private static final int TAG_END = 0;
+    private static final int TAG_RELEASE = 1;
+    private static final int TAG_ARTIST = 2;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_STRING_BYTES = 1 << 20;
+
+    /**
+     * Receives the records of a catalog in file order
+     */
+    public interface Visitor {
+        void release(MusicRelease release) throws IOException;
+        void artist(MusicArtist artist) throws IOException;
+    }
+
+    /**
+     * Stream every record of a catalog file to the visitor
+     * @return number of records read
+     */
+    public static long read(Path file, Visitor visitor) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a catalog file: " + file);
+            }
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported catalog version: " + version);
+            }
+
+            long count = 0;
+            while (true) {
+                int tag;
+                try {
+                    tag = in.readUnsignedByte();
+                } catch (EOFException e) {
+                    throw new IOException("Catalog is truncated after " + count + " records: " + file);
+                }
+                switch (tag) {
+                    case TAG_RELEASE:
+                        visitor.release(ReleaseCodec.readRelease(in));
+                        break;
+                    case TAG_ARTIST:
+                        visitor.artist(readArtist(in));
+                        break;
+                    case TAG_END:
+                        long expected = in.readLong();
+                        if (expected != count) {
+                            throw new IOException("Catalog record count mismatch: expected " + expected + ", read " + count);
+                        }
+                        return count;
+                    default:
+                        throw new IOException("Unknown catalog record tag: " + tag);
+                }
+                count++;
+            }
+        }
+    }
+
+    /**
+     * Writes a catalog to a temporary file that replaces the target on close,
+     * so a failed import never leaves a half-written catalog behind
+     */
+    public static class Writer implements Closeable {
+        private final Path target;
+        private final Path tempFile;
+        private final DataOutputStream out;
+        private long releaseCount;
+        private long artistCount;
+        private boolean closed;
+
+        public Writer(Path target) throws IOException {
+            this.target = target;
+            Path parent = target.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            this.tempFile = target.resolveSibling(target.getFileName() + ".tmp");
+            this.out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(tempFile), BUFFER_SIZE), BUFFER_SIZE));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+        }
+
+        public void writeRelease(MusicRelease release) throws IOException {
+            out.writeByte(TAG_RELEASE);
+            ReleaseCodec.writeRelease(out, release);
+            releaseCount++;
+        }
+
+        public void writeArtist(MusicArtist artist) throws IOException {
+            out.writeByte(TAG_ARTIST);
+            LocalCatalog.writeArtist(out, artist);
+            artistCount++;
+        }
+
+        public long getReleaseCount() { return releaseCount; }
+        public long getArtistCount() { return artistCount; }
+
+        /**
+         * Discard the partial catalog
+         */
+        public void abort() {
+            if (closed) return;
+            closed = true;
+            try {
+                out.close();
+            } catch (IOException e) {
+                // the file is deleted anyway
+            }
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException e) {
+                System.err.println("Could not delete partial catalog " + tempFile + ": " + e.getMessage());
+            }
+        }
+
+        /**
+         * Finish the catalog and move it into place
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            out.writeByte(TAG_END);
+            out.writeLong(releaseCount + artistCount);
+            out.close();
+            try {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    private static void writeArtist(DataOutputStream out, MusicArtist artist) throws IOException {
+        writeString(out, artist.getId());
+        writeString(out, artist.getName());
+        writeString(out, artist.getRealName());
+        writeString(out, artist.getProfile());
+        writeStrings(out, artist.getAliases());
+        writeStrings(out, artist.getImages());
+        writeStrings(out, artist.getGenres());
+    }
+
+    private static MusicArtist readArtist(DataInputStream in) throws IOException {
+        MusicArtist artist = new MusicArtist();
+        artist.setId(readString(in));
+        artist.setName(readString(in));
+        artist.setRealName(readString(in));
+        artist.setProfile(readString(in));
+        artist.setAliases(readStrings(in));
+        artist.setImages(readStrings(in));
+        artist.setGenres(readStrings(in));
+        return artist;
+    }
+
+    // Strings are length-prefixed UTF-8; -1 marks null
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) return null;
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new IOException("Invalid string length in catalog: " + length);
+        }
+        byte[] utf8 = new byte[length];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static void writeStrings(DataOutputStream out, String[] values) throws IOException {
+        if (values == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(values.length);
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count == -1) return null;
+        if (count < 0 || count > MAX_STRING_BYTES) {
+            throw new IOException("Invalid array length in catalog: " + count);
+        }
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = readString(in);
+        }
+        return values;
+    }
+}
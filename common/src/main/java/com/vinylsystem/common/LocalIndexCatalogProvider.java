@@ -0,0 +1,62 @@
+package com.vinylsystem.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Answers release searches and lookups by ID from the local catalog index.
+ * It misses while the index is still loading, on queries without hits, and
+ * for artist searches and paged searches, which the index does not serve here.
+ */
+public class LocalIndexCatalogProvider implements MusicCatalogProvider {
+    private final Supplier<ReleaseSearchIndex> index;
+
+    /**
+     * @param index the current index, or null while there is none
+     */
+    public LocalIndexCatalogProvider(Supplier<ReleaseSearchIndex> index) {
+        this.index = index;
+    }
+
+    @Override
+    public String getName() {
+        return "local";
+    }
+
+    @Override
+    public DiscogsSearchResult searchReleaseResults(String query, int limit, DiscogsRateLimiter.Priority priority) {
+        ReleaseSearchIndex current = index.get();
+        if (current == null) {
+            return null;
+        }
+        List<ReleaseSearchIndex.Hit> hits = current.search(SearchQuery.parse(query), limit, false).getHits();
+        if (hits.isEmpty()) {
+            return null;
+        }
+        List<MusicRelease> releases = new ArrayList<>(hits.size());
+        for (ReleaseSearchIndex.Hit hit : hits) {
+            releases.add(hit.getRelease());
+        }
+        return new DiscogsSearchResult(releases, releases.size());
+    }
+
+    @Override
+    public DiscogsSearchResult searchReleasesPage(String query, int page, int perPage, DiscogsRateLimiter.Priority priority,
+                                                  Consumer<MusicRelease> consumer) {
+        return null;
+    }
+
+    @Override
+    public List<MusicArtist> searchArtists(String artistName, int limit) {
+        return null;
+    }
+
+    @Override
+    public MusicRelease getRelease(String releaseId, DiscogsRateLimiter.Priority priority) {
+        ReleaseSearchIndex current = index.get();
+        MusicRelease release = current != null ? current.findById(releaseId.trim()) : null;
+        return release instanceof CompactRelease ? ((CompactRelease) release).toMusicRelease() : release;
+    }
+}
@@ -0,0 +1,51 @@
+package com.vinylsystem.common;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A source of release and artist data, such as Discogs, a cache or a local catalog.
+ * Providers are combined into a {@link CatalogProviderChain}; a null answer means
+ * the provider does not know and the next one in the chain is asked.
+ */
+public interface MusicCatalogProvider {
+
+    /**
+     * Short name used in configuration and logs
+     */
+    String getName();
+
+    /**
+     * Releases matching the query, or null if this provider cannot answer
+     * @param priority scheduling priority of any upstream requests this needs
+     */
+    DiscogsSearchResult searchReleaseResults(String query, int limit, DiscogsRateLimiter.Priority priority)
+        throws IOException;
+
+    /**
+     * One page of release search results, handing each release to the consumer as it
+     * becomes available, or null if this provider cannot answer
+     * @param page 1-based page number
+     * @param priority scheduling priority of any upstream requests this needs
+     */
+    DiscogsSearchResult searchReleasesPage(String query, int page, int perPage, DiscogsRateLimiter.Priority priority,
+                                           Consumer<MusicRelease> consumer) throws IOException;
+
+    /**
+     * Artists matching the name, or null if this provider cannot answer
+     */
+    List<MusicArtist> searchArtists(String artistName, int limit) throws IOException;
+
+    /**
+     * Details of a release, or null if this provider does not have it
+     */
+    MusicRelease getRelease(String releaseId, DiscogsRateLimiter.Priority priority) throws IOException;
+
+    /**
+     * Requests that can be answered right now without waiting for rate limit budget
+     */
+    default int getAvailableRequests() {
+        return Integer.MAX_VALUE;
+    }
+}
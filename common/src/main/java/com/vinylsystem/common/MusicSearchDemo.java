@@ -35,10 +35,9 @@ public class MusicSearchDemo {
             // Send search query
             writer.println(query);
             
-            // Read response
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println(line);
+            // Read one framed response
+            if (!ResponseFraming.readResponse(reader, System.out::println)) {
+                System.err.println("Server closed connection without response");
             }
             
         } catch (IOException e) {
@@ -6,7 +6,7 @@ package com.vinylsystem.common;
 public class MusicSearchRequest {
     private String messageType;
     private String query;
-    private String searchType; // "release", "artist", "album"
+    private String searchType; // "release" (default), "artist" or "release_id"
     private int limit;
     
     public MusicSearchRequest() {}
@@ -10,7 +10,9 @@ public class MusicSearchResponse {
     private String statusCode;
     private String message;
     private List<MusicRelease> results;
+    private List<MusicArtist> artists; // set instead of results for artist searches
     private int totalFound;
+    private boolean stale; // results come from an expired cache entry
     
     public MusicSearchResponse() {}
     
@@ -41,12 +43,19 @@ public class MusicSearchResponse {
     public List<MusicRelease> getResults() { return results; }
     public void setResults(List<MusicRelease> results) { this.results = results; }
     
+    public List<MusicArtist> getArtists() { return artists; }
+    public void setArtists(List<MusicArtist> artists) { this.artists = artists; }
+    
     public int getTotalFound() { return totalFound; }
     public void setTotalFound(int totalFound) { this.totalFound = totalFound; }
     
+    public boolean isStale() { return stale; }
+    public void setStale(boolean stale) { this.stale = stale; }
+    
     @Override
     public String toString() {
-        return String.format("MusicSearchResponse{status='%s', message='%s', resultsCount=%d, totalFound=%d}",
-                statusCode, message, results != null ? results.size() : 0, totalFound);
+        return String.format("MusicSearchResponse{status='%s', message='%s', resultsCount=%d, artistsCount=%d, totalFound=%d%s}",
+                statusCode, message, results != null ? results.size() : 0, artists != null ? artists.size() : 0, totalFound,
+                stale ? ", stale" : "");
     }
 }
\ No newline at end of file
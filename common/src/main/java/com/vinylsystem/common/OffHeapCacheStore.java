@@ -0,0 +1,365 @@
+package com.vinylsystem.common;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Key/value store for cached search results that keeps both the values and the index
+ * outside the Java heap, so a cache of several gigabytes adds nothing for the garbage
+ * collector to trace or copy. The heap holds only a few arrays with one slot per slab.
+ *
+ * Records are appended to fixed-size slabs of direct memory, allocated as they are
+ * needed. When the slabs are full, a whole slab is reclaimed with the CLOCK algorithm:
+ * a slab that served a hit since the hand last passed it gets a second chance, and the
+ * first one that did not is emptied and reused. Overwritten records stay in their slab
+ * until it is reclaimed.
+ *
+ * Keys are found through an open-addressing hash table with linear probing, also in
+ * direct memory. Each slot holds the 64-bit key hash and the record location; the key
+ * bytes stored in the record are compared to rule out hash collisions.
+ *
+ * Record layout: key hash, expiry time (epoch millis), key length, value length,
+ * key bytes, value bytes.
+ *
+ * Direct memory is limited by -XX:MaxDirectMemorySize, which defaults to the maximum
+ * heap size; raise it for stores larger than the heap. The memory is returned when the
+ * closed store is garbage collected.
+ */
+public class OffHeapCacheStore implements Closeable {
+    private static final int HEADER_SIZE = 24;
+    private static final int EXPIRY_OFFSET = 8;
+    private static final int KEY_LENGTH_OFFSET = 16;
+    private static final int VALUE_LENGTH_OFFSET = 20;
+    private static final int MIN_SLAB_BYTES = 64 * 1024;
+    private static final int MIN_INDEX_SLOTS = 1024;
+    private static final int MAX_INDEX_SLOTS = 1 << 26; // 1 GB of index
+    private static final double MAX_LOAD = 0.7;
+    // Assume roughly 2 KB per entry when sizing the index, like the memory tier's sketch
+    private static final int EXPECTED_ENTRY_BYTES = 2048;
+
+    private final int slabBytes;
+    private int maxSlabs;
+    private final ByteBuffer[] slabs;
+    private final int[] slabUsed;
+    private final boolean[] referenced;
+    private int allocatedSlabs;
+    private int activeSlab = -1;
+    private int hand;
+
+    // Two longs per slot: key hash, record location + 1 (0 = empty)
+    private LongBuffer index;
+    private int indexMask;
+    private int entries;
+    private boolean closed;
+
+    private long hits;
+    private long misses;
+    private long expired;
+    private long writes;
+    private long rejected;
+    private long evictedSlabs;
+    private long evictedEntries;
+
+    /**
+     * @param maxBytes direct memory for records; at least two slabs are used
+     * @param slabBytes size of each slab, which also bounds the size of one record
+     */
+    public OffHeapCacheStore(long maxBytes, long slabBytes) {
+        if (maxBytes <= 0 || slabBytes <= 0) {
+            throw new IllegalArgumentException("Off-heap cache and slab sizes must be positive");
+        }
+        this.slabBytes = (int) Math.max(MIN_SLAB_BYTES, Math.min(slabBytes, Integer.MAX_VALUE - 8));
+        this.maxSlabs = (int) Math.max(2, Math.min(Integer.MAX_VALUE - 8, (maxBytes + this.slabBytes - 1) / this.slabBytes));
+        this.slabs = new ByteBuffer[maxSlabs];
+        this.slabUsed = new int[maxSlabs];
+        this.referenced = new boolean[maxSlabs];
+
+        long expectedEntries = (long) maxSlabs * this.slabBytes / EXPECTED_ENTRY_BYTES;
+        long slots = Long.highestOneBit(Math.max(MIN_INDEX_SLOTS, (long) (expectedEntries / MAX_LOAD)) - 1) << 1;
+        allocateIndex((int) Math.min(MAX_INDEX_SLOTS, slots));
+    }
+
+    /**
+     * Value for the key, or null if absent or expired
+     */
+    public synchronized byte[] get(String key) {
+        if (closed) {
+            return null;
+        }
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int slot = findSlot(hash(keyBytes), keyBytes);
+        if (slot < 0) {
+            misses++;
+            return null;
+        }
+        long location = index.get(2 * slot + 1) - 1;
+        ByteBuffer slab = slabs[(int) (location >>> 32)];
+        int offset = (int) location;
+        if (slab.getLong(offset + EXPIRY_OFFSET) <= System.currentTimeMillis()) {
+            removeSlot(slot);
+            expired++;
+            misses++;
+            return null;
+        }
+        referenced[(int) (location >>> 32)] = true;
+        byte[] value = new byte[slab.getInt(offset + VALUE_LENGTH_OFFSET)];
+        slab.get(offset + HEADER_SIZE + keyBytes.length, value);
+        hits++;
+        return value;
+    }
+
+    /**
+     * Expiry time (epoch millis) of the value stored for the key, or 0 if there is none
+     */
+    public synchronized long expiresAt(String key) {
+        if (closed) {
+            return 0;
+        }
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int slot = findSlot(hash(keyBytes), keyBytes);
+        if (slot < 0) {
+            return 0;
+        }
+        long location = index.get(2 * slot + 1) - 1;
+        return slabs[(int) (location >>> 32)].getLong((int) location + EXPIRY_OFFSET);
+    }
+
+    /**
+     * Store a value, replacing any older value for the key
+     * @return false if the record is larger than a slab or no direct memory could be allocated
+     */
+    public synchronized boolean put(String key, byte[] value, long ttlMillis) {
+        if (closed) {
+            return false;
+        }
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        long hash = hash(keyBytes);
+        int existing = findSlot(hash, keyBytes);
+        long recordBytes = (long) HEADER_SIZE + keyBytes.length + value.length;
+        if (existing < 0 && entries + 1 > (indexMask + 1) * MAX_LOAD) {
+            if (indexMask + 1 >= MAX_INDEX_SLOTS) {
+                rejected++;
+                return false;
+            }
+            allocateIndex((indexMask + 1) * 2);
+        }
+        if (recordBytes > slabBytes || !reserve((int) recordBytes)) {
+            if (existing >= 0) {
+                removeSlot(existing);
+            }
+            rejected++;
+            return false;
+        }
+        // Reclaiming a slab may have dropped or moved the existing entry
+        existing = findSlot(hash, keyBytes);
+
+        ByteBuffer slab = slabs[activeSlab];
+        int offset = slabUsed[activeSlab];
+        slab.putLong(offset, hash);
+        slab.putLong(offset + EXPIRY_OFFSET, System.currentTimeMillis() + ttlMillis);
+        slab.putInt(offset + KEY_LENGTH_OFFSET, keyBytes.length);
+        slab.putInt(offset + VALUE_LENGTH_OFFSET, value.length);
+        slab.put(offset + HEADER_SIZE, keyBytes);
+        slab.put(offset + HEADER_SIZE + keyBytes.length, value);
+        slabUsed[activeSlab] += (int) recordBytes;
+
+        long location = ((long) activeSlab << 32 | offset) + 1;
+        if (existing >= 0) {
+            index.put(2 * existing + 1, location);
+        } else {
+            insert(hash, location);
+        }
+        writes++;
+        return true;
+    }
+
+    public synchronized int size() {
+        return entries;
+    }
+
+    /**
+     * Index slot where the probe for the key starts; keys with the same home slot share a probe run
+     */
+    synchronized int homeSlot(String key) {
+        return home(hash(key.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Drop the slabs and the index; their memory is freed once they are garbage collected
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (int i = 0; i < allocatedSlabs; i++) {
+            slabs[i] = null;
+        }
+        index = null;
+        entries = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long usedBytes = 0;
+        for (int i = 0; i < allocatedSlabs; i++) {
+            usedBytes += slabUsed[i];
+        }
+        return String.format("entries=%d, slabs=%d/%d x %d KB, used=%d MB, index=%d KB, hits=%d, misses=%d, " +
+                             "expired=%d, writes=%d, rejected=%d, evictedSlabs=%d, evictedEntries=%d",
+                entries, allocatedSlabs, maxSlabs, slabBytes / 1024, usedBytes / (1024 * 1024),
+                index == null ? 0 : (long) (indexMask + 1) * 16 / 1024, hits, misses, expired, writes,
+                rejected, evictedSlabs, evictedEntries);
+    }
+
+    /**
+     * Make room for a record in the active slab, moving to a new or reclaimed slab if needed
+     */
+    private boolean reserve(int recordBytes) {
+        if (activeSlab >= 0 && slabBytes - slabUsed[activeSlab] >= recordBytes) {
+            return true;
+        }
+        if (allocatedSlabs < maxSlabs) {
+            try {
+                slabs[allocatedSlabs] = ByteBuffer.allocateDirect(slabBytes).order(ByteOrder.nativeOrder());
+                activeSlab = allocatedSlabs++;
+                return true;
+            } catch (OutOfMemoryError e) {
+                System.err.println("Off-heap cache limited to " + allocatedSlabs + " slabs: " + e.getMessage());
+                maxSlabs = allocatedSlabs;
+                if (maxSlabs == 0) {
+                    return false;
+                }
+            }
+        }
+        // CLOCK: clear the bit of slabs that had hits and reclaim the first that had none
+        while (true) {
+            int candidate = hand;
+            hand = (hand + 1) % maxSlabs;
+            if (referenced[candidate]) {
+                referenced[candidate] = false;
+            } else {
+                evictSlab(candidate);
+                activeSlab = candidate;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Drop the index entries that still point into the slab and mark it empty
+     */
+    private void evictSlab(int slabNumber) {
+        ByteBuffer slab = slabs[slabNumber];
+        int offset = 0;
+        while (offset < slabUsed[slabNumber]) {
+            long hash = slab.getLong(offset);
+            long location = ((long) slabNumber << 32 | offset) + 1;
+            for (int slot = home(hash); ; slot = (slot + 1) & indexMask) {
+                long stored = index.get(2 * slot + 1);
+                if (stored == 0) {
+                    break;
+                }
+                if (stored == location) {
+                    removeSlot(slot);
+                    evictedEntries++;
+                    break;
+                }
+            }
+            offset += HEADER_SIZE + slab.getInt(offset + KEY_LENGTH_OFFSET) + slab.getInt(offset + VALUE_LENGTH_OFFSET);
+        }
+        slabUsed[slabNumber] = 0;
+        referenced[slabNumber] = false;
+        evictedSlabs++;
+    }
+
+    private int findSlot(long hash, byte[] keyBytes) {
+        for (int slot = home(hash); ; slot = (slot + 1) & indexMask) {
+            long location = index.get(2 * slot + 1);
+            if (location == 0) {
+                return -1;
+            }
+            if (index.get(2 * slot) == hash && keyEquals(location - 1, keyBytes)) {
+                return slot;
+            }
+        }
+    }
+
+    private boolean keyEquals(long location, byte[] keyBytes) {
+        ByteBuffer slab = slabs[(int) (location >>> 32)];
+        int offset = (int) location;
+        if (slab.getInt(offset + KEY_LENGTH_OFFSET) != keyBytes.length) {
+            return false;
+        }
+        int keyOffset = offset + HEADER_SIZE;
+        for (int i = 0; i < keyBytes.length; i++) {
+            if (slab.get(keyOffset + i) != keyBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void insert(long hash, long location) {
+        int slot = home(hash);
+        while (index.get(2 * slot + 1) != 0) {
+            slot = (slot + 1) & indexMask;
+        }
+        index.put(2 * slot, hash);
+        index.put(2 * slot + 1, location);
+        entries++;
+    }
+
+    /**
+     * Empty a slot, shifting later entries of the probe run back so lookups need no tombstones
+     */
+    private void removeSlot(int slot) {
+        int hole = slot;
+        for (int next = (hole + 1) & indexMask; index.get(2 * next + 1) != 0; next = (next + 1) & indexMask) {
+            int home = home(index.get(2 * next));
+            // Move the entry unless its home lies after the hole in the run
+            if (((next - home) & indexMask) >= ((next - hole) & indexMask)) {
+                index.put(2 * hole, index.get(2 * next));
+                index.put(2 * hole + 1, index.get(2 * next + 1));
+                hole = next;
+            }
+        }
+        index.put(2 * hole, 0);
+        index.put(2 * hole + 1, 0);
+        entries--;
+    }
+
+    private void allocateIndex(int slots) {
+        LongBuffer previous = index;
+        int previousSlots = previous == null ? 0 : indexMask + 1;
+        index = ByteBuffer.allocateDirect(slots * 16).order(ByteOrder.nativeOrder()).asLongBuffer();
+        indexMask = slots - 1;
+        entries = 0;
+        for (int slot = 0; slot < previousSlots; slot++) {
+            long location = previous.get(2 * slot + 1);
+            if (location != 0) {
+                insert(previous.get(2 * slot), location);
+            }
+        }
+    }
+
+    private int home(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & indexMask;
+    }
+
+    /**
+     * FNV-1a over the key bytes, with a final mix so similar keys spread over the table
+     */
+    private static long hash(byte[] keyBytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : keyBytes) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
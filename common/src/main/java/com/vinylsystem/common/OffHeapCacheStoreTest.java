@@ -0,0 +1,160 @@
+package com.vinylsystem.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Test program for {@link OffHeapCacheStore}: keys that share a probe run stay reachable
+ * when others in the run expire or are evicted with their slab, and keep the value and
+ * expiry they were stored with. Exits with status 1 if a check fails.
+ */
+public class OffHeapCacheStoreTest {
+    // Four 64 KB slabs hold about 240 of the 1 KB values, so filling with 1000 reclaims slabs
+    private static final long SLAB_BYTES = 64 * 1024;
+    private static final long MAX_BYTES = 4 * SLAB_BYTES;
+    private static final int VALUE_BYTES = 1000;
+    private static final int FILL_ENTRIES = 1000;
+    private static final long HOUR_MILLIS = 3_600_000;
+    private static final long SHORT_TTL_MILLIS = 100;
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Testing OffHeapCacheStore...\n");
+
+        System.out.println("=== Test 1: Expired keys in a collision chain ===");
+        testExpiryInChain();
+
+        System.out.println("=== Test 2: Filling past capacity with collision chains ===");
+        testFillPastCapacity();
+
+        System.out.println(failures == 0 ? "\n=== OffHeapCacheStore Test Complete! ===" : "\n=== " + failures + " checks failed ===");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void testExpiryInChain() throws InterruptedException {
+        OffHeapCacheStore store = new OffHeapCacheStore(MAX_BYTES, SLAB_BYTES);
+        try {
+            // Eight keys with one home slot, then two homed on the next slot that probe past the run
+            List<String> chain = collidingKeys(store, "chain-", 500, 8);
+            List<String> neighbours = collidingKeys(store, "next-", 501, 2);
+            Map<String, Long> expiries = new HashMap<>();
+            for (int i = 0; i < chain.size(); i++) {
+                // Every other key in the run expires, starting with the one in the home slot
+                long ttl = i % 2 == 0 ? SHORT_TTL_MILLIS : HOUR_MILLIS;
+                store.put(chain.get(i), value(chain.get(i)), ttl);
+                expiries.put(chain.get(i), store.expiresAt(chain.get(i)));
+            }
+            for (String key : neighbours) {
+                store.put(key, value(key), HOUR_MILLIS);
+                expiries.put(key, store.expiresAt(key));
+            }
+            check("all keys stored", store.size() == chain.size() + neighbours.size());
+            Thread.sleep(SHORT_TTL_MILLIS * 2);
+
+            for (int i = 0; i < chain.size(); i += 2) {
+                check("expired key " + chain.get(i) + " absent", store.get(chain.get(i)) == null);
+            }
+            List<String> remaining = new ArrayList<>(neighbours);
+            for (int i = 1; i < chain.size(); i += 2) {
+                remaining.add(chain.get(i));
+            }
+            for (String key : remaining) {
+                check("key " + key + " found with its value and expiry",
+                      Arrays.equals(value(key), store.get(key)) && store.expiresAt(key) == expiries.get(key));
+            }
+            check("entry count after expiry", store.size() == remaining.size());
+        } finally {
+            store.close();
+        }
+    }
+
+    private static void testFillPastCapacity() {
+        OffHeapCacheStore store = new OffHeapCacheStore(MAX_BYTES, SLAB_BYTES);
+        try {
+            // Chains are spread through the fill, so slab reclaim removes entries from the middle of runs
+            List<String> keys = new ArrayList<>();
+            for (int home = 0; home < 8; home++) {
+                keys.addAll(collidingKeys(store, "chain-" + home + "-", home * 100, 6));
+            }
+            int chainKeys = keys.size();
+            for (int i = 0; i < FILL_ENTRIES; i++) {
+                keys.add("fill-" + i);
+            }
+            Map<String, Long> expiries = new HashMap<>();
+            for (int i = 0; i < FILL_ENTRIES; i++) {
+                putAndRecord(store, keys.get(chainKeys + i), expiries);
+                if (i % 20 == 0 && i / 20 < chainKeys) {
+                    putAndRecord(store, keys.get(i / 20), expiries);
+                }
+            }
+            // A second round rewrites the chains between more new keys
+            for (int i = 0; i < chainKeys; i++) {
+                putAndRecord(store, keys.get(i), expiries);
+                putAndRecord(store, "refill-" + i, expiries);
+                keys.add("refill-" + i);
+            }
+
+            int found = 0;
+            boolean allMatch = true;
+            for (String key : keys) {
+                byte[] stored = store.get(key);
+                if (stored != null) {
+                    found++;
+                    allMatch &= Arrays.equals(value(key), stored) && store.expiresAt(key) == expiries.get(key);
+                }
+            }
+            System.out.println("  " + store);
+            check("slabs were reclaimed", found < keys.size());
+            check("every key found has its own value and expiry", allMatch);
+            check("entry count matches the keys found", store.size() == found);
+
+            // The last writes are in the newest two slabs, so none of them can have been evicted
+            boolean recentFound = true;
+            for (int i = chainKeys - 20; i < chainKeys; i++) {
+                recentFound &= Arrays.equals(value(keys.get(i)), store.get(keys.get(i)))
+                    && store.expiresAt(keys.get(i)) == expiries.get(keys.get(i));
+            }
+            check("most recent chain keys found", recentFound);
+        } finally {
+            store.close();
+        }
+    }
+
+    private static void putAndRecord(OffHeapCacheStore store, String key, Map<String, Long> expiries) {
+        store.put(key, value(key), HOUR_MILLIS);
+        expiries.put(key, store.expiresAt(key));
+    }
+
+    /**
+     * The first keys with the prefix whose probe starts at the slot
+     */
+    private static List<String> collidingKeys(OffHeapCacheStore store, String prefix, int homeSlot, int count) {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; keys.size() < count; i++) {
+            String key = prefix + i;
+            if (store.homeSlot(key) == homeSlot) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    private static byte[] value(String key) {
+        byte[] bytes = Arrays.copyOf(key.getBytes(StandardCharsets.UTF_8), VALUE_BYTES);
+        Arrays.fill(bytes, key.length(), VALUE_BYTES, (byte) '.');
+        return bytes;
+    }
+
+    private static void check(String name, boolean passed) {
+        System.out.println((passed ? "  PASS " : "  FAIL ") + name);
+        if (!passed) {
+            failures++;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.vinylsystem.common;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Fetches a run of release search pages for one query. The first page is fetched on
+ * the calling thread and tells how many pages exist; the rest are fetched concurrently,
+ * no more at once than the parallelism and the provider's free rate budget allow, and
+ * handed to the consumer strictly in page order as each head page arrives.
+ *
+ * When the pool is saturated, pages are fetched on the calling thread instead.
+ */
+public class ParallelPageFetcher {
+    private final ThreadPoolExecutor executor;
+    private final int parallelism;
+
+    public ParallelPageFetcher(int parallelism, int queueSize) {
+        this.parallelism = Math.max(1, parallelism);
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(this.parallelism, this.parallelism, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueSize)), runnable -> {
+                Thread thread = new Thread(runnable, "page-fetch-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Fetch pages firstPage .. firstPage + pageCount - 1, stopping early at a short page
+     * or the last page the provider reports
+     * @return all fetched releases in order, with the item and page counts of the first
+     *         page, the number of the last page fetched as page, and stale if any page was;
+     *         null if the provider cannot answer the first page
+     * @throws IOException if any fetched page fails
+     */
+    public DiscogsSearchResult fetch(MusicCatalogProvider provider, String query, int firstPage, int pageCount,
+                                     int perPage, DiscogsRateLimiter.Priority priority,
+                                     Consumer<MusicRelease> consumer) throws IOException {
+        DiscogsSearchResult first = provider.searchReleasesPage(query, firstPage, perPage, priority, consumer);
+        if (first == null) {
+            return null;
+        }
+        List<MusicRelease> releases = new ArrayList<>(first.getResults());
+        DiscogsSearchResult merged = new DiscogsSearchResult(releases, first.getTotalResults());
+        merged.setPage(firstPage);
+        merged.setPages(first.getPages());
+        merged.setPerPage(perPage);
+        merged.setStale(first.isStale());
+
+        int lastPage = firstPage + pageCount - 1;
+        if (first.getPages() > 0) {
+            lastPage = Math.min(lastPage, first.getPages());
+        }
+        if (first.getResults().size() < perPage || lastPage <= firstPage) {
+            return merged;
+        }
+
+        // Keep only as many pages in flight as can be sent without waiting for budget
+        int window = Math.max(1, Math.min(parallelism, provider.getAvailableRequests()));
+        Deque<Future<DiscogsSearchResult>> inFlight = new ArrayDeque<>();
+        int nextPage = firstPage + 1;
+        try {
+            while (nextPage <= lastPage || !inFlight.isEmpty()) {
+                while (nextPage <= lastPage && inFlight.size() < window) {
+                    int page = nextPage++;
+                    inFlight.add(executor.submit(() -> provider.searchReleasesPage(query, page, perPage, priority, release -> { })));
+                }
+                DiscogsSearchResult result = await(inFlight.poll());
+                if (result == null) {
+                    break;
+                }
+                result.getResults().forEach(consumer);
+                releases.addAll(result.getResults());
+                merged.setPage(merged.getPage() + 1);
+                merged.setStale(merged.isStale() || result.isStale());
+                if (result.getResults().size() < perPage) {
+                    break;
+                }
+            }
+        } finally {
+            inFlight.forEach(future -> future.cancel(true));
+        }
+        return merged;
+    }
+
+    private static DiscogsSearchResult await(Future<DiscogsSearchResult> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a search page");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Search page failed", cause);
+        }
+    }
+
+    /**
+     * Stop the page threads; fetches still in progress are interrupted
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ParallelPageFetcher{parallelism=%d, active=%d, queued=%d}",
+                             parallelism, executor.getActiveCount(), executor.getQueue().size());
+    }
+}
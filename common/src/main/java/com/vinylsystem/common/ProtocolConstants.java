@@ -13,23 +13,117 @@ public class ProtocolConstants {
     public static final int DEFAULT_TTL_SECONDS = 300; // 5 minutes
     public static final int CLEANUP_INTERVAL_SECONDS = 30; // Run cleanup every 30 seconds
     
+    // Search cache settings (overridable via cache.max.bytes / cache.ttl.seconds)
+    public static final long DEFAULT_CACHE_MAX_BYTES = 64L * 1024 * 1024; // 64 MB
+    public static final long DEFAULT_CACHE_TTL_SECONDS = 600; // 10 minutes
+    public static final int CACHE_STATS_INTERVAL_SECONDS = 60;
+    // Expired search results are still served, marked stale, while they are refreshed
+    // in the background (overridable via cache.stale.seconds)
+    public static final long DEFAULT_CACHE_STALE_SECONDS = 3600; // 1 hour
+    public static final int CACHE_REFRESH_QUEUE_SIZE = 32;
+    public static final String STALE_RESULTS_LINE = "Stale: cached results shown while Discogs is unavailable or refreshing";
+    
+    // Release detail cache and prefetch settings (overridable via release.cache.max.bytes /
+    // release.cache.ttl.seconds / prefetch.top.results / prefetch.concurrency)
+    public static final long DEFAULT_RELEASE_CACHE_MAX_BYTES = 16L * 1024 * 1024; // 16 MB
+    public static final long DEFAULT_RELEASE_CACHE_TTL_SECONDS = 3600; // 1 hour
+    public static final int DEFAULT_PREFETCH_TOP_RESULTS = 3;
+    public static final int DEFAULT_PREFETCH_CONCURRENCY = 2;
+    public static final int PREFETCH_QUEUE_SIZE = 32;
+    public static final int PREFETCH_MIN_BUDGET = 10; // free Discogs requests needed to prefetch
+    
+    // Query log and startup cache warming (overridable via query.log.max.queries / cache.warm.top.queries / cache.warm.interval.ms)
+    public static final int DEFAULT_QUERY_LOG_MAX_QUERIES = 10000;
+    public static final int QUERY_LOG_FLUSH_SECONDS = 30;
+    public static final int DEFAULT_CACHE_WARM_TOP_QUERIES = 100;
+    public static final long DEFAULT_CACHE_WARM_INTERVAL_MS = 2000; // half of the default 60/min Discogs budget
+    
+    // Catalog provider chain, asked in order (overridable via catalog.providers)
+    public static final String DEFAULT_CATALOG_PROVIDERS = "cache,discogs";
+    
+    // Off-heap cache tier settings (overridable via cache.offheap.max.bytes / cache.offheap.slab.bytes);
+    // the tier is off unless a size is set
+    public static final long DEFAULT_OFFHEAP_CACHE_MAX_BYTES = 0;
+    public static final long DEFAULT_OFFHEAP_SLAB_BYTES = 64L * 1024 * 1024; // 64 MB
+    
+    // Disk cache tier settings (overridable via cache.disk.segment.bytes / cache.disk.ttl.seconds)
+    public static final long DEFAULT_DISK_SEGMENT_BYTES = 64L * 1024 * 1024; // 64 MB
+    public static final long DEFAULT_DISK_CACHE_TTL_SECONDS = 86400; // 1 day
+    public static final int DISK_COMPACTION_INTERVAL_SECONDS = 300;
+    
+    // Discogs rate limit settings (overridable via discogs.rate.limit / .reserve / .max.wait.ms)
+    public static final int DEFAULT_DISCOGS_RATE_LIMIT = 60; // authenticated requests per minute
+    public static final int DEFAULT_DISCOGS_RATE_RESERVE = 2;
+    public static final long DEFAULT_DISCOGS_RATE_MAX_WAIT_MS = 30000;
+    
+    // Discogs failure isolation (overridable via discogs.breaker.failures / .breaker.open.ms /
+    // .max.concurrent / .bulkhead.wait.ms / .timeout.ms)
+    public static final int DEFAULT_DISCOGS_BREAKER_FAILURES = 5; // consecutive failures that open the breaker
+    public static final long DEFAULT_DISCOGS_BREAKER_OPEN_MS = 30000;
+    public static final int DEFAULT_DISCOGS_MAX_CONCURRENT = 8;
+    public static final long DEFAULT_DISCOGS_BULKHEAD_WAIT_MS = 100;
+    public static final long DEFAULT_DISCOGS_TIMEOUT_MS = 10000;
+    
+    // Paged search settings (overridable via search.page.size / discogs.page.size / discogs.page.parallelism)
+    public static final int DEFAULT_SEARCH_PAGE_SIZE = 20;
+    public static final int MAX_SEARCH_PAGE_SIZE = 100;
+    public static final int MAX_SEARCH_LIMIT = 1000; // largest limit: a search or page may ask for
+    public static final int MAX_DISCOGS_PAGE_SIZE = 100; // per_page cap of the Discogs API
+    public static final int DEFAULT_DISCOGS_PAGE_PARALLELISM = 4; // Discogs pages fetched at once for large limits
+    public static final int PAGE_FETCH_QUEUE_SIZE = 32;
+    public static final int MAX_SEARCH_RESULT_WINDOW = 10000; // deepest offset a cursor can reach
+    public static final int DEFAULT_DISCOGS_PAGE_SIZE = 50;
+    public static final String NEXT_CURSOR_PREFIX = "Next cursor: ";
+    
     // Message types
     public static final String MSG_REGISTER = "REGISTER";
     public static final String MSG_UPDATE = "UPDATE";
     public static final String MSG_LOOKUP = "LOOKUP";
+    public static final String MSG_LOOKUP_GROUP = "LOOKUP_GROUP";
     public static final String MSG_RESPONSE = "RESPONSE";
     
     // Music search message types
     public static final String MSG_SEARCH_MUSIC = "SEARCH_MUSIC";
     public static final String MSG_MUSIC_RESPONSE = "MUSIC_RESPONSE";
     
+    // SEARCH_MUSIC search types
+    public static final String SEARCH_TYPE_RELEASE = "release";
+    public static final String SEARCH_TYPE_ARTIST = "artist";
+    public static final String SEARCH_TYPE_RELEASE_ID = "release_id"; // query is a Discogs release ID
+    
+    // Vinyl server response framing: "FRAME <lineCount> <MORE|END>" followed by lineCount lines
+    public static final String FRAME_HEADER = "FRAME";
+    public static final String FRAME_MORE = "MORE";
+    public static final String FRAME_END = "END";
+    public static final int MAX_FRAME_LINES = 100000;
+    
     // Network settings
     public static final int MAX_MESSAGE_SIZE = 1024;
     public static final int SOCKET_TIMEOUT = 5000; // 5 seconds
+    public static final int MAX_GROUP_RESPONSE_SIZE = 8192;
+    
+    // Vinyl server connection handling (overridable via server.worker.threads / .worker.queue /
+    // .max.connections / .max.line.length / .idle.timeout.ms / .write.high.watermark / .write.low.watermark)
+    public static final int DEFAULT_WORKER_THREADS = 16;
+    public static final int DEFAULT_WORKER_QUEUE_SIZE = 64;
+    public static final int DEFAULT_MAX_CONNECTIONS = 10000;
+    public static final int DEFAULT_MAX_REQUEST_LINE = 8192; // bytes
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 60000;
+    public static final int DEFAULT_WRITE_HIGH_WATERMARK = 256 * 1024; // queued response bytes per connection
+    public static final int DEFAULT_WRITE_LOW_WATERMARK = 64 * 1024;
+    public static final String BUSY_PREFIX = "BUSY";
+    public static final String BUSY_RESPONSE = BUSY_PREFIX + " " + StatusCodes.BUSY + " Server busy, retry later";
+    
+    // Federated search settings
+    public static final int FEDERATED_SEARCH_TIMEOUT = 8000; // 8 seconds for the whole fan-out
+    public static final int FEDERATED_SEARCH_MAX_THREADS = 16;
     
     // Name validation regex: <string>.group#.pro2[x|y]
     public static final String NAME_PATTERN = "^.{1,30}\\.group\\d+\\.pro2[xy]?$";
     
+    // Group pattern regex: *.group#.pro2[x|y]
+    public static final String GROUP_PATTERN = "^\\*\\.group\\d+\\.pro2[xy]?$";
+    
     // IP validation regex
     public static final String IP_PATTERN = "^(?:(?:25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)\\.){3}(?:25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)$";
 }
\ No newline at end of file
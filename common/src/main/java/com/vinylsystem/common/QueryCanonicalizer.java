@@ -0,0 +1,146 @@
+package com.vinylsystem.common;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rewrites search text to one canonical form before cache lookups and Discogs calls,
+ * so "Pink Floyd", " pink  floyd" and "ＰＩＮＫ FLOYD" share a cache entry and an
+ * upstream request.
+ *
+ * The canonical form is NFKC-normalized, case-folded and has single spaces between
+ * tokens. Optionally, stop words are dropped (unless nothing else is left) and tokens
+ * are sorted, for catalogs whose search ignores word order. Queries that are already
+ * lower-case ASCII with single spaces are returned as they are without allocating.
+ */
+public class QueryCanonicalizer {
+    private final Set<String> stopWords;
+    private final boolean sortTokens;
+    private final LongAdder alreadyCanonical = new LongAdder();
+    private final LongAdder rewritten = new LongAdder();
+
+    /**
+     * @param stopWords lower-case words to drop; empty keeps every token
+     * @param sortTokens sort tokens so word order does not matter
+     */
+    public QueryCanonicalizer(Set<String> stopWords, boolean sortTokens) {
+        this.stopWords = Set.copyOf(stopWords);
+        this.sortTokens = sortTokens;
+    }
+
+    /**
+     * The canonicalizer configured by search.canonical.stopwords (comma separated,
+     * default none) and search.canonical.sort.tokens (default false)
+     */
+    public static QueryCanonicalizer getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Canonical form of the query using the default canonicalizer
+     */
+    public static String canonical(String query) {
+        return DefaultHolder.INSTANCE.canonicalize(query);
+    }
+
+    public String canonicalize(String query) {
+        if (isCanonicalAscii(query)) {
+            alreadyCanonical.increment();
+            return query;
+        }
+        rewritten.increment();
+        String text = query;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                // Full-width letters, ligatures and compatibility forms become their plain letters;
+                // upper- then lower-casing folds cases such as ß and final sigma
+                text = Normalizer.normalize(text, Normalizer.Form.NFKC)
+                    .toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+                break;
+            }
+        }
+        text = text.toLowerCase(Locale.ROOT);
+
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean space = i == text.length() || Character.isWhitespace(text.charAt(i))
+                || Character.isSpaceChar(text.charAt(i));
+            if (!space && start < 0) {
+                start = i;
+            } else if (space && start >= 0) {
+                tokens.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+        if (!stopWords.isEmpty()) {
+            List<String> kept = new ArrayList<>(tokens.size());
+            for (String token : tokens) {
+                if (!stopWords.contains(token)) {
+                    kept.add(token);
+                }
+            }
+            if (!kept.isEmpty()) {
+                tokens = kept;
+            }
+        }
+        if (sortTokens) {
+            Collections.sort(tokens);
+        }
+        return String.join(" ", tokens);
+    }
+
+    /**
+     * True for lower-case ASCII without leading, trailing or repeated spaces, when no
+     * stop word or ordering rule could change it
+     */
+    private boolean isCanonicalAscii(String query) {
+        if (!stopWords.isEmpty() || sortTokens) {
+            return false;
+        }
+        int length = query.length();
+        if (length == 0) {
+            return true;
+        }
+        if (query.charAt(0) == ' ' || query.charAt(length - 1) == ' ') {
+            return false;
+        }
+        char previous = 0;
+        for (int i = 0; i < length; i++) {
+            char c = query.charAt(i);
+            if (c >= 0x80 || (c >= 'A' && c <= 'Z') || (c < ' ' || c == 0x7f) || (c == ' ' && previous == ' ')) {
+                return false;
+            }
+            previous = c;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "alreadyCanonical=" + alreadyCanonical.sum() + ", rewritten=" + rewritten.sum() +
+               ", stopWords=" + stopWords.size() + ", sortTokens=" + sortTokens;
+    }
+
+    private static class DefaultHolder {
+        static final QueryCanonicalizer INSTANCE = fromConfig();
+
+        private static QueryCanonicalizer fromConfig() {
+            Set<String> stopWords = new HashSet<>();
+            String configured = ConfigManager.getConfig("search.canonical.stopwords", "");
+            for (String word : configured.split(",")) {
+                if (!word.isBlank()) {
+                    stopWords.add(word.trim().toLowerCase(Locale.ROOT));
+                }
+            }
+            return new QueryCanonicalizer(stopWords,
+                ConfigManager.getBooleanConfig("search.canonical.sort.tokens", false));
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.vinylsystem.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary encoding of releases for on-disk storage.
+ * Each release is a 16-bit presence mask followed by the present fields as
+ * length-prefixed UTF-8 strings, so missing fields cost nothing.
+ */
+public class ReleaseCodec {
+    private static final int VERSION = 1;
+    private static final int FIELD_COUNT = 11;
+
+    /**
+     * Encode a list of releases (e.g. one search result)
+     */
+    public static byte[] encodeList(List<MusicRelease> releases) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + releases.size() * 128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(VERSION);
+            out.writeInt(releases.size());
+            for (MusicRelease release : releases) {
+                writeRelease(out, release);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("In-memory encoding failed", e);
+        }
+    }
+
+    /**
+     * Decode a list written by {@link #encodeList(List)}
+     */
+    public static List<MusicRelease> decodeList(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        checkVersion(in.readUnsignedByte());
+        int count = in.readInt();
+        if (count < 0 || count > data.length) {
+            throw new IOException("Invalid release count: " + count);
+        }
+        List<MusicRelease> releases = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            releases.add(readRelease(in));
+        }
+        return releases;
+    }
+
+    /**
+     * Encode a single release (e.g. release details)
+     */
+    public static byte[] encode(MusicRelease release) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(VERSION);
+            writeRelease(out, release);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException("In-memory encoding failed", e);
+        }
+    }
+
+    public static MusicRelease decode(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        checkVersion(in.readUnsignedByte());
+        return readRelease(in);
+    }
+
+    /**
+     * Write one release without a version header (for streams of many records)
+     */
+    public static void writeRelease(DataOutputStream out, MusicRelease release) throws IOException {
+        String[] fields = fieldsOf(release);
+        int mask = 0;
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            if (fields[i] != null) mask |= 1 << i;
+        }
+        out.writeShort(mask);
+        for (String field : fields) {
+            if (field != null) {
+                byte[] utf8 = field.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(utf8.length);
+                out.write(utf8);
+            }
+        }
+    }
+
+    /**
+     * Read one release written by {@link #writeRelease(DataOutputStream, MusicRelease)}
+     */
+    public static MusicRelease readRelease(DataInputStream in) throws IOException {
+        int mask = in.readUnsignedShort();
+        String[] fields = new String[FIELD_COUNT];
+        for (int i = 0; i < FIELD_COUNT; i++) {
+            if ((mask & (1 << i)) != 0) {
+                int length = in.readInt();
+                if (length < 0 || length > (1 << 20)) {
+                    throw new IOException("Invalid field length: " + length);
+                }
+                byte[] utf8 = new byte[length];
+                in.readFully(utf8);
+                fields[i] = new String(utf8, StandardCharsets.UTF_8);
+            }
+        }
+
+        MusicRelease release = new MusicRelease();
+        release.setId(fields[0]);
+        release.setTitle(fields[1]);
+        release.setArtist(fields[2]);
+        release.setYear(fields[3]);
+        release.setGenre(fields[4]);
+        release.setStyle(fields[5]);
+        release.setFormat(fields[6]);
+        release.setLabel(fields[7]);
+        release.setCatalogNumber(fields[8]);
+        release.setCoverImage(fields[9]);
+        release.setCountry(fields[10]);
+        return release;
+    }
+
+    private static String[] fieldsOf(MusicRelease release) {
+        return new String[] {
+            release.getId(), release.getTitle(), release.getArtist(), release.getYear(),
+            release.getGenre(), release.getStyle(), release.getFormat(), release.getLabel(),
+            release.getCatalogNumber(), release.getCoverImage(), release.getCountry()
+        };
+    }
+
+    private static void checkVersion(int version) throws IOException {
+        if (version != VERSION) {
+            throw new IOException("Unsupported release encoding version: " + version);
+        }
+    }
+}
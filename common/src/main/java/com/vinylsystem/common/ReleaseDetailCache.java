@@ -0,0 +1,92 @@
+package com.vinylsystem.common;
+
+import java.io.IOException;
+
+/**
+ * Cache of release details keyed by Discogs release ID. It is filled by
+ * detail lookups and by {@link ReleasePrefetcher}, and like
+ * {@link SearchResultCache} it can be backed by a {@link DiskCacheStore}.
+ */
+public class ReleaseDetailCache {
+    private static final String DISK_KEY_PREFIX = "release:";
+
+    private final TinyLfuCache<MusicRelease> cache;
+    private DiskCacheStore diskStore;
+    private long diskTtlMillis;
+    private long diskHits;
+
+    public ReleaseDetailCache(long maxBytes, long ttlMillis) {
+        // Assume roughly 512 bytes per release when sizing the frequency sketch
+        int expectedEntries = (int) Math.min(Integer.MAX_VALUE, Math.max(64, maxBytes / 512));
+        this.cache = new TinyLfuCache<>(maxBytes, ttlMillis, expectedEntries,
+                                        (key, release) -> SearchResultCache.releaseSize(release));
+    }
+
+    /**
+     * Share a persistent store with the search cache; closing it is left to its owner
+     */
+    public synchronized void setDiskStore(DiskCacheStore diskStore, long diskTtlMillis) {
+        this.diskStore = diskStore;
+        this.diskTtlMillis = diskTtlMillis;
+    }
+
+    /**
+     * Cached details for the release, or null on a miss in both tiers
+     */
+    public MusicRelease get(String releaseId) {
+        MusicRelease release = cache.get(releaseId);
+        DiskCacheStore store = currentDiskStore();
+        if (release != null || store == null) {
+            return release;
+        }
+
+        byte[] stored = store.get(DISK_KEY_PREFIX + releaseId);
+        if (stored == null) {
+            return null;
+        }
+        long expiresAt = store.expiresAt(DISK_KEY_PREFIX + releaseId);
+        try {
+            release = ReleaseCodec.decode(stored);
+        } catch (IOException e) {
+            System.err.println("Discarding undecodable disk cache entry for release " + releaseId + ": " + e.getMessage());
+            return null;
+        }
+        synchronized (this) {
+            diskHits++;
+        }
+        // Keep the stored expiry rather than starting a new time-to-live
+        cache.put(releaseId, release, expiresAt);
+        return release;
+    }
+
+    /**
+     * Whether details are cached in memory, without counting a lookup
+     */
+    public boolean contains(String releaseId) {
+        return cache.containsKey(releaseId);
+    }
+
+    public void put(String releaseId, MusicRelease release) {
+        cache.put(releaseId, release);
+        DiskCacheStore store = currentDiskStore();
+        if (store != null) {
+            try {
+                store.put(DISK_KEY_PREFIX + releaseId, ReleaseCodec.encode(release), diskTtlMillis);
+            } catch (IOException e) {
+                System.err.println("Disk cache write failed: " + e.getMessage());
+            }
+        }
+    }
+
+    public TinyLfuCache.Stats stats() {
+        return cache.stats();
+    }
+
+    public synchronized long getDiskHits() {
+        return diskHits;
+    }
+
+    private synchronized DiskCacheStore currentDiskStore() {
+        return diskStore;
+    }
+}
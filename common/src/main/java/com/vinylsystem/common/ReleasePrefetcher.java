@@ -0,0 +1,117 @@
+package com.vinylsystem.common;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fetches release details for the top hits of a search in the background, so the
+ * detail request that usually follows a search is answered from the
+ * {@link ReleaseDetailCache} instead of a second Discogs round trip.
+ *
+ * Fetches run on a small fixed pool with a bounded queue and are scheduled at
+ * PREFETCH priority, behind interactive requests. Work that does not fit in the
+ * queue is dropped, and nothing is prefetched while the Discogs budget is low.
+ */
+public class ReleasePrefetcher {
+    private final MusicCatalogProvider catalog;
+    private final ReleaseDetailCache detailCache;
+    private final int topResults;
+    private final int minBudget;
+    private final ThreadPoolExecutor executor;
+    // Release IDs queued or being fetched, so repeated searches do not fetch twice
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong fetched = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong skippedForBudget = new AtomicLong();
+
+    /**
+     * @param topResults number of leading results to prefetch per search
+     * @param concurrency detail requests in flight at once
+     * @param queueSize prefetches waiting for a thread before new ones are dropped
+     * @param minBudget Discogs requests that must be available for prefetching to start
+     */
+    public ReleasePrefetcher(MusicCatalogProvider catalog, ReleaseDetailCache detailCache,
+                             int topResults, int concurrency, int queueSize, int minBudget) {
+        if (concurrency <= 0 || queueSize <= 0) {
+            throw new IllegalArgumentException("Prefetch concurrency and queue size must be positive");
+        }
+        this.catalog = catalog;
+        this.detailCache = detailCache;
+        this.topResults = topResults;
+        this.minBudget = minBudget;
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueSize), runnable -> {
+                Thread thread = new Thread(runnable, "release-prefetch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queue detail fetches for the leading results that are neither cached nor pending
+     */
+    public void prefetch(List<MusicRelease> results) {
+        if (topResults <= 0 || results.isEmpty()) {
+            return;
+        }
+        if (catalog.getAvailableRequests() < minBudget) {
+            skippedForBudget.incrementAndGet();
+            return;
+        }
+
+        for (int i = 0; i < Math.min(topResults, results.size()); i++) {
+            String releaseId = results.get(i).getId();
+            if (releaseId == null || releaseId.isEmpty() || !releaseId.chars().allMatch(Character::isDigit)
+                || detailCache.contains(releaseId) || !pending.add(releaseId)) {
+                continue;
+            }
+            try {
+                executor.execute(() -> fetch(releaseId));
+                queued.incrementAndGet();
+            } catch (RejectedExecutionException e) {
+                pending.remove(releaseId);
+                dropped.incrementAndGet();
+            }
+        }
+    }
+
+    private void fetch(String releaseId) {
+        try {
+            MusicRelease release = catalog.getRelease(releaseId, DiscogsRateLimiter.Priority.PREFETCH);
+            if (release != null) {
+                // A cache tier in the catalog chain has stored it already
+                if (!detailCache.contains(releaseId)) {
+                    detailCache.put(releaseId, release);
+                }
+                fetched.incrementAndGet();
+            }
+        } catch (IOException | RuntimeException e) {
+            failed.incrementAndGet();
+            System.err.println("Prefetch of release " + releaseId + " failed: " + e.getMessage());
+        } finally {
+            pending.remove(releaseId);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return "queued=" + queued.get() + ", fetched=" + fetched.get() + ", failed=" + failed.get() +
+               ", dropped=" + dropped.get() + ", skippedForBudget=" + skippedForBudget.get() +
+               ", pending=" + pending.size();
+    }
+}
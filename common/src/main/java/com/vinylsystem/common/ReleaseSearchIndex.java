@@ -0,0 +1,950 @@
+package com.vinylsystem.common;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * In-memory full-text index over releases with BM25 ranking.
+ *
+ * Title, artist, label, genre and style are tokenized into separate fields.
+ * Each (field, term) pair has a posting list of document ids and term
+ * frequencies, stored as delta-encoded varints. A query is scored term at a
+ * time into a reusable per-thread accumulator using the field-weighted sum of
+ * BM25 scores, and only the best {@code limit} documents are kept, in a
+ * bounded heap. Query terms missing from the dictionary (or nearly so) are
+ * expanded to close spellings through a {@link FuzzyTermIndex}, at a reduced
+ * weight. Facet filters and counts come from the {@link FacetIndex} built
+ * alongside, over the same document ids.
+ *
+ * The index is immutable once built and safe for concurrent searches.
+ */
+public class ReleaseSearchIndex {
+
+    /**
+     * Indexed fields and their weight in the combined score
+     */
+    public enum Field {
+        TITLE(2.0f), ARTIST(2.0f), LABEL(1.0f), GENRE(0.5f), STYLE(0.5f);
+
+        final float weight;
+
+        Field(float weight) {
+            this.weight = weight;
+        }
+
+        String valueOf(MusicRelease release) {
+            switch (this) {
+                case TITLE: return release.getTitle();
+                case ARTIST: return release.getArtist();
+                case LABEL: return release.getLabel();
+                case GENRE: return release.getGenre();
+                default: return release.getStyle();
+            }
+        }
+    }
+
+    private static final Field[] FIELDS = Field.values();
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int MAX_QUERY_TERMS = 16;
+    // Postings per skip block; lists shorter than one block have no skip data
+    private static final int SKIP_INTERVAL = 128;
+    // Bound comparisons allow for float rounding between the bound and actual scores
+    private static final float BOUND_TOLERANCE = 0.99999f;
+    // Terms this rare are likely typos too, so they are expanded as well
+    private static final int RARE_TERM_DOC_FREQ = 2;
+    private static final int MAX_EXPANSIONS = 3;
+    // Score factor of an expansion by edit distance
+    private static final float[] EXPANSION_BOOST = {1.0f, 0.7f, 0.5f};
+    // Values reported per facet
+    private static final int FACET_VALUES = 10;
+
+    private final CompactReleaseStore releases;
+    private final Map<String, Postings[]> dictionary;
+    private final FuzzyTermIndex fuzzyTerms;
+    private final FacetIndex facets;
+    // Field lengths in tokens, capped at 255, one array per field
+    private final byte[][] fieldLengths;
+    // Per field: BM25 length normalization K1 * (1 - B + B * len / avgLen) for every possible length
+    private final float[][] lengthNorms;
+    private final long postingBytes;
+    // (release ID << 32 | doc) for numeric IDs, sorted for lookups by ID
+    private final long[] idIndex;
+
+    private final ThreadLocal<Accumulator> accumulators;
+
+    private ReleaseSearchIndex(CompactReleaseStore releases, Map<String, Postings[]> dictionary, FacetIndex facets,
+                               byte[][] fieldLengths, float[][] lengthNorms, long postingBytes) {
+        this.releases = releases;
+        this.dictionary = dictionary;
+        this.facets = facets;
+        Map<String, Integer> termWeights = new HashMap<>(dictionary.size() * 4 / 3 + 1);
+        for (Map.Entry<String, Postings[]> entry : dictionary.entrySet()) {
+            termWeights.put(entry.getKey(), documentFrequency(entry.getValue()));
+        }
+        this.fuzzyTerms = new FuzzyTermIndex(termWeights);
+        this.fieldLengths = fieldLengths;
+        this.lengthNorms = lengthNorms;
+        this.postingBytes = postingBytes;
+        this.idIndex = buildIdIndex(releases);
+        int documents = releases.size();
+        this.accumulators = ThreadLocal.withInitial(() -> new Accumulator(documents));
+    }
+
+    /**
+     * Build an index over every release of a local catalog
+     */
+    public static ReleaseSearchIndex fromCatalog(Path catalogFile) throws IOException {
+        Builder builder = new Builder();
+        LocalCatalog.read(catalogFile, new LocalCatalog.Visitor() {
+            @Override
+            public void release(MusicRelease release) {
+                builder.add(release);
+            }
+
+            @Override
+            public void artist(MusicArtist artist) {
+                // artists are not searchable yet
+            }
+        });
+        return builder.build();
+    }
+
+    /**
+     * Best matching releases for a free-text query
+     */
+    public List<MusicRelease> searchReleases(String query, int limit) {
+        List<Hit> hits = search(query, limit);
+        List<MusicRelease> results = new ArrayList<>(hits.size());
+        for (Hit hit : hits) {
+            results.add(hit.getRelease());
+        }
+        return results;
+    }
+
+    /**
+     * Best matching documents for a free-text query, best first
+     */
+    public List<Hit> search(String query, int limit) {
+        List<QueryTerm> terms = lookupTerms(queryTerms(query));
+        if (terms.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        Accumulator acc = accumulators.get();
+        try {
+            score(terms, limit, acc);
+            return topK(acc, limit);
+        } finally {
+            acc.reset();
+        }
+    }
+
+    /**
+     * Best matching documents for a query with facet filters. With {@code withFacets},
+     * also counts every document matching the text and filters, and the most
+     * frequent facet values among them. A query with filters but no text lists
+     * the filtered documents in catalog order.
+     */
+    public Result search(SearchQuery query, int limit, boolean withFacets) {
+        List<String> words = queryTerms(query.getText());
+        List<QueryTerm> terms = lookupTerms(words);
+        RoaringBitmap selected = query.hasFilters() ? facets.select(query.getFilters()) : null;
+        boolean browse = words.isEmpty() && selected != null;
+        if (limit <= 0 || (terms.isEmpty() && !browse) || (selected != null && selected.isEmpty())) {
+            return new Result(Collections.emptyList(), withFacets ? 0 : -1, Collections.emptyMap());
+        }
+
+        Accumulator acc = accumulators.get();
+        try {
+            if (selected != null) {
+                acc.filter = acc.filterBits();
+                selected.copyTo(acc.filter);
+            }
+            List<Hit> hits;
+            if (browse) {
+                hits = new ArrayList<>();
+                for (int doc : selected.first(limit)) {
+                    hits.add(new Hit(doc, 0f, releases));
+                }
+            } else {
+                score(terms, limit, acc);
+                hits = topK(acc, limit);
+            }
+            if (!withFacets) {
+                return new Result(hits, -1, Collections.emptyMap());
+            }
+
+            RoaringBitmap matches = RoaringBitmap.fromBitset(browse ? acc.filter : collectMatches(terms, acc));
+            return new Result(hits, matches.cardinality(), facets.allCounts(matches, FACET_VALUES));
+        } finally {
+            acc.reset();
+        }
+    }
+
+    /**
+     * Every document containing any query term (and passing the filter), as a dense bitset.
+     * Unlike scoring this cannot prune, so each posting list is decoded in full.
+     */
+    private static long[] collectMatches(List<QueryTerm> terms, Accumulator acc) {
+        long[] matches = acc.matchBits();
+        for (QueryTerm term : terms) {
+            for (Postings postings : term.postings) {
+                if (postings == null) continue;
+                byte[] data = postings.data;
+                int position = 0;
+                int doc = 0;
+                while (position < data.length) {
+                    int value = 0;
+                    int shift = 0;
+                    byte b;
+                    do {
+                        b = data[position++];
+                        value |= (b & 0x7F) << shift;
+                        shift += 7;
+                    } while (b < 0);
+                    doc += value;
+                    matches[doc >>> 6] |= 1L << doc;
+                    // skip the term frequency
+                    while (data[position++] < 0) {
+                        // continuation byte
+                    }
+                }
+            }
+        }
+        if (acc.filter != null) {
+            for (int i = 0; i < matches.length; i++) {
+                matches[i] &= acc.filter[i];
+            }
+        }
+        return matches;
+    }
+
+    public int size() {
+        return releases.size();
+    }
+
+    public FacetIndex getFacets() {
+        return facets;
+    }
+
+    public int termCount() {
+        return dictionary.size();
+    }
+
+    public MusicRelease getRelease(int doc) {
+        return releases.get(doc);
+    }
+
+    /**
+     * The release with a Discogs release ID, or null if the catalog does not have it
+     */
+    public MusicRelease findById(String releaseId) {
+        long id = parseId(releaseId);
+        if (id < 0) {
+            return null;
+        }
+        int low = 0;
+        int high = idIndex.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midId = idIndex[mid] >>> 32;
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return releases.get((int) idIndex[mid]);
+            }
+        }
+        return null;
+    }
+
+    private static long[] buildIdIndex(CompactReleaseStore releases) {
+        long[] index = new long[releases.size()];
+        int count = 0;
+        for (int doc = 0; doc < releases.size(); doc++) {
+            long id = parseId(releases.get(doc).getId());
+            if (id >= 0) {
+                index[count++] = id << 32 | doc;
+            }
+        }
+        index = Arrays.copyOf(index, count);
+        Arrays.sort(index);
+        return index;
+    }
+
+    /**
+     * Numeric release ID below 2^31, or -1
+     */
+    private static long parseId(String releaseId) {
+        if (releaseId == null || releaseId.isEmpty() || releaseId.length() > 10) {
+            return -1;
+        }
+        long id = 0;
+        for (int i = 0; i < releaseId.length(); i++) {
+            char c = releaseId.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            id = id * 10 + (c - '0');
+        }
+        return id <= Integer.MAX_VALUE ? id : -1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("releases=%d (~%d KB), terms=%d (%d fuzzy), postings=%d KB, facets: %s",
+                releases.size(), releases.memoryBytes() / 1024, dictionary.size(), fuzzyTerms.size(),
+                postingBytes / 1024, facets);
+    }
+
+    /**
+     * Resolve query terms to posting lists, adding close spellings of unknown or very rare terms
+     */
+    private List<QueryTerm> lookupTerms(List<String> terms) {
+        List<QueryTerm> found = new ArrayList<>(terms.size());
+        for (String term : terms) {
+            Postings[] postings = dictionary.get(term);
+            int docFreq = 0;
+            if (postings != null) {
+                found.add(new QueryTerm(postings, 1.0f, maxScore(postings)));
+                docFreq = documentFrequency(postings);
+            }
+            if (docFreq > RARE_TERM_DOC_FREQ) {
+                continue;
+            }
+            for (FuzzyTermIndex.Match match : fuzzyTerms.lookup(term, MAX_EXPANSIONS)) {
+                if (match.getWeight() > docFreq) {
+                    Postings[] expansion = dictionary.get(match.getTerm());
+                    float boost = EXPANSION_BOOST[match.getDistance()];
+                    found.add(new QueryTerm(expansion, boost, boost * maxScore(expansion)));
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Expansions a query term would get, for diagnostics
+     */
+    public List<FuzzyTermIndex.Match> expand(String term) {
+        return fuzzyTerms.lookup(term, MAX_EXPANSIONS);
+    }
+
+    private static int documentFrequency(Postings[] byField) {
+        int docFreq = 0;
+        for (Postings postings : byField) {
+            if (postings != null) {
+                docFreq = Math.max(docFreq, postings.docFreq);
+            }
+        }
+        return docFreq;
+    }
+
+    /**
+     * Score terms from the highest to the lowest possible contribution (MaxScore).
+     * Once the k-th best score so far reaches everything the remaining terms could
+     * add together, a document they alone match cannot enter the top k, so those
+     * terms only add to documents that are already candidates. This keeps very
+     * common terms ("the", "records") from scanning in millions of new documents.
+     * Equal scores are resolved in favour of documents found earlier.
+     */
+    private void score(List<QueryTerm> terms, int limit, Accumulator acc) {
+        terms.sort((a, b) -> Float.compare(b.maxScore, a.maxScore));
+        float[] remainingMax = new float[terms.size() + 1];
+        for (int i = terms.size() - 1; i >= 0; i--) {
+            remainingMax[i] = remainingMax[i + 1] + terms.get(i).maxScore;
+        }
+
+        acc.limit = limit;
+        acc.nextCheck = limit;
+        boolean updateOnly = false;
+        for (int i = 0; i < terms.size(); i++) {
+            if (!updateOnly && acc.touchedCount >= limit && kthLargestScore(acc, limit) >= remainingMax[i] * BOUND_TOLERANCE) {
+                updateOnly = true;
+            }
+            updateOnly = scoreTerm(terms.get(i), updateOnly, remainingMax[i], acc);
+        }
+    }
+
+    private float maxScore(Postings[] byField) {
+        float max = 0;
+        for (Field field : FIELDS) {
+            Postings postings = byField[field.ordinal()];
+            if (postings != null) {
+                max += field.weight * idf(postings.docFreq) * (K1 + 1) * postings.maxTfNorm;
+            }
+        }
+        return max;
+    }
+
+    private float idf(int docFreq) {
+        return (float) Math.log(1 + (releases.size() - docFreq + 0.5) / (docFreq + 0.5));
+    }
+
+    /**
+     * Add one query term to the accumulator
+     * @param remainingMax upper bound of what this and all later terms can add to a new document
+     * @return whether later terms may only update existing candidates
+     */
+    private boolean scoreTerm(QueryTerm term, boolean updateOnly, float remainingMax, Accumulator acc) {
+        for (Field field : FIELDS) {
+            Postings postings = term.postings[field.ordinal()];
+            if (postings == null) continue;
+
+            float weightedIdf = term.boost * field.weight * idf(postings.docFreq) * (K1 + 1);
+            byte[] lengths = fieldLengths[field.ordinal()];
+            float[] norms = lengthNorms[field.ordinal()];
+            float[] scores = acc.scores;
+            byte[] data = postings.data;
+            long[] filter = acc.filter;
+
+            // Few candidates against a long list: jump to them instead of decoding everything
+            if (updateOnly && postings.skipDocs != null && (long) acc.touchedCount * 32 < postings.docFreq) {
+                scoreCandidates(postings, weightedIdf, lengths, norms, acc);
+                continue;
+            }
+
+            int position = 0;
+            int doc = 0;
+            while (position < data.length) {
+                // doc delta
+                int value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[position++];
+                    value |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                doc += value;
+
+                // term frequency
+                int tf = 0;
+                shift = 0;
+                do {
+                    b = data[position++];
+                    tf |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+
+                if (scores[doc] == 0) {
+                    if (updateOnly) continue;
+                    if (filter != null && (filter[doc >>> 6] & (1L << doc)) == 0) continue;
+                    acc.touch(doc);
+                    // Re-check the bound as candidates double, which keeps the checks linear overall
+                    if (acc.touchedCount >= acc.nextCheck) {
+                        acc.nextCheck = acc.touchedCount * 2;
+                        updateOnly = kthLargestScore(acc, acc.limit) >= remainingMax * BOUND_TOLERANCE;
+                    }
+                }
+                scores[doc] += weightedIdf * tf / (tf + norms[lengths[doc] & 0xFF]);
+            }
+        }
+        return updateOnly;
+    }
+
+    /**
+     * Add a term's contribution to the existing candidates only, using the skip data
+     */
+    private static void scoreCandidates(Postings postings, float weightedIdf, byte[] lengths,
+                                        float[] norms, Accumulator acc) {
+        int[] candidates = acc.sortedCandidates();
+        int[] skipDocs = postings.skipDocs;
+        int[] skipOffsets = postings.skipOffsets;
+        byte[] data = postings.data;
+
+        int block = 0;
+        int position = 0;
+        int doc = 0;     // last decoded document (delta base)
+        int current = -1;
+        int tf = 0;
+        for (int i = 0; i < acc.touchedCount; i++) {
+            int target = candidates[i];
+            if (current < target) {
+                int next = block;
+                while (next + 1 < skipDocs.length && skipDocs[next + 1] < target) next++;
+                if (next > block && skipOffsets[next] > position) {
+                    position = skipOffsets[next];
+                    doc = skipDocs[next];
+                }
+                block = next;
+
+                while (current < target) {
+                    if (position >= data.length) return;
+                    int value = 0;
+                    int shift = 0;
+                    byte b;
+                    do {
+                        b = data[position++];
+                        value |= (b & 0x7F) << shift;
+                        shift += 7;
+                    } while (b < 0);
+                    doc += value;
+                    tf = 0;
+                    shift = 0;
+                    do {
+                        b = data[position++];
+                        tf |= (b & 0x7F) << shift;
+                        shift += 7;
+                    } while (b < 0);
+                    current = doc;
+                }
+            }
+            if (current == target) {
+                acc.scores[target] += weightedIdf * tf / (tf + norms[lengths[target] & 0xFF]);
+            }
+        }
+    }
+
+    /**
+     * k-th best score among the current candidates, via a bounded min-heap
+     */
+    private static float kthLargestScore(Accumulator acc, int k) {
+        float[] heap = acc.heap(k);
+        int size = 0;
+        for (int i = 0; i < acc.touchedCount; i++) {
+            float score = acc.scores[acc.touched[i]];
+            if (size < k) {
+                // sift up
+                int child = size++;
+                while (child > 0 && heap[(child - 1) / 2] > score) {
+                    heap[child] = heap[(child - 1) / 2];
+                    child = (child - 1) / 2;
+                }
+                heap[child] = score;
+            } else if (score > heap[0]) {
+                // replace the minimum and sift down
+                int parent = 0;
+                while (true) {
+                    int child = 2 * parent + 1;
+                    if (child >= k) break;
+                    if (child + 1 < k && heap[child + 1] < heap[child]) child++;
+                    if (heap[child] >= score) break;
+                    heap[parent] = heap[child];
+                    parent = child;
+                }
+                heap[parent] = score;
+            }
+        }
+        return heap[0];
+    }
+
+    private List<Hit> topK(Accumulator acc, int limit) {
+        // Min-heap on score, so the weakest kept hit is at the head
+        PriorityQueue<Hit> heap = new PriorityQueue<>(limit + 1, Hit::compareRank);
+        for (int i = 0; i < acc.touchedCount; i++) {
+            int doc = acc.touched[i];
+            float score = acc.scores[doc];
+            if (heap.size() < limit) {
+                heap.add(new Hit(doc, score, releases));
+            } else if (heap.peek().ranksBelow(score, doc)) {
+                heap.poll();
+                heap.add(new Hit(doc, score, releases));
+            }
+        }
+
+        Hit[] hits = heap.toArray(new Hit[0]);
+        Arrays.sort(hits, (a, b) -> Hit.compareRank(b, a));
+        return Arrays.asList(hits);
+    }
+
+    private static List<String> queryTerms(String query) {
+        Set<String> distinct = new LinkedHashSet<>(tokenize(query));
+        List<String> terms = new ArrayList<>(distinct);
+        return terms.size() > MAX_QUERY_TERMS ? terms.subList(0, MAX_QUERY_TERMS) : terms;
+    }
+
+    /**
+     * Split text into lower-case, accent-free alphanumeric tokens.
+     * Apostrophes inside words are dropped ("Don't" becomes "dont").
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        StringBuilder token = new StringBuilder();
+        boolean ascii = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (c < 128) {
+                    token.append(c >= 'A' && c <= 'Z' ? (char) (c + 32) : c);
+                } else {
+                    token.append(c);
+                    ascii = false;
+                }
+            } else if ((c == '\'' || c == '’') && token.length() > 0) {
+                // keep the word together
+            } else if (token.length() > 0) {
+                tokens.add(ascii ? token.toString() : fold(token));
+                token.setLength(0);
+                ascii = true;
+            }
+        }
+        if (token.length() > 0) {
+            tokens.add(ascii ? token.toString() : fold(token));
+        }
+        return tokens;
+    }
+
+    private static String fold(CharSequence token) {
+        String decomposed = Normalizer.normalize(token, Normalizer.Form.NFD);
+        StringBuilder folded = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                folded.append(c);
+            }
+        }
+        return folded.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * One ranked search result
+     */
+    public static class Hit {
+        private final int doc;
+        private final float score;
+        private final CompactReleaseStore releases;
+
+        Hit(int doc, float score, CompactReleaseStore releases) {
+            this.doc = doc;
+            this.score = score;
+            this.releases = releases;
+        }
+
+        public int getDoc() { return doc; }
+        public float getScore() { return score; }
+        // A view into the index; candidates that drop out of the top k never build one
+        public MusicRelease getRelease() { return releases.get(doc); }
+
+        boolean ranksBelow(float otherScore, int otherDoc) {
+            if (score != otherScore) return score < otherScore;
+            return doc > otherDoc;
+        }
+
+        static int compareRank(Hit a, Hit b) {
+            if (a.score != b.score) return Float.compare(a.score, b.score);
+            return Integer.compare(b.doc, a.doc); // lower doc id wins ties
+        }
+    }
+
+    /**
+     * Hits of a filtered search, with match and facet counts when requested
+     */
+    public static class Result {
+        private final List<Hit> hits;
+        private final int totalMatches;
+        private final Map<FacetIndex.Facet, List<FacetIndex.Count>> facetCounts;
+
+        Result(List<Hit> hits, int totalMatches, Map<FacetIndex.Facet, List<FacetIndex.Count>> facetCounts) {
+            this.hits = hits;
+            this.totalMatches = totalMatches;
+            this.facetCounts = facetCounts;
+        }
+
+        public List<Hit> getHits() { return hits; }
+        // -1 unless facets were requested
+        public int getTotalMatches() { return totalMatches; }
+        public Map<FacetIndex.Facet, List<FacetIndex.Count>> getFacetCounts() { return facetCounts; }
+
+        public List<MusicRelease> getReleases() {
+            List<MusicRelease> releases = new ArrayList<>(hits.size());
+            for (Hit hit : hits) {
+                releases.add(hit.getRelease());
+            }
+            return releases;
+        }
+    }
+
+    private static class QueryTerm {
+        final Postings[] postings;
+        final float boost;
+        final float maxScore;
+
+        QueryTerm(Postings[] postings, float boost, float maxScore) {
+            this.postings = postings;
+            this.boost = boost;
+            this.maxScore = maxScore;
+        }
+    }
+
+    /**
+     * Per-thread score buffer, sized to the collection and cleared only where touched.
+     * BM25 contributions are always positive, so a zero score means "not a candidate".
+     * The facet filter and match set are dense bitsets, allocated on first use.
+     */
+    private static class Accumulator {
+        final float[] scores;
+        int[] touched = new int[1024];
+        int touchedCount;
+        int limit;
+        int nextCheck;
+        // Documents passing the facet filter, or null when unfiltered
+        long[] filter;
+        private long[] filterBits;
+        private long[] matchBits;
+        private boolean matchesUsed;
+        private float[] heap = new float[16];
+        private int[] sorted = new int[0];
+        private int sortedCount = -1;
+
+        Accumulator(int documents) {
+            this.scores = new float[documents];
+        }
+
+        void touch(int doc) {
+            if (touchedCount == touched.length) {
+                touched = Arrays.copyOf(touched, touchedCount * 2);
+            }
+            touched[touchedCount++] = doc;
+        }
+
+        /**
+         * Candidates in document order; sorted once per query since
+         * update-only terms never add candidates
+         */
+        int[] sortedCandidates() {
+            if (sortedCount != touchedCount) {
+                if (sorted.length < touchedCount) {
+                    sorted = new int[touched.length];
+                }
+                System.arraycopy(touched, 0, sorted, 0, touchedCount);
+                Arrays.sort(sorted, 0, touchedCount);
+                sortedCount = touchedCount;
+            }
+            return sorted;
+        }
+
+        long[] filterBits() {
+            if (filterBits == null) {
+                filterBits = new long[(scores.length + 63) / 64];
+            }
+            return filterBits;
+        }
+
+        long[] matchBits() {
+            if (matchBits == null) {
+                matchBits = new long[(scores.length + 63) / 64];
+            }
+            matchesUsed = true;
+            return matchBits;
+        }
+
+        float[] heap(int k) {
+            if (heap.length < k) {
+                heap = new float[k];
+            }
+            return heap;
+        }
+
+        void reset() {
+            for (int i = 0; i < touchedCount; i++) {
+                scores[touched[i]] = 0;
+            }
+            touchedCount = 0;
+            sortedCount = -1;
+            if (filter != null) {
+                Arrays.fill(filter, 0L);
+                filter = null;
+            }
+            if (matchesUsed) {
+                Arrays.fill(matchBits, 0L);
+                matchesUsed = false;
+            }
+        }
+    }
+
+    private static class Postings {
+        final byte[] data;
+        final int docFreq;
+        // Block b starts at data[skipOffsets[b]]; skipDocs[b] is the last document before it
+        final int[] skipDocs;
+        final int[] skipOffsets;
+        // Largest tf / (tf + norm) in the list, which bounds its BM25 contribution
+        float maxTfNorm;
+
+        Postings(byte[] data, int docFreq, int[] skipDocs, int[] skipOffsets) {
+            this.data = data;
+            this.docFreq = docFreq;
+            this.skipDocs = skipDocs;
+            this.skipOffsets = skipOffsets;
+        }
+    }
+
+    /**
+     * Accumulates releases in document id order and encodes postings as it goes.
+     * A builder builds one index; the built index owns the release store.
+     */
+    public static class Builder {
+        private CompactReleaseStore releases = new CompactReleaseStore(CHUNK);
+        private final Map<String, PostingsBuilder[]> dictionary = new HashMap<>();
+        private final List<byte[]> fieldLengthChunks = new ArrayList<>();
+        private final long[] totalFieldLengths = new long[FIELDS.length];
+        private final Map<String, Integer> termCounts = new HashMap<>();
+        private final FacetIndex.Builder facets = new FacetIndex.Builder();
+        private static final int CHUNK = 1 << 16;
+
+        public Builder add(MusicRelease release) {
+            if (releases == null) {
+                throw new IllegalStateException("Index already built");
+            }
+            int doc = releases.add(release);
+            if (doc % CHUNK == 0) {
+                fieldLengthChunks.add(new byte[CHUNK * FIELDS.length]);
+            }
+            byte[] chunk = fieldLengthChunks.get(doc / CHUNK);
+            facets.add(doc, release);
+
+            for (Field field : FIELDS) {
+                List<String> tokens = tokenize(field.valueOf(release));
+                totalFieldLengths[field.ordinal()] += tokens.size();
+                chunk[(doc % CHUNK) * FIELDS.length + field.ordinal()] = (byte) Math.min(255, tokens.size());
+
+                termCounts.clear();
+                for (String token : tokens) {
+                    termCounts.merge(token, 1, Integer::sum);
+                }
+                for (Map.Entry<String, Integer> entry : termCounts.entrySet()) {
+                    PostingsBuilder[] byField = dictionary.computeIfAbsent(entry.getKey(),
+                        term -> new PostingsBuilder[FIELDS.length]);
+                    PostingsBuilder postings = byField[field.ordinal()];
+                    if (postings == null) {
+                        postings = byField[field.ordinal()] = new PostingsBuilder();
+                    }
+                    postings.add(doc, entry.getValue());
+                }
+            }
+            return this;
+        }
+
+        public ReleaseSearchIndex build() {
+            if (releases == null) {
+                throw new IllegalStateException("Index already built");
+            }
+            int documents = releases.size();
+            byte[][] fieldLengths = new byte[FIELDS.length][documents];
+            for (int doc = 0; doc < documents; doc++) {
+                byte[] chunk = fieldLengthChunks.get(doc / CHUNK);
+                for (int f = 0; f < FIELDS.length; f++) {
+                    fieldLengths[f][doc] = chunk[(doc % CHUNK) * FIELDS.length + f];
+                }
+            }
+
+            // Per field: BM25 length normalization for every possible length
+            float[][] lengthNorms = new float[FIELDS.length][256];
+            for (int f = 0; f < FIELDS.length; f++) {
+                float avgLength = documents == 0 ? 1f : Math.max(1f, (float) totalFieldLengths[f] / documents);
+                for (int length = 0; length < 256; length++) {
+                    lengthNorms[f][length] = K1 * (1 - B + B * length / avgLength);
+                }
+            }
+
+            Map<String, Postings[]> finished = new HashMap<>(dictionary.size() * 4 / 3 + 1);
+            long postingBytes = 0;
+            for (Map.Entry<String, PostingsBuilder[]> entry : dictionary.entrySet()) {
+                Postings[] byField = new Postings[FIELDS.length];
+                for (int f = 0; f < FIELDS.length; f++) {
+                    PostingsBuilder postings = entry.getValue()[f];
+                    if (postings != null) {
+                        byField[f] = postings.build(fieldLengths[f], lengthNorms[f]);
+                        postingBytes += postings.size;
+                    }
+                }
+                finished.put(entry.getKey(), byField);
+            }
+            dictionary.clear();
+            fieldLengthChunks.clear();
+            CompactReleaseStore store = releases;
+            releases = null;
+            store.trimToSize();
+            return new ReleaseSearchIndex(store, finished, facets.build(),
+                                          fieldLengths, lengthNorms, postingBytes);
+        }
+    }
+
+    private static class PostingsBuilder {
+        byte[] data = new byte[4];
+        int size;
+        int docFreq;
+        int lastDoc;
+        int[] skipDocs;
+        int[] skipOffsets;
+
+        void add(int doc, int tf) {
+            if (docFreq > 0 && docFreq % SKIP_INTERVAL == 0) {
+                int block = docFreq / SKIP_INTERVAL;
+                if (skipDocs == null) {
+                    skipDocs = new int[4];
+                    skipOffsets = new int[4];
+                } else if (block == skipDocs.length) {
+                    skipDocs = Arrays.copyOf(skipDocs, block * 2);
+                    skipOffsets = Arrays.copyOf(skipOffsets, block * 2);
+                }
+                skipDocs[block] = lastDoc;
+                skipOffsets[block] = size;
+            }
+            writeVarint(doc - lastDoc);
+            writeVarint(tf);
+            lastDoc = doc;
+            docFreq++;
+        }
+
+        Postings build(byte[] lengths, float[] norms) {
+            int blocks = (docFreq + SKIP_INTERVAL - 1) / SKIP_INTERVAL;
+            Postings postings = new Postings(Arrays.copyOf(data, size), docFreq,
+                skipDocs != null ? Arrays.copyOf(skipDocs, blocks) : null,
+                skipOffsets != null ? Arrays.copyOf(skipOffsets, blocks) : null);
+
+            int position = 0;
+            int doc = 0;
+            float max = 0;
+            while (position < size) {
+                int[] decoded = readVarint(position);
+                doc += decoded[0];
+                decoded = readVarint(decoded[1]);
+                int tf = decoded[0];
+                position = decoded[1];
+                max = Math.max(max, tf / (tf + norms[lengths[doc] & 0xFF]));
+            }
+            postings.maxTfNorm = max;
+            return postings;
+        }
+
+        // {value, next position}; only used once per list at build time
+        private int[] readVarint(int position) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return new int[] {value, position};
+        }
+
+        private void writeVarint(int value) {
+            if (size + 5 > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + 5));
+            }
+            while ((value & ~0x7F) != 0) {
+                data[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+    }
+}
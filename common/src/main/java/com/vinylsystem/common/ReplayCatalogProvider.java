@@ -0,0 +1,181 @@
+package com.vinylsystem.common;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Answers like the Discogs API from responses recorded earlier with
+ * {@code discogs.record.dir}, so searches can be benchmarked and tested offline.
+ * Each response is delayed by a fixed latency to stand in for the network.
+ * A request that was never recorded fails like a Discogs 404.
+ *
+ * Recordings are keyed by the request path and query, so they replay against any base URL.
+ * Responses are parsed like live ones, through {@link DiscogsJson}.
+ */
+public class ReplayCatalogProvider implements MusicCatalogProvider {
+    private static final String REPLAY_BASE_URL = "http://replay.invalid";
+
+    private final Path directory;
+    private final long latencyMillis;
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong missing = new AtomicLong();
+
+    /**
+     * @param directory directory holding the recorded responses
+     * @param latencyMillis delay added to every response
+     */
+    public ReplayCatalogProvider(Path directory, long latencyMillis) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            throw new IOException("Replay directory does not exist: " + directory);
+        }
+        this.directory = directory;
+        this.latencyMillis = Math.max(0, latencyMillis);
+    }
+
+    @Override
+    public String getName() {
+        return "replay";
+    }
+
+    @Override
+    public DiscogsSearchResult searchReleaseResults(String query, int limit, DiscogsRateLimiter.Priority priority)
+        throws IOException {
+        requireText(query, "Search query cannot be empty");
+        List<MusicRelease> releases;
+        if (limit > ProtocolConstants.MAX_DISCOGS_PAGE_SIZE) {
+            releases = searchReleasePages(query, limit, priority);
+        } else {
+            releases = DiscogsJson.parseReleases(load(DiscogsApiService.searchUrl(REPLAY_BASE_URL, query, limit)), limit);
+        }
+        return new DiscogsSearchResult(releases, releases.size());
+    }
+
+    @Override
+    public DiscogsSearchResult searchReleasesPage(String query, int page, int perPage, DiscogsRateLimiter.Priority priority,
+                                                  Consumer<MusicRelease> consumer) throws IOException {
+        requireText(query, "Search query cannot be empty");
+        int pageSize = Math.max(1, Math.min(perPage, ProtocolConstants.MAX_DISCOGS_PAGE_SIZE));
+        String body = load(DiscogsApiService.pageUrl(REPLAY_BASE_URL, query, page, pageSize));
+        return DiscogsJson.parseReleasePage(body, page, pageSize, consumer);
+    }
+
+    @Override
+    public List<MusicArtist> searchArtists(String artistName, int limit) throws IOException {
+        requireText(artistName, "Artist name cannot be empty");
+        return DiscogsJson.parseArtists(load(DiscogsApiService.artistSearchUrl(REPLAY_BASE_URL, artistName, limit)), limit);
+    }
+
+    @Override
+    public MusicRelease getRelease(String releaseId, DiscogsRateLimiter.Priority priority) throws IOException {
+        requireText(releaseId, "Release ID cannot be empty");
+        return DiscogsJson.parseRelease(load(DiscogsApiService.releaseUrl(REPLAY_BASE_URL, releaseId)));
+    }
+
+    /**
+     * Large limits read the recorded pages one after another, as Discogs serves at most
+     * one page per request
+     */
+    private List<MusicRelease> searchReleasePages(String query, int limit, DiscogsRateLimiter.Priority priority)
+        throws IOException {
+        List<MusicRelease> releases = new ArrayList<>(limit);
+        for (int page = 1; releases.size() < limit; page++) {
+            DiscogsSearchResult result = searchReleasesPage(query, page, ProtocolConstants.MAX_DISCOGS_PAGE_SIZE, priority, release -> {
+                if (releases.size() < limit) releases.add(release);
+            });
+            if (result.getResults().isEmpty() || page >= result.getPages()) {
+                break;
+            }
+        }
+        return releases;
+    }
+
+    private static void requireText(String value, String message) {
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    private String load(String url) throws IOException {
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while replaying " + url);
+            }
+        }
+        try {
+            String body = Files.readString(recordingPath(directory, url), StandardCharsets.UTF_8);
+            replayed.incrementAndGet();
+            return body;
+        } catch (NoSuchFileException e) {
+            missing.incrementAndGet();
+            throw new HttpStatusException(404, url, Map.of());
+        }
+    }
+
+    /**
+     * Save a response body under the recording name of its URL, replacing any earlier recording
+     */
+    static void record(Path directory, String url, String body) throws IOException {
+        Files.createDirectories(directory);
+        Path target = recordingPath(directory, url);
+        Path tempFile = Files.createTempFile(directory, "recording", ".tmp");
+        try {
+            Files.writeString(tempFile, body, StandardCharsets.UTF_8);
+            try {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Readable file name for a request path and query, made unique with a hash of both
+     */
+    static Path recordingPath(Path directory, String url) {
+        URI uri = URI.create(url);
+        String key = uri.getRawQuery() != null ? uri.getRawPath() + "?" + uri.getRawQuery() : uri.getRawPath();
+        String readable = key.replaceAll("[^A-Za-z0-9._-]+", "_");
+        if (readable.length() > 80) {
+            readable = readable.substring(0, 80);
+        }
+        return directory.resolve(readable + "-" + sha256Prefix(key) + ".json");
+    }
+
+    private static String sha256Prefix(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(16);
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "replay " + directory + ": replayed=" + replayed.get() + ", missing=" + missing.get() +
+               ", latency=" + latencyMillis + "ms";
+    }
+}
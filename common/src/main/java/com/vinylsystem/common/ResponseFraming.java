@@ -0,0 +1,189 @@
+package com.vinylsystem.common;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Framing for multi-line vinyl server responses.
+ * 
+ * A response is a sequence of frames. Each frame is a header line
+ * "FRAME <lineCount> <MORE|END>" followed by exactly lineCount lines of text.
+ * The last frame of a response is flagged END, so a client always knows where
+ * a response stops and can keep using the same connection for the next one.
+ * Large result sets can be streamed as several MORE frames.
+ */
+public class ResponseFraming {
+    
+    /**
+     * Write a complete response as a single END frame
+     */
+    public static void writeResponse(PrintWriter writer, String text) {
+        writer.print(encode(text));
+        writer.flush();
+    }
+    
+    /**
+     * Write one frame; pass last=false while more lines of the same response follow.
+     * A line holding line breaks is sent as several lines, as {@link #encode} does,
+     * so the header always counts the lines that follow it.
+     */
+    public static void writeFrame(PrintWriter writer, List<String> lines, boolean last) {
+        StringBuilder body = new StringBuilder();
+        int lineCount = 0;
+        for (String line : lines) {
+            lineCount += appendLines(body, line);
+        }
+        StringBuilder frame = new StringBuilder(body.length() + 24);
+        appendHeader(frame, lineCount, last);
+        frame.append(body);
+        writer.print(frame);
+        writer.flush();
+    }
+    
+    /**
+     * Encode a complete response (header plus lines) as it appears on the wire
+     */
+    public static String encode(String text) {
+        String[] lines = splitLines(text);
+        StringBuilder frame = new StringBuilder(text.length() + 24);
+        appendHeader(frame, lines.length, true);
+        for (String line : lines) {
+            frame.append(line).append('\n');
+        }
+        return frame.toString();
+    }
+    
+    /**
+     * Read one complete response and join its lines with '\n'
+     * @return the response text, or null if the connection closed before a response started
+     */
+    public static String readResponse(BufferedReader reader) throws IOException {
+        StringBuilder response = new StringBuilder();
+        boolean received = readResponse(reader, line -> {
+            if (response.length() > 0) response.append('\n');
+            response.append(line);
+        });
+        return received ? response.toString() : null;
+    }
+    
+    /**
+     * Read one complete response, handing each line to the consumer as soon as it arrives
+     * @return false if the connection closed before a response started
+     */
+    public static boolean readResponse(BufferedReader reader, Consumer<String> lineConsumer) throws IOException {
+        boolean first = true;
+        while (true) {
+            String header = reader.readLine();
+            if (header == null) {
+                if (first) return false;
+                throw new IOException("Connection closed in the middle of a response");
+            }
+            first = false;
+            
+            String[] parts = header.split(" ");
+            if (parts.length != 3 || !ProtocolConstants.FRAME_HEADER.equals(parts[0])) {
+                throw new IOException("Invalid frame header: " + header);
+            }
+            int lineCount;
+            try {
+                lineCount = Integer.parseInt(parts[1]);
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid frame line count: " + header);
+            }
+            if (lineCount < 0 || lineCount > ProtocolConstants.MAX_FRAME_LINES) {
+                throw new IOException("Frame line count out of range: " + lineCount);
+            }
+            
+            for (int i = 0; i < lineCount; i++) {
+                String line = reader.readLine();
+                if (line == null) {
+                    throw new IOException("Connection closed in the middle of a frame");
+                }
+                lineConsumer.accept(line);
+            }
+            
+            if (ProtocolConstants.FRAME_END.equals(parts[2])) {
+                return true;
+            }
+            if (!ProtocolConstants.FRAME_MORE.equals(parts[2])) {
+                throw new IOException("Invalid frame flag: " + header);
+            }
+        }
+    }
+    
+    /**
+     * Writes one response piece by piece: buffered lines go out as a MORE frame
+     * on every flush, and finish() sends the rest as the END frame
+     */
+    public static class Stream {
+        private final PrintWriter writer;
+        private final List<String> pending = new ArrayList<>();
+        private boolean finished;
+        
+        public Stream(PrintWriter writer) {
+            this.writer = writer;
+        }
+        
+        /**
+         * Buffer one line; line breaks inside it become spaces, so text taken from a
+         * request or from Discogs data cannot split it or shift the frame's line count
+         */
+        public void line(String line) {
+            pending.add(line.indexOf('\n') < 0 && line.indexOf('\r') < 0
+                ? line : line.replace('\r', ' ').replace('\n', ' '));
+        }
+        
+        /**
+         * Send the buffered lines now
+         */
+        public void flush() {
+            if (pending.isEmpty() || finished) return;
+            writeFrame(writer, pending, false);
+            pending.clear();
+        }
+        
+        public void finish() {
+            if (finished) return;
+            finished = true;
+            writeFrame(writer, pending, true);
+            pending.clear();
+        }
+    }
+    
+    private static void appendHeader(StringBuilder frame, int lineCount, boolean last) {
+        frame.append(ProtocolConstants.FRAME_HEADER).append(' ').append(lineCount).append(' ')
+             .append(last ? ProtocolConstants.FRAME_END : ProtocolConstants.FRAME_MORE).append('\n');
+    }
+    
+    /**
+     * Append one line, split at any line break it holds
+     * @return the number of lines appended
+     */
+    private static int appendLines(StringBuilder body, String line) {
+        if (line.indexOf('\n') < 0 && line.indexOf('\r') < 0) {
+            body.append(line).append('\n');
+            return 1;
+        }
+        String[] pieces = splitLines(line);
+        if (pieces.length == 0) {
+            body.append('\n');
+            return 1;
+        }
+        for (String piece : pieces) {
+            body.append(piece).append('\n');
+        }
+        return pieces.length;
+    }
+    
+    private static String[] splitLines(String text) {
+        String normalized = text.replace("\r", "");
+        if (normalized.endsWith("\n")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized.isEmpty() ? new String[0] : normalized.split("\n", -1);
+    }
+}
@@ -1,5 +1,7 @@
 package com.vinylsystem.common;
 
+import java.util.List;
+
 /**
  * Response message for both TCP and UDP protocols
  */
@@ -8,6 +10,7 @@ public class ResponseMessage {
     private String message;
     private String serverIP;
     private Integer serverPort;
+    private List<String> servers; // "name@ip:port" entries for group lookups
     
     public ResponseMessage() {}
     
@@ -23,6 +26,12 @@ public class ResponseMessage {
         this.serverPort = serverPort;
     }
     
+    public ResponseMessage(String statusCode, String message, List<String> servers) {
+        this.statusCode = statusCode;
+        this.message = message;
+        this.servers = servers;
+    }
+    
     public String getStatusCode() { return statusCode; }
     public void setStatusCode(String statusCode) { this.statusCode = statusCode; }
     
@@ -34,4 +43,7 @@ public class ResponseMessage {
     
     public Integer getServerPort() { return serverPort; }
     public void setServerPort(Integer serverPort) { this.serverPort = serverPort; }
+    
+    public List<String> getServers() { return servers; }
+    public void setServers(List<String> servers) { this.servers = servers; }
 }
\ No newline at end of file
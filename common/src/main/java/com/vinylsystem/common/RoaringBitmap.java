@@ -0,0 +1,541 @@
+package com.vinylsystem.common;
+
+import java.util.Arrays;
+
+/**
+ * Compressed set of non-negative ints in the style of Roaring bitmaps.
+ *
+ * Values are split by their high 16 bits into chunks. A chunk with at most
+ * 4096 values is a sorted char array; a denser chunk is a 65536-bit bitmap.
+ * Sparse facet values (a rare style) therefore cost a few bytes per document
+ * and dense ones (a common genre) one bit per document, and intersections
+ * work chunk by chunk.
+ *
+ * Instances are built once and then only read, so reads need no locking.
+ */
+public class RoaringBitmap {
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1024;
+    // Array cut-off for bitmaps converted from bitsets
+    private static final int PROBE_ARRAY_MAX = 16;
+
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int size;
+
+    /**
+     * Add a value; cheapest when values arrive in increasing order
+     */
+    public void add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+        char key = (char) (value >>> 16);
+        char low = (char) value;
+        int index = size > 0 && keys[size - 1] == key ? size - 1 : Arrays.binarySearch(keys, 0, size, key);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, key, new ArrayContainer());
+        }
+        containers[index] = containers[index].add(low);
+    }
+
+    public boolean contains(int value) {
+        if (value < 0) return false;
+        int index = Arrays.binarySearch(keys, 0, size, (char) (value >>> 16));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    public int cardinality() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += containers[i].cardinality;
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * New bitmap with the values present in both
+     */
+    public RoaringBitmap and(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality > 0) {
+                    result.appendContainer(keys[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * New bitmap with the values present in either
+     */
+    public RoaringBitmap or(RoaringBitmap other) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j >= other.size || (i < size && keys[i] < other.keys[j])) {
+                result.appendContainer(keys[i], containers[i].copy());
+                i++;
+            } else if (i >= size || keys[i] > other.keys[j]) {
+                result.appendContainer(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.appendContainer(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Number of values present in both, without building the intersection
+     */
+    public int andCardinality(RoaringBitmap other) {
+        int total = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                total += containers[i].andCardinality(other.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Bitmap of the bits set in a dense bitset (bit n of word n / 64).
+     * Meant as the probe side of {@link #andCardinality}: only nearly empty
+     * chunks become arrays, since streaming another bitmap's long array
+     * containers through an 8 KB bitmap beats searching them at random.
+     */
+    public static RoaringBitmap fromBitset(long[] words) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int base = 0; base < words.length; base += BITMAP_WORDS) {
+            int end = Math.min(words.length, base + BITMAP_WORDS);
+            int cardinality = 0;
+            for (int w = base; w < end; w++) {
+                cardinality += Long.bitCount(words[w]);
+            }
+            if (cardinality == 0) continue;
+
+            BitmapContainer chunk = new BitmapContainer();
+            System.arraycopy(words, base, chunk.words, 0, end - base);
+            chunk.cardinality = cardinality;
+            bitmap.appendContainer((char) (base / BITMAP_WORDS), cardinality <= PROBE_ARRAY_MAX ? chunk.toArray() : chunk);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Set every value of this bitmap in a dense bitset
+     */
+    public void copyTo(long[] dense) {
+        for (int i = 0; i < size; i++) {
+            int baseWord = keys[i] * BITMAP_WORDS;
+            if (baseWord >= dense.length) break;
+            containers[i].copyTo(dense, baseWord);
+        }
+    }
+
+    /**
+     * Up to {@code limit} smallest values, in increasing order
+     */
+    public int[] first(int limit) {
+        int[] values = new int[Math.min(limit, cardinality())];
+        int count = 0;
+        for (int i = 0; i < size && count < values.length; i++) {
+            count = containers[i].fill(values, count, keys[i] << 16);
+        }
+        return values;
+    }
+
+    /**
+     * Estimated heap size in bytes
+     */
+    public long sizeInBytes() {
+        long bytes = 32 + keys.length * 2L + containers.length * 8L;
+        for (int i = 0; i < size; i++) {
+            bytes += containers[i].sizeInBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Release spare capacity once the bitmap is complete
+     */
+    public void trim() {
+        keys = Arrays.copyOf(keys, size);
+        containers = Arrays.copyOf(containers, size);
+        for (int i = 0; i < size; i++) {
+            containers[i] = containers[i].trim();
+        }
+    }
+
+    private void insertContainer(int index, char key, Container container) {
+        if (size == keys.length) {
+            int capacity = Math.max(4, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    private void appendContainer(char key, Container container) {
+        insertContainer(size, key, container);
+    }
+
+    private abstract static class Container {
+        int cardinality;
+
+        abstract Container add(char value);
+        abstract boolean contains(char value);
+        abstract Container and(Container other);
+        abstract Container or(Container other);
+        abstract int andCardinality(Container other);
+        abstract void copyTo(long[] dense, int baseWord);
+        abstract int fill(int[] values, int offset, int base);
+        abstract Container copy();
+        abstract Container trim();
+        abstract long sizeInBytes();
+    }
+
+    private static final class ArrayContainer extends Container {
+        char[] values;
+
+        ArrayContainer() {
+            this.values = new char[4];
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = cardinality > 0 && values[cardinality - 1] < value
+                ? -cardinality - 1 : Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) {
+                return this;
+            }
+            if (cardinality == ARRAY_MAX) {
+                return toBitmap().add(value);
+            }
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality * 2));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[Math.min(cardinality, other.cardinality)];
+            int count = 0;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                int i = 0;
+                int j = 0;
+                while (i < cardinality && j < array.cardinality) {
+                    if (values[i] < array.values[j]) i++;
+                    else if (values[i] > array.values[j]) j++;
+                    else {
+                        result[count++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) result[count++] = values[i];
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.or(this);
+            }
+            ArrayContainer array = (ArrayContainer) other;
+            if (cardinality + array.cardinality > ARRAY_MAX) {
+                return toBitmap().or(other);
+            }
+            char[] result = new char[cardinality + array.cardinality];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < cardinality || j < array.cardinality) {
+                if (j >= array.cardinality || (i < cardinality && values[i] < array.values[j])) {
+                    result[count++] = values[i++];
+                } else if (i >= cardinality || values[i] > array.values[j]) {
+                    result[count++] = array.values[j++];
+                } else {
+                    result[count++] = values[i++];
+                    j++;
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.andCardinality(this);
+            }
+            ArrayContainer array = (ArrayContainer) other;
+            ArrayContainer small = cardinality <= array.cardinality ? this : array;
+            ArrayContainer large = small == this ? array : this;
+            int count = 0;
+            if (small.cardinality * 16 < large.cardinality) {
+                // gallop through the long array from one probe to the next
+                char[] values = large.values;
+                int from = 0;
+                for (int i = 0; i < small.cardinality && from < large.cardinality; i++) {
+                    char target = small.values[i];
+                    int step = 1;
+                    int to = from;
+                    while (to < large.cardinality && values[to] < target) {
+                        from = to + 1;
+                        to += step;
+                        step <<= 1;
+                    }
+                    int index = Arrays.binarySearch(values, from, Math.min(to + 1, large.cardinality), target);
+                    if (index >= 0) {
+                        count++;
+                        from = index + 1;
+                    } else {
+                        from = -index - 1;
+                    }
+                }
+                return count;
+            }
+            int i = 0;
+            int j = 0;
+            while (i < cardinality && j < array.cardinality) {
+                if (values[i] < array.values[j]) i++;
+                else if (values[i] > array.values[j]) j++;
+                else {
+                    count++;
+                    i++;
+                    j++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        void copyTo(long[] dense, int baseWord) {
+            for (int i = 0; i < cardinality; i++) {
+                int word = baseWord + (values[i] >>> 6);
+                if (word < dense.length) dense[word] |= 1L << values[i];
+            }
+        }
+
+        @Override
+        int fill(int[] out, int offset, int base) {
+            for (int i = 0; i < cardinality && offset < out.length; i++) {
+                out[offset++] = base | values[i];
+            }
+            return offset;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, cardinality), cardinality);
+        }
+
+        @Override
+        Container trim() {
+            if (values.length != cardinality) {
+                values = Arrays.copyOf(values, cardinality);
+            }
+            return this;
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 24 + values.length * 2L;
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.words[values[i] >>> 6] |= 1L << values[i];
+            }
+            bitmap.cardinality = cardinality;
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        final long[] words = new long[BITMAP_WORDS];
+
+        @Override
+        Container add(char value) {
+            long mask = 1L << value;
+            if ((words[value >>> 6] & mask) == 0) {
+                words[value >>> 6] |= mask;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            BitmapContainer result = new BitmapContainer();
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                result.words[i] = words[i] & otherWords[i];
+                count += Long.bitCount(result.words[i]);
+            }
+            result.cardinality = count;
+            return count <= ARRAY_MAX ? result.toArray() : result;
+        }
+
+        @Override
+        Container or(Container other) {
+            BitmapContainer result = (BitmapContainer) copy();
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.cardinality; i++) {
+                    result.add(array.values[i]);
+                }
+                return result;
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                result.words[i] |= otherWords[i];
+                count += Long.bitCount(result.words[i]);
+            }
+            result.cardinality = count;
+            return result;
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (cardinality == 1 << 16) {
+                return other.cardinality;
+            }
+            int count = 0;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.cardinality; i++) {
+                    char value = array.values[i];
+                    count += (int) (words[value >>> 6] >>> value) & 1;
+                }
+                return count;
+            }
+            if (other.cardinality == 1 << 16) {
+                return cardinality;
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                count += Long.bitCount(words[i] & otherWords[i]);
+            }
+            return count;
+        }
+
+        @Override
+        void copyTo(long[] dense, int baseWord) {
+            int end = Math.min(BITMAP_WORDS, dense.length - baseWord);
+            for (int i = 0; i < end; i++) {
+                dense[baseWord + i] |= words[i];
+            }
+        }
+
+        @Override
+        int fill(int[] out, int offset, int base) {
+            for (int i = 0; i < BITMAP_WORDS && offset < out.length; i++) {
+                long word = words[i];
+                while (word != 0 && offset < out.length) {
+                    out[offset++] = base | (i << 6) | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                }
+            }
+            return offset;
+        }
+
+        @Override
+        Container copy() {
+            BitmapContainer copy = new BitmapContainer();
+            System.arraycopy(words, 0, copy.words, 0, BITMAP_WORDS);
+            copy.cardinality = cardinality;
+            return copy;
+        }
+
+        @Override
+        Container trim() {
+            return this;
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 24 + BITMAP_WORDS * 8L;
+        }
+
+        ArrayContainer toArray() {
+            char[] values = new char[cardinality];
+            fillValues(values);
+            return new ArrayContainer(values, cardinality);
+        }
+
+        private void fillValues(char[] values) {
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[count++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+}
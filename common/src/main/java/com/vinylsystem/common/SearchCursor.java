@@ -0,0 +1,72 @@
+package com.vinylsystem.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in a paged search, handed to clients as an opaque token.
+ *
+ * A cursor remembers which source answered the first page (so later pages
+ * never switch between the local catalog and Discogs), the offset of the next
+ * result and a hash of the query it belongs to, so a cursor cannot be replayed
+ * against a different query.
+ */
+public class SearchCursor {
+    private static final String VERSION = "1";
+
+    /**
+     * Where the results of a paged search come from
+     */
+    public enum Source { LOCAL, DISCOGS }
+
+    private final Source source;
+    private final int offset;
+    private final int queryHash;
+
+    public SearchCursor(Source source, int offset, String searchKey) {
+        this(source, offset, searchKey.hashCode());
+    }
+
+    private SearchCursor(Source source, int offset, int queryHash) {
+        this.source = source;
+        this.offset = offset;
+        this.queryHash = queryHash;
+    }
+
+    public Source getSource() { return source; }
+    public int getOffset() { return offset; }
+
+    /**
+     * Token for the client
+     */
+    public String encode() {
+        String plain = VERSION + ":" + source.name() + ":" + offset + ":" + Integer.toHexString(queryHash);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a client token for the given query
+     * @throws IllegalArgumentException if the token is malformed or belongs to another query
+     */
+    public static SearchCursor decode(String token, String searchKey) {
+        try {
+            String plain = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = plain.split(":");
+            if (parts.length == 4 && VERSION.equals(parts[0])) {
+                SearchCursor cursor = new SearchCursor(Source.valueOf(parts[1]), Integer.parseInt(parts[2]),
+                                                       Integer.parseUnsignedInt(parts[3], 16));
+                if (cursor.offset >= 0 && cursor.queryHash == searchKey.hashCode()) {
+                    return cursor;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // bad base64, source or number; reported below
+        }
+        throw new IllegalArgumentException("Invalid or expired cursor for this query");
+    }
+
+    @Override
+    public String toString() {
+        return "SearchCursor{source=" + source + ", offset=" + offset + "}";
+    }
+}
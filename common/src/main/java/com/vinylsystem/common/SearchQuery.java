@@ -0,0 +1,147 @@
+package com.vinylsystem.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A search request split into free text, inline facet filters and paging options.
+ *
+ * Filters are written as {@code facet:value} anywhere in the query, e.g.
+ * {@code pink floyd genre:rock year:1970-1979 format:LP country:UK}.
+ * Values containing spaces are quoted ({@code style:"prog rock"}) and
+ * alternatives are separated with '|' ({@code country:UK|US}). Words that
+ * are not recognized options stay part of the text.
+ *
+ * {@code limit:<n>} sets the page size and {@code cursor:<token>} continues
+ * from the "Next cursor" of a previous page; either one makes the request paged.
+ */
+public class SearchQuery {
+    private final String text;
+    private final Map<FacetIndex.Facet, List<String>> filters;
+    private int pageSize;
+    private String cursor;
+
+    public SearchQuery(String text, Map<FacetIndex.Facet, List<String>> filters) {
+        this.text = text;
+        this.filters = filters;
+    }
+
+    /**
+     * Parse a query line; invalid year filters and page sizes are rejected
+     */
+    public static SearchQuery parse(String query) {
+        StringBuilder text = new StringBuilder();
+        Map<FacetIndex.Facet, List<String>> filters = new EnumMap<>(FacetIndex.Facet.class);
+        int pageSize = 0;
+        String cursor = null;
+        int i = 0;
+        int length = query.length();
+        while (i < length) {
+            while (i < length && Character.isWhitespace(query.charAt(i))) i++;
+            if (i >= length) break;
+
+            int start = i;
+            int colon = -1;
+            while (i < length && !Character.isWhitespace(query.charAt(i))) {
+                if (query.charAt(i) == ':' && colon < 0) {
+                    colon = i;
+                    if (i + 1 < length && query.charAt(i + 1) == '"') {
+                        // quoted value runs to the closing quote
+                        int close = query.indexOf('"', i + 2);
+                        i = close < 0 ? length : close + 1;
+                        break;
+                    }
+                }
+                i++;
+            }
+            String word = query.substring(start, i);
+            String option = colon > start ? query.substring(start, colon) : "";
+            String value = colon > start ? unquote(query.substring(colon + 1, i)) : "";
+            if (option.equalsIgnoreCase("limit") && !value.isEmpty()) {
+                pageSize = parsePageSize(value);
+                continue;
+            }
+            if (option.equalsIgnoreCase("cursor") && !value.isEmpty()) {
+                cursor = value;
+                continue;
+            }
+            FacetIndex.Facet facet = FacetIndex.Facet.forName(option);
+            if (facet == null || value.isEmpty()) {
+                if (text.length() > 0) text.append(' ');
+                text.append(word);
+                continue;
+            }
+
+            List<String> values = filters.computeIfAbsent(facet, f -> new ArrayList<>());
+            for (String alternative : value.split("\\|")) {
+                if (alternative.isBlank()) continue;
+                if (facet == FacetIndex.Facet.YEAR) {
+                    FacetIndex.parseYearRange(alternative);
+                }
+                values.add(alternative.trim());
+            }
+        }
+        SearchQuery parsed = new SearchQuery(text.toString(), filters);
+        parsed.pageSize = pageSize;
+        parsed.cursor = cursor;
+        return parsed;
+    }
+
+    public String getText() { return text; }
+    public Map<FacetIndex.Facet, List<String>> getFilters() { return Collections.unmodifiableMap(filters); }
+    // 0 unless set with limit:
+    public int getPageSize() { return pageSize; }
+    public String getCursor() { return cursor; }
+
+    public boolean hasFilters() {
+        return !filters.isEmpty();
+    }
+
+    public boolean isPaged() {
+        return pageSize > 0 || cursor != null;
+    }
+
+    /**
+     * Normalized text and filters without the paging options, identifying the
+     * result set that a cursor walks through
+     */
+    public String getSearchKey() {
+        StringBuilder key = new StringBuilder(SearchResultCache.normalizeQuery(text));
+        for (Map.Entry<FacetIndex.Facet, List<String>> filter : filters.entrySet()) {
+            key.append(' ').append(filter.getKey().name().toLowerCase(Locale.ROOT)).append(':');
+            for (int i = 0; i < filter.getValue().size(); i++) {
+                if (i > 0) key.append('|');
+                key.append(filter.getValue().get(i).toLowerCase(Locale.ROOT));
+            }
+        }
+        return key.toString();
+    }
+
+    private static int parsePageSize(String value) {
+        try {
+            int size = Integer.parseInt(value);
+            if (size > 0) return size;
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid page size: " + value);
+    }
+
+    private static String unquote(String value) {
+        if (value.startsWith("\"")) {
+            value = value.endsWith("\"") && value.length() > 1
+                ? value.substring(1, value.length() - 1) : value.substring(1);
+        }
+        return value.trim();
+    }
+
+    @Override
+    public String toString() {
+        return "SearchQuery{text='" + text + "', filters=" + filters + ", pageSize=" + pageSize +
+               ", cursor=" + cursor + "}";
+    }
+}
@@ -0,0 +1,253 @@
+package com.vinylsystem.common;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Cache of release search results keyed by normalized query and result limit.
+ * An optional {@link OffHeapCacheStore} holds serialized results outside the heap
+ * behind the in-memory cache, so a large cache does not slow garbage collection.
+ * An optional {@link DiskCacheStore} acts as the last, persistent tier so results
+ * survive restarts.
+ */
+public class SearchResultCache {
+    // Java object layout estimates (compressed oops, compact Latin-1 strings)
+    private static final int LIST_OVERHEAD = 56;
+    private static final int RELEASE_OVERHEAD = 64;
+    private static final int STRING_OVERHEAD = 40;
+    
+    private static final String DISK_KEY_PREFIX = "search:";
+    
+    private final TinyLfuCache<List<MusicRelease>> cache;
+    private OffHeapCacheStore offHeapStore;
+    private long offHeapTtlMillis;
+    private long offHeapHits;
+    private DiskCacheStore diskStore;
+    private long diskTtlMillis;
+    private long diskHits;
+    private long staleHits;
+    
+    public SearchResultCache(long maxBytes, long ttlMillis) {
+        this(maxBytes, ttlMillis, 0);
+    }
+    
+    /**
+     * @param staleMillis how long expired results remain available through {@link #getStale}
+     */
+    public SearchResultCache(long maxBytes, long ttlMillis, long staleMillis) {
+        // Assume roughly 2 KB per cached result list when sizing the frequency sketch
+        int expectedEntries = (int) Math.min(Integer.MAX_VALUE, Math.max(64, maxBytes / 2048));
+        this.cache = new TinyLfuCache<>(maxBytes, ttlMillis, staleMillis, expectedEntries, SearchResultCache::estimateSize);
+    }
+    
+    /**
+     * Back the memory cache with an off-heap store, checked before the disk store
+     */
+    public synchronized void setOffHeapStore(OffHeapCacheStore offHeapStore, long offHeapTtlMillis) {
+        this.offHeapStore = offHeapStore;
+        this.offHeapTtlMillis = offHeapTtlMillis;
+    }
+    
+    /**
+     * Back the memory cache with a persistent store
+     */
+    public synchronized void setDiskStore(DiskCacheStore diskStore, long diskTtlMillis) {
+        this.diskStore = diskStore;
+        this.diskTtlMillis = diskTtlMillis;
+    }
+    
+    /**
+     * Cached results for the query, or null on a miss in both tiers
+     */
+    public List<MusicRelease> get(String query, int limit) {
+        return lookup(cacheKey(query, limit));
+    }
+    
+    /**
+     * Cached upstream page of a paged search, or null on a miss in both tiers
+     */
+    public List<MusicRelease> getPage(String query, int page, int perPage) {
+        return lookup(pageKey(query, page, perPage));
+    }
+    
+    /**
+     * Results kept in memory past their freshness, or null. Use after {@link #get} missed.
+     */
+    public List<MusicRelease> getStale(String query, int limit) {
+        return lookupStale(cacheKey(query, limit));
+    }
+    
+    public List<MusicRelease> getStalePage(String query, int page, int perPage) {
+        return lookupStale(pageKey(query, page, perPage));
+    }
+    
+    /**
+     * @return the list as cached, which later hits return
+     */
+    public List<MusicRelease> put(String query, int limit, List<MusicRelease> results) {
+        return store(cacheKey(query, limit), results);
+    }
+    
+    public List<MusicRelease> putPage(String query, int page, int perPage, List<MusicRelease> results) {
+        return store(pageKey(query, page, perPage), results);
+    }
+    
+    private List<MusicRelease> lookup(String key) {
+        List<MusicRelease> results = cache.get(key);
+        if (results != null) {
+            return results;
+        }
+        
+        OffHeapCacheStore offHeap = offHeapStore;
+        DiskCacheStore disk = diskStore;
+        byte[] stored = offHeap != null ? offHeap.get(key) : null;
+        long expiresAt = stored != null ? offHeap.expiresAt(key) : 0;
+        boolean fromDisk = false;
+        if (stored == null && disk != null) {
+            stored = disk.get(DISK_KEY_PREFIX + key);
+            expiresAt = stored != null ? disk.expiresAt(DISK_KEY_PREFIX + key) : 0;
+            fromDisk = true;
+        }
+        if (stored == null) {
+            return null;
+        }
+        try {
+            results = newCachedList(key, ReleaseCodec.decodeList(stored));
+        } catch (IOException e) {
+            System.err.println("Discarding undecodable cache entry for " + key + ": " + e.getMessage());
+            return null;
+        }
+        synchronized (this) {
+            if (fromDisk) {
+                diskHits++;
+            } else {
+                offHeapHits++;
+            }
+        }
+        // Promote to memory so the next hit skips decoding. The copies keep the stored
+        // expiry, so results age out (and are then served stale) as if never evicted.
+        cache.put(key, results, expiresAt);
+        long remainingMillis = expiresAt - System.currentTimeMillis();
+        if (fromDisk && offHeap != null && remainingMillis > 0) {
+            offHeap.put(key, stored, remainingMillis);
+        }
+        return results;
+    }
+    
+    private List<MusicRelease> lookupStale(String key) {
+        List<MusicRelease> results = cache.getStale(key);
+        if (results != null) {
+            synchronized (this) {
+                staleHits++;
+            }
+        }
+        return results;
+    }
+    
+    private List<MusicRelease> store(String key, List<MusicRelease> results) {
+        CachedReleaseList cached = newCachedList(key, results);
+        cache.put(key, cached);
+        OffHeapCacheStore offHeap = offHeapStore;
+        if (offHeap == null && diskStore == null) {
+            return cached;
+        }
+        byte[] encoded = ReleaseCodec.encodeList(results);
+        if (offHeap != null) {
+            offHeap.put(key, encoded, offHeapTtlMillis);
+        }
+        if (diskStore != null) {
+            try {
+                diskStore.put(DISK_KEY_PREFIX + key, encoded, diskTtlMillis);
+            } catch (IOException e) {
+                System.err.println("Disk cache write failed: " + e.getMessage());
+            }
+        }
+        return cached;
+    }
+    
+    /**
+     * A list whose encoded responses count towards its weight in the memory cache
+     */
+    private CachedReleaseList newCachedList(String key, List<MusicRelease> releases) {
+        return new CachedReleaseList(releases, list -> cache.reweigh(key, list));
+    }
+    
+    public TinyLfuCache.Stats stats() {
+        return cache.stats();
+    }
+    
+    /**
+     * Lookups answered with expired results
+     */
+    public synchronized long getStaleHits() {
+        return staleHits;
+    }
+    
+    /**
+     * Off-heap tier statistics, or null if there is no off-heap tier
+     */
+    public synchronized String offHeapStats() {
+        return offHeapStore == null ? null : "offHeapHits=" + offHeapHits + ", " + offHeapStore;
+    }
+    
+    /**
+     * Disk tier statistics, or null if there is no disk tier
+     */
+    public synchronized String diskStats() {
+        return diskStore == null ? null : "diskHits=" + diskHits + ", " + diskStore;
+    }
+    
+    public synchronized void close() {
+        if (offHeapStore != null) {
+            offHeapStore.close();
+            offHeapStore = null;
+        }
+        if (diskStore != null) {
+            try {
+                diskStore.close();
+            } catch (IOException e) {
+                System.err.println("Error closing disk cache: " + e.getMessage());
+            }
+            diskStore = null;
+        }
+    }
+    
+    /**
+     * Cache key on the canonical form of the query
+     */
+    static String cacheKey(String query, int limit) {
+        return limit + "|" + normalizeQuery(query);
+    }
+    
+    static String pageKey(String query, int page, int perPage) {
+        return "page:" + page + ":" + perPage + "|" + normalizeQuery(query);
+    }
+    
+    static String normalizeQuery(String query) {
+        return QueryCanonicalizer.canonical(query);
+    }
+    
+    private static int estimateSize(String key, List<MusicRelease> releases) {
+        long size = LIST_OVERHEAD + sizeOf(key);
+        if (releases instanceof CachedReleaseList) {
+            size += ((CachedReleaseList) releases).memoryBytes();
+            return (int) Math.min(size, Integer.MAX_VALUE);
+        }
+        for (MusicRelease release : releases) {
+            size += releaseSize(release);
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+    
+    static int releaseSize(MusicRelease release) {
+        return RELEASE_OVERHEAD
+            + sizeOf(release.getId()) + sizeOf(release.getTitle()) + sizeOf(release.getArtist())
+            + sizeOf(release.getYear()) + sizeOf(release.getGenre()) + sizeOf(release.getStyle())
+            + sizeOf(release.getFormat()) + sizeOf(release.getLabel()) + sizeOf(release.getCatalogNumber())
+            + sizeOf(release.getCoverImage()) + sizeOf(release.getCountry());
+    }
+    
+    private static int sizeOf(String value) {
+        return value == null ? 0 : STRING_OVERHEAD + value.length();
+    }
+}
@@ -0,0 +1,92 @@
+package com.vinylsystem.common;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces concurrent identical calls so that only one of them runs.
+ * 
+ * The first caller for a key (the leader) performs the call on its own thread;
+ * callers arriving while it is in flight wait for the same result. A failure
+ * is rethrown to every waiter, and a waiter that is interrupted stops waiting
+ * without affecting the leader or the other waiters. Once the call completes
+ * the key is forgotten, so later calls go upstream again.
+ */
+public class SingleFlight<V> {
+    
+    /**
+     * The work being shared
+     */
+    public interface Call<V> {
+        V call() throws IOException;
+    }
+    
+    private final ConcurrentHashMap<String, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+    
+    /**
+     * Run the call, or join an identical call already in flight
+     */
+    public V execute(String key, Call<V> call) throws IOException {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return await(existing);
+        }
+        
+        try {
+            V value = call.call();
+            created.complete(value);
+            return value;
+        } catch (IOException | RuntimeException | Error e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+    
+    /**
+     * Number of calls that were served by another caller's request
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+    
+    /**
+     * Number of distinct calls currently in flight
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+    
+    private V await(CompletableFuture<V> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for in-flight request");
+        } catch (CancellationException e) {
+            throw new IOException("In-flight request was cancelled", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            if (cause instanceof InterruptedIOException) {
+                // The leader was interrupted; this waiter was not, so do not report an interrupt
+                throw new IOException("In-flight request was cancelled: " + cause.getMessage(), cause);
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+}
@@ -15,4 +15,5 @@ public class StatusCodes {
     public static final String INVALID_IP_FORMAT = "000005";
     public static final String TTL_EXPIRED = "000006";
     public static final String DUPLICATE_REGISTRATION = "000007";
+    public static final String BUSY = "000008"; // request shed because all workers and queue slots are taken
 }
\ No newline at end of file
@@ -0,0 +1,407 @@
+package com.vinylsystem.common;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-bounded cache with W-TinyLFU admission and a time-to-live.
+ *
+ * New entries land in a small LRU window (1% of the byte budget). Entries
+ * leaving the window compete with the eviction victim of the main segmented
+ * LRU (probation + protected) and are only admitted if a {@link FrequencySketch}
+ * has seen them more often recently. A burst of one-off queries therefore
+ * cannot flush the popular ones out of the cache.
+ *
+ * Keys are strings; weights are estimated byte sizes supplied by a {@link Weigher}.
+ * All operations take a single lock, which keeps hits in the microsecond range.
+ */
+public class TinyLfuCache<V> {
+
+    /**
+     * Estimates the retained heap size of a value in bytes
+     */
+    public interface Weigher<V> {
+        int weigh(String key, V value);
+    }
+
+    private enum Region { WINDOW, PROBATION, PROTECTED }
+
+    // Rough per-entry overhead of the node and the map entries holding it
+    private static final int ENTRY_OVERHEAD = 160;
+
+    private final long maxWeight;
+    private final long windowMaxWeight;
+    private final long protectedMaxWeight;
+    private final long ttlMillis;
+    private final long staleMillis;
+    private final Weigher<V> weigher;
+    private final FrequencySketch sketch;
+
+    private final Map<String, Node<V>> index = new HashMap<>();
+    private final LinkedHashMap<String, Node<V>> window = new LinkedHashMap<>();
+    private final LinkedHashMap<String, Node<V>> probation = new LinkedHashMap<>();
+    private final LinkedHashMap<String, Node<V>> protectedSegment = new LinkedHashMap<>();
+
+    private long windowWeight;
+    private long probationWeight;
+    private long protectedWeight;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejections;
+    private long expirations;
+
+    /**
+     * @param maxWeight byte budget for all entries
+     * @param ttlMillis time-to-live of an entry after it was stored
+     * @param expectedEntries rough entry count, used to size the frequency sketch
+     * @param weigher byte size estimator for values
+     */
+    public TinyLfuCache(long maxWeight, long ttlMillis, int expectedEntries, Weigher<V> weigher) {
+        this(maxWeight, ttlMillis, 0, expectedEntries, weigher);
+    }
+
+    /**
+     * @param staleMillis how long an expired entry is kept for {@link #getStale}
+     */
+    public TinyLfuCache(long maxWeight, long ttlMillis, long staleMillis, int expectedEntries, Weigher<V> weigher) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.maxWeight = maxWeight;
+        this.windowMaxWeight = Math.max(1, maxWeight / 100);
+        this.protectedMaxWeight = (long) ((maxWeight - windowMaxWeight) * 0.8);
+        this.ttlMillis = ttlMillis;
+        this.staleMillis = Math.max(0, staleMillis);
+        this.weigher = weigher;
+        this.sketch = new FrequencySketch(expectedEntries);
+    }
+
+    /**
+     * Get a live entry, or null on a miss or an expired entry
+     */
+    public synchronized V get(String key) {
+        sketch.increment(key.hashCode());
+
+        Node<V> node = index.get(key);
+        if (node == null) {
+            misses++;
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (node.isExpired(now)) {
+            // Expired entries stay available to getStale until the stale window has passed too
+            if (now >= node.expiresAt + staleMillis) {
+                remove(node);
+                expirations++;
+            }
+            misses++;
+            return null;
+        }
+
+        hits++;
+        onAccess(node);
+        return node.value;
+    }
+
+    /**
+     * Get an entry that has expired less than the stale window ago, or a live one,
+     * without counting an access; null otherwise
+     */
+    public synchronized V getStale(String key) {
+        Node<V> node = index.get(key);
+        if (node == null || System.currentTimeMillis() >= node.expiresAt + staleMillis) {
+            return null;
+        }
+        return node.value;
+    }
+
+    /**
+     * Whether a live entry exists, without counting an access
+     */
+    public synchronized boolean containsKey(String key) {
+        Node<V> node = index.get(key);
+        return node != null && !node.isExpired(System.currentTimeMillis());
+    }
+
+    /**
+     * Store an entry, subject to the admission policy once it leaves the window
+     */
+    public synchronized void put(String key, V value) {
+        put(key, value, System.currentTimeMillis() + ttlMillis);
+    }
+
+    /**
+     * Store an entry that expires at the given time instead of after the time-to-live,
+     * such as a value copied from a slower tier that keeps its original freshness.
+     * An entry already past the stale window is not stored.
+     */
+    public synchronized void put(String key, V value, long expiresAt) {
+        int weight = weigher.weigh(key, value) + ENTRY_OVERHEAD;
+
+        Node<V> existing = index.get(key);
+        if (existing != null) {
+            remove(existing);
+        }
+        if (System.currentTimeMillis() >= expiresAt + staleMillis) {
+            return;
+        }
+        if (weight > maxWeight - windowMaxWeight) {
+            rejections++;
+            return;
+        }
+
+        Node<V> node = new Node<>(key, value, weight, expiresAt);
+        index.put(key, node);
+        node.region = Region.WINDOW;
+        window.put(key, node);
+        windowWeight += weight;
+        drainWindow();
+    }
+
+    /**
+     * Weigh an entry again after its value grew or shrank in place, evicting as needed
+     * to stay within the budget. Does nothing unless the key still maps to this value.
+     */
+    public synchronized void reweigh(String key, V value) {
+        Node<V> node = index.get(key);
+        if (node == null || node.value != value) {
+            return;
+        }
+        int weight = weigher.weigh(key, value) + ENTRY_OVERHEAD;
+        int delta = weight - node.weight;
+        if (delta == 0) {
+            return;
+        }
+        if (weight > maxWeight - windowMaxWeight) {
+            remove(node);
+            evictions++;
+            return;
+        }
+        node.weight = weight;
+        switch (node.region) {
+            case WINDOW:
+                windowWeight += delta;
+                drainWindow();
+                break;
+            case PROBATION:
+                probationWeight += delta;
+                evictMainOverflow();
+                break;
+            case PROTECTED:
+                protectedWeight += delta;
+                demoteProtectedOverflow();
+                evictMainOverflow();
+                break;
+        }
+    }
+
+    /**
+     * Drop an entry if present
+     */
+    public synchronized void invalidate(String key) {
+        Node<V> node = index.get(key);
+        if (node != null) {
+            remove(node);
+        }
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public synchronized long weight() {
+        return windowWeight + probationWeight + protectedWeight;
+    }
+
+    public long maxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Snapshot of the cache counters
+     */
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, rejections, expirations, index.size(), weight(), maxWeight);
+    }
+
+    private void onAccess(Node<V> node) {
+        switch (node.region) {
+            case WINDOW:
+                moveToTail(window, node);
+                break;
+            case PROBATION:
+                // A second hit promotes the entry to the protected segment
+                probation.remove(node.key);
+                probationWeight -= node.weight;
+                node.region = Region.PROTECTED;
+                protectedSegment.put(node.key, node);
+                protectedWeight += node.weight;
+                demoteProtectedOverflow();
+                break;
+            case PROTECTED:
+                moveToTail(protectedSegment, node);
+                break;
+        }
+    }
+
+    private void drainWindow() {
+        // Overflowing window entries become candidates for the main segment
+        while (windowWeight > windowMaxWeight) {
+            Node<V> candidate = pollFirst(window);
+            windowWeight -= candidate.weight;
+            admitToMain(candidate);
+        }
+    }
+
+    private void evictMainOverflow() {
+        long mainMaxWeight = maxWeight - windowMaxWeight;
+        while (probationWeight + protectedWeight > mainMaxWeight) {
+            Node<V> victim = firstNode(probation.isEmpty() ? protectedSegment : probation);
+            if (victim == null) {
+                break;
+            }
+            remove(victim);
+            evictions++;
+        }
+    }
+
+    private void admitToMain(Node<V> candidate) {
+        long mainMaxWeight = maxWeight - windowMaxWeight;
+        int candidateFrequency = sketch.frequency(candidate.key.hashCode());
+
+        while (probationWeight + protectedWeight + candidate.weight > mainMaxWeight) {
+            Node<V> victim = firstNode(probation.isEmpty() ? protectedSegment : probation);
+            if (victim == null) {
+                break;
+            }
+            if (candidateFrequency > sketch.frequency(victim.key.hashCode())) {
+                remove(victim);
+                evictions++;
+            } else {
+                index.remove(candidate.key);
+                rejections++;
+                return;
+            }
+        }
+
+        candidate.region = Region.PROBATION;
+        probation.put(candidate.key, candidate);
+        probationWeight += candidate.weight;
+    }
+
+    private void demoteProtectedOverflow() {
+        while (protectedWeight > protectedMaxWeight && protectedSegment.size() > 1) {
+            Node<V> demoted = pollFirst(protectedSegment);
+            protectedWeight -= demoted.weight;
+            demoted.region = Region.PROBATION;
+            probation.put(demoted.key, demoted);
+            probationWeight += demoted.weight;
+        }
+    }
+
+    private void remove(Node<V> node) {
+        index.remove(node.key);
+        switch (node.region) {
+            case WINDOW:
+                window.remove(node.key);
+                windowWeight -= node.weight;
+                break;
+            case PROBATION:
+                probation.remove(node.key);
+                probationWeight -= node.weight;
+                break;
+            case PROTECTED:
+                protectedSegment.remove(node.key);
+                protectedWeight -= node.weight;
+                break;
+        }
+    }
+
+    private static <V> void moveToTail(LinkedHashMap<String, Node<V>> segment, Node<V> node) {
+        segment.remove(node.key);
+        segment.put(node.key, node);
+    }
+
+    private static <V> Node<V> firstNode(LinkedHashMap<String, Node<V>> segment) {
+        Iterator<Node<V>> iterator = segment.values().iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    private static <V> Node<V> pollFirst(LinkedHashMap<String, Node<V>> segment) {
+        Iterator<Node<V>> iterator = segment.values().iterator();
+        Node<V> first = iterator.next();
+        iterator.remove();
+        return first;
+    }
+
+    private static class Node<V> {
+        final String key;
+        final V value;
+        int weight;
+        final long expiresAt;
+        Region region;
+
+        Node(String key, V value, int weight, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+    /**
+     * Point-in-time cache statistics
+     */
+    public static class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long rejections;
+        private final long expirations;
+        private final int entries;
+        private final long weight;
+        private final long maxWeight;
+
+        public Stats(long hits, long misses, long evictions, long rejections, long expirations,
+                     int entries, long weight, long maxWeight) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.rejections = rejections;
+            this.expirations = expirations;
+            this.entries = entries;
+            this.weight = weight;
+            this.maxWeight = maxWeight;
+        }
+
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        public long getEvictions() { return evictions; }
+        public long getRejections() { return rejections; }
+        public long getExpirations() { return expirations; }
+        public int getEntries() { return entries; }
+        public long getWeight() { return weight; }
+        public long getMaxWeight() { return maxWeight; }
+
+        public double getHitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0.0 : (double) hits / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("entries=%d, memory=%d/%d KB, hitRate=%.1f%% (hits=%d, misses=%d), " +
+                                 "evictions=%d, rejected=%d, expired=%d",
+                    entries, weight / 1024, maxWeight / 1024, getHitRate() * 100, hits, misses,
+                    evictions, rejections, expirations);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.vinylsystem.common;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of calling Discogs when the circuit breaker is open or too many
+ * calls are already in flight, so callers fail fast rather than wait on a slow upstream
+ */
+public class UpstreamUnavailableException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public UpstreamUnavailableException(String message) {
+        super(message);
+    }
+}
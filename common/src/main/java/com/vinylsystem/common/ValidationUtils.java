@@ -7,6 +7,7 @@ import java.util.regex.Pattern;
  */
 public class ValidationUtils {
     private static final Pattern NAME_PATTERN = Pattern.compile(ProtocolConstants.NAME_PATTERN);
+    private static final Pattern GROUP_PATTERN = Pattern.compile(ProtocolConstants.GROUP_PATTERN);
     private static final Pattern IP_PATTERN = Pattern.compile(ProtocolConstants.IP_PATTERN);
     
     /**
@@ -19,6 +20,16 @@ public class ValidationUtils {
         return NAME_PATTERN.matcher(name).matches();
     }
     
+    /**
+     * Validates server group pattern format: *.group#.pro2[x|y]
+     */
+    public static boolean isValidGroupPattern(String pattern) {
+        if (pattern == null || pattern.trim().isEmpty()) {
+            return false;
+        }
+        return GROUP_PATTERN.matcher(pattern).matches();
+    }
+    
     /**
      * Validates IP address format
      */
@@ -1,6 +1,7 @@
 package com.vinylsystem.test;
 
 import com.vinylsystem.client.VinylClient;
+import com.vinylsystem.common.ResponseFraming;
 import java.io.*;
 import java.net.Socket;
 
@@ -28,14 +29,14 @@ public class VinylSystemTest {
                 // Search for Pink Floyd
                 System.out.println("Searching for: Pink Floyd");
                 writer.println("Pink Floyd");
-                String response = reader.readLine();
+                String response = ResponseFraming.readResponse(reader);
                 System.out.println("Server Response:\n" + response);
                 
                 // Search for Led Zeppelin
                 System.out.println("\n" + "=".repeat(50));
                 System.out.println("Searching for: Led Zeppelin");
                 writer.println("Led Zeppelin");
-                response = reader.readLine();
+                response = ResponseFraming.readResponse(reader);
                 System.out.println("Server Response:\n" + response);
             }
             
@@ -9,9 +9,10 @@ if not exist "build\common" mkdir build\common
 if not exist "build\directory" mkdir build\directory
 if not exist "build\server" mkdir build\server
 if not exist "build\client" mkdir build\client
+if not exist "build\loadgen" mkdir build\loadgen
 
 echo.
-echo [1/4] Compiling Common module...
+echo [1/5] Compiling Common module...
 javac -d build\common ^
       common\src\main\java\com\vinylsystem\common\*.java
 
@@ -20,7 +21,7 @@ if %ERRORLEVEL% neq 0 (
     exit /b 1
 )
 
-echo [2/4] Compiling Directory Server...
+echo [2/5] Compiling Directory Server...
 javac -cp build\common -d build\directory ^
       directory\src\main\java\com\vinylsystem\directory\*.java
 
@@ -29,7 +30,7 @@ if %ERRORLEVEL% neq 0 (
     exit /b 1
 )
 
-echo [3/4] Compiling Vinyl Server...
+echo [3/5] Compiling Vinyl Server...
 javac -cp build\common -d build\server ^
       server\src\main\java\com\vinylsystem\server\*.java
 
@@ -38,7 +39,7 @@ if %ERRORLEVEL% neq 0 (
     exit /b 1
 )
 
-echo [4/4] Compiling Vinyl Client...
+echo [4/5] Compiling Vinyl Client...
 javac -cp build\common -d build\client ^
       client\src\main\java\com\vinylsystem\client\*.java
 
@@ -47,10 +48,20 @@ if %ERRORLEVEL% neq 0 (
     exit /b 1
 )
 
+echo [5/5] Compiling Load Generator...
+javac -cp build\common -d build\loadgen ^
+      loadgen\src\main\java\com\vinylsystem\loadgen\*.java
+
+if %ERRORLEVEL% neq 0 (
+    echo ERROR: Failed to compile Load Generator
+    exit /b 1
+)
+
 echo.
 echo BUILD SUCCESSFUL!
 echo.
 echo To run the components:
 echo   Directory Server: run-directory.bat
 echo   Vinyl Server:     run-server.bat [name] [ip] [port]
-echo   Vinyl Client:     run-client.bat [server-name] [mode]
\ No newline at end of file
+echo   Vinyl Client:     run-client.bat [server-name] [mode]
+echo   Load Generator:   run-loadgen.bat [lookup^|register^|search] [options]
\ No newline at end of file
@@ -1,6 +1,8 @@
 package com.vinylsystem.directory;
 
 import com.vinylsystem.common.*;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Handles JSON message parsing and response generation
@@ -78,6 +80,10 @@ public class MessageHandler {
                 return createErrorResponse(StatusCodes.INVALID_REQUEST, "Invalid JSON message");
             }
             
+            if (ProtocolConstants.MSG_LOOKUP_GROUP.equals(message.getMessageType())) {
+                return handleGroupLookup(message.getServerName());
+            }
+            
             if (!ProtocolConstants.MSG_LOOKUP.equals(message.getMessageType())) {
                 return createErrorResponse(StatusCodes.INVALID_REQUEST, "Invalid message type");
             }
@@ -102,6 +108,37 @@ public class MessageHandler {
         }
     }
     
+    /**
+     * Resolve every live server in a group pattern such as *.group1.pro2x
+     */
+    private String handleGroupLookup(String groupPattern) {
+        if (!ValidationUtils.isValidGroupPattern(groupPattern)) {
+            return createErrorResponse(StatusCodes.INVALID_NAME_FORMAT,
+                "Invalid group pattern format. Expected: *.group#.pro2[x|y]");
+        }
+        
+        List<ServerRegistry.ServerRecord> members = registry.lookupGroup(groupPattern.substring(1));
+        if (members.isEmpty()) {
+            return createErrorResponse(StatusCodes.NOT_FOUND, "No servers found for group");
+        }
+        
+        // Keep the reply within a single datagram the client is prepared to receive
+        List<String> entries = new ArrayList<>();
+        int size = 128;
+        for (ServerRegistry.ServerRecord record : members) {
+            String entry = record.getName() + "@" + record.getIp() + ":" + record.getPort();
+            size += entry.length() + 3;
+            if (size > ProtocolConstants.MAX_GROUP_RESPONSE_SIZE) {
+                System.err.println("Group lookup truncated at " + entries.size() + " of " + members.size() + " servers");
+                break;
+            }
+            entries.add(entry);
+        }
+        
+        ResponseMessage response = new ResponseMessage(StatusCodes.SUCCESS, "Group found", entries);
+        return JsonUtils.toJson(response);
+    }
+    
     /**
      * Create success response
      */
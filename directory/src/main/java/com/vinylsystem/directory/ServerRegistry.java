@@ -4,6 +4,8 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Iterator;
 
@@ -43,6 +45,19 @@ public class ServerRegistry {
         return record;
     }
     
+    /**
+     * Lookup all live servers whose name ends with the given group suffix (e.g. ".group1.pro2x")
+     */
+    public List<ServerRecord> lookupGroup(String groupSuffix) {
+        List<ServerRecord> members = new ArrayList<>();
+        for (ServerRecord record : servers.values()) {
+            if (!record.isExpired() && record.getName().endsWith(groupSuffix)) {
+                members.add(record);
+            }
+        }
+        return members;
+    }
+    
     /**
      * Remove expired servers
      */
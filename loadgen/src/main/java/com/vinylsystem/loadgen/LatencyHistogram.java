@@ -0,0 +1,103 @@
+package com.vinylsystem.loadgen;
+
+/**
+ * Log-linear latency histogram in the style of HdrHistogram.
+ * Values are recorded in microseconds with roughly three significant digits
+ * of precision (relative error below 0.1%) from 1 microsecond up to one hour.
+ * Not thread-safe: each worker records into its own histogram and the
+ * histograms are merged with {@link #add(LatencyHistogram)} afterwards.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 11;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;        // 2048
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT >> 1;  // 1024
+
+    public static final long HIGHEST_TRACKABLE_MICROS = 3_600_000_000L; // 1 hour
+
+    private final long[] counts;
+    private long totalCount;
+    private long minValue = Long.MAX_VALUE;
+    private long maxValue;
+    private double sum;
+
+    public LatencyHistogram() {
+        this.counts = new long[indexFor(HIGHEST_TRACKABLE_MICROS) + 1];
+    }
+
+    /**
+     * Record a latency in microseconds (clamped to the trackable range)
+     */
+    public void recordValue(long micros) {
+        long value = Math.max(0, Math.min(micros, HIGHEST_TRACKABLE_MICROS));
+        counts[indexFor(value)]++;
+        totalCount++;
+        sum += value;
+        if (value < minValue) minValue = value;
+        if (value > maxValue) maxValue = value;
+    }
+
+    /**
+     * Merge another histogram into this one
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        if (other.totalCount > 0) {
+            minValue = Math.min(minValue, other.minValue);
+            maxValue = Math.max(maxValue, other.maxValue);
+        }
+    }
+
+    /**
+     * Value at the given percentile (0-100), reported as the highest value
+     * equivalent to the bucket that contains it
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) return 0;
+        if (percentile >= 100.0) return maxValue;
+
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= target) {
+                return Math.min(highestEquivalentValue(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    public long getTotalCount() { return totalCount; }
+    public long getMinValue() { return totalCount == 0 ? 0 : minValue; }
+    public long getMaxValue() { return maxValue; }
+    public double getMean() { return totalCount == 0 ? 0.0 : sum / totalCount; }
+
+    /**
+     * Number of histogram buckets (for iterating the raw distribution)
+     */
+    public int getBucketCount() { return counts.length; }
+    public long getCountAtIndex(int index) { return counts[index]; }
+    public long getValueAtIndex(int index) { return highestEquivalentValue(index); }
+
+    private static int indexFor(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+        int subBucket = (int) (value >>> shift); // in [SUB_BUCKET_HALF_COUNT, SUB_BUCKET_COUNT)
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT + (subBucket - SUB_BUCKET_HALF_COUNT);
+    }
+
+    private static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int offset = index - SUB_BUCKET_COUNT;
+        int shift = offset / SUB_BUCKET_HALF_COUNT + 1;
+        long subBucket = offset % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,146 @@
+package com.vinylsystem.loadgen;
+
+import com.vinylsystem.common.ProtocolConstants;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line entry point for load testing the directory and vinyl servers
+ */
+public class LoadGenerator {
+    
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            printUsage();
+            System.exit(1);
+        }
+        
+        String target = args[0].toLowerCase();
+        Map<String, String> options = parseOptions(args);
+        
+        try {
+            LoadRunner.Mode mode = "open".equalsIgnoreCase(options.getOrDefault("mode", "closed"))
+                ? LoadRunner.Mode.OPEN : LoadRunner.Mode.CLOSED;
+            double rate = Double.parseDouble(options.getOrDefault("rate", "100"));
+            int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "8"));
+            int duration = Integer.parseInt(options.getOrDefault("duration", "30"));
+            int warmup = Integer.parseInt(options.getOrDefault("warmup", "5"));
+            String directoryIP = options.getOrDefault("directory-ip", "localhost");
+            
+            Workload.Factory factory;
+            switch (target) {
+                case "lookup":
+                    factory = LookupWorkload.factory(directoryIP,
+                        intOption(options, "directory-port", ProtocolConstants.DEFAULT_DIRECTORY_UDP_PORT),
+                        options.getOrDefault("server-name", "defaultserver.group1.pro2x"));
+                    break;
+                    
+                case "register":
+                    factory = RegistrationWorkload.factory(directoryIP,
+                        intOption(options, "directory-port", ProtocolConstants.DEFAULT_DIRECTORY_TCP_PORT),
+                        intOption(options, "group", 99),
+                        intOption(options, "ttl", 60));
+                    break;
+                    
+                case "search":
+                    factory = SearchWorkload.factory(
+                        options.getOrDefault("server-ip", "127.0.0.1"),
+                        intOption(options, "server-port", ProtocolConstants.DEFAULT_VINYL_SERVER_PORT),
+                        loadQueries(options.getOrDefault("queries", "Pink Floyd,Led Zeppelin,Miles Davis")));
+                    break;
+                    
+                default:
+                    System.err.println("Unknown target: " + target);
+                    printUsage();
+                    System.exit(1);
+                    return;
+            }
+            
+            LoadRunner runner = new LoadRunner(mode, rate, concurrency, duration, warmup);
+            System.out.println("Running " + factory.describe() + " for " + duration + "s (+" + warmup + "s warmup)...");
+            LoadReport report = runner.run(factory);
+            
+            System.out.println(report.toText());
+            
+            String jsonPath = options.get("json");
+            if (jsonPath != null) {
+                Files.write(Paths.get(jsonPath), report.toJson().getBytes(StandardCharsets.UTF_8));
+                System.out.println("JSON report written to " + jsonPath);
+            }
+            
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println("Load test failed: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            System.err.println("Load test interrupted");
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Parse --key=value options following the target argument
+     */
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Invalid option: " + arg + " (expected --key=value)");
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+    
+    private static int intOption(Map<String, String> options, String key, int defaultValue) {
+        String value = options.get(key);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+    
+    /**
+     * Queries come either from a file (one per line) or a comma separated list
+     */
+    private static List<String> loadQueries(String spec) throws IOException {
+        List<String> queries = new ArrayList<>();
+        Path path = Paths.get(spec);
+        if (Files.isRegularFile(path)) {
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                if (!line.trim().isEmpty()) queries.add(line.trim());
+            }
+        } else {
+            for (String query : spec.split(",")) {
+                if (!query.trim().isEmpty()) queries.add(query.trim());
+            }
+        }
+        if (queries.isEmpty()) {
+            throw new IllegalArgumentException("No search queries given");
+        }
+        return queries;
+    }
+    
+    private static void printUsage() {
+        System.err.println("Usage: java LoadGenerator <lookup|register|search> [--key=value ...]");
+        System.err.println("Options:");
+        System.err.println("  --mode=open|closed       open: fixed arrival rate, closed: back-to-back (default closed)");
+        System.err.println("  --rate=<req/s>           arrival rate for open-loop mode (default 100)");
+        System.err.println("  --concurrency=<n>        worker threads / max outstanding requests (default 8)");
+        System.err.println("  --duration=<s>           measured duration (default 30)");
+        System.err.println("  --warmup=<s>             unmeasured warmup (default 5)");
+        System.err.println("  --directory-ip=<ip>      directory host (default localhost)");
+        System.err.println("  --directory-port=<port>  UDP 8081 for lookup, TCP 8080 for register");
+        System.err.println("  --server-name=<name>     name to look up (lookup)");
+        System.err.println("  --group=<n> --ttl=<s>    registration group and TTL (register)");
+        System.err.println("  --server-ip=<ip> --server-port=<port>  vinyl server (search)");
+        System.err.println("  --queries=<file|a,b,c>   search query mix (search)");
+        System.err.println("  --json=<path>            also write the report as JSON");
+        System.err.println("Example: java LoadGenerator lookup --mode=open --rate=2000 --concurrency=32 --server-name=rock.group1.pro2x");
+    }
+}
@@ -0,0 +1,175 @@
+package com.vinylsystem.loadgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Merged results of a load run, rendered as text for humans and JSON for comparing builds
+ */
+public class LoadReport {
+    private static final double[] PERCENTILES = {50.0, 75.0, 90.0, 95.0, 99.0, 99.9, 99.99};
+    
+    private final String workload;
+    private final LoadRunner.Mode mode;
+    private final double targetRate;
+    private final int concurrency;
+    private final int durationSeconds;
+    private final int warmupSeconds;
+    
+    private final LatencyHistogram responseTime = new LatencyHistogram();
+    private final LatencyHistogram serviceTime = new LatencyHistogram();
+    private final List<String> errorSamples = new ArrayList<>();
+    private long completed;
+    private long busy;
+    private long errors;
+    private long lateStarts;
+    
+    public LoadReport(String workload, LoadRunner.Mode mode, double targetRate, int concurrency,
+                      int durationSeconds, int warmupSeconds) {
+        this.workload = workload;
+        this.mode = mode;
+        this.targetRate = targetRate;
+        this.concurrency = concurrency;
+        this.durationSeconds = durationSeconds;
+        this.warmupSeconds = warmupSeconds;
+    }
+    
+    void merge(LatencyHistogram response, LatencyHistogram service, long completed, long busy, long errors,
+               long lateStarts, List<String> samples) {
+        this.responseTime.add(response);
+        this.serviceTime.add(service);
+        this.completed += completed;
+        this.busy += busy;
+        this.errors += errors;
+        this.lateStarts += lateStarts;
+        for (String sample : samples) {
+            if (errorSamples.size() < 10 && !errorSamples.contains(sample)) {
+                errorSamples.add(sample);
+            }
+        }
+    }
+    
+    public long getCompleted() { return completed; }
+    public long getBusy() { return busy; }
+    public long getErrors() { return errors; }
+    public long getLateStarts() { return lateStarts; }
+    public LatencyHistogram getResponseTime() { return responseTime; }
+    public LatencyHistogram getServiceTime() { return serviceTime; }
+    
+    public double getThroughput() {
+        return durationSeconds == 0 ? 0.0 : (double) completed / durationSeconds;
+    }
+    
+    /**
+     * Human readable summary
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        text.append("=== VinylSystem Load Test ===\n");
+        text.append("Workload:    ").append(workload).append('\n');
+        if (mode == LoadRunner.Mode.OPEN) {
+            text.append(String.format(Locale.ROOT, "Mode:        open-loop @ %.1f req/s, %d workers%n", targetRate, concurrency));
+        } else {
+            text.append("Mode:        closed-loop, ").append(concurrency).append(" workers\n");
+        }
+        text.append("Duration:    ").append(durationSeconds).append(" s (+").append(warmupSeconds).append(" s warmup)\n");
+        text.append("Completed:   ").append(completed).append(" ok, ").append(busy).append(" busy, ")
+            .append(errors).append(" errors\n");
+        text.append(String.format(Locale.ROOT, "Throughput:  %.1f req/s%n", getThroughput()));
+        if (mode == LoadRunner.Mode.OPEN) {
+            text.append("Late starts: ").append(lateStarts);
+            if (lateStarts > completed / 100) {
+                text.append(" (generator saturated, raise --concurrency)");
+            }
+            text.append('\n');
+        }
+        
+        appendHistogram(text, mode == LoadRunner.Mode.OPEN
+            ? "Response time (us, from intended start)" : "Response time (us)", responseTime);
+        if (mode == LoadRunner.Mode.OPEN) {
+            appendHistogram(text, "Service time (us, from actual send)", serviceTime);
+        }
+        
+        if (!errorSamples.isEmpty()) {
+            text.append("Error samples:\n");
+            for (String sample : errorSamples) {
+                text.append("  ").append(sample).append('\n');
+            }
+        }
+        return text.toString();
+    }
+    
+    private static void appendHistogram(StringBuilder text, String title, LatencyHistogram histogram) {
+        text.append(title).append(":\n");
+        text.append(String.format(Locale.ROOT, "  %-8s %12d%n", "min", histogram.getMinValue()));
+        for (double percentile : PERCENTILES) {
+            text.append(String.format(Locale.ROOT, "  %-8s %12d%n", "p" + formatPercentile(percentile),
+                                      histogram.getValueAtPercentile(percentile)));
+        }
+        text.append(String.format(Locale.ROOT, "  %-8s %12d%n", "max", histogram.getMaxValue()));
+        text.append(String.format(Locale.ROOT, "  %-8s %12.1f%n", "mean", histogram.getMean()));
+    }
+    
+    /**
+     * Machine readable report including the full bucket distribution
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append('{');
+        json.append("\"workload\":\"").append(escape(workload)).append("\",");
+        json.append("\"mode\":\"").append(mode.name().toLowerCase(Locale.ROOT)).append("\",");
+        json.append("\"targetRate\":").append(targetRate).append(',');
+        json.append("\"concurrency\":").append(concurrency).append(',');
+        json.append("\"durationSeconds\":").append(durationSeconds).append(',');
+        json.append("\"warmupSeconds\":").append(warmupSeconds).append(',');
+        json.append("\"completed\":").append(completed).append(',');
+        json.append("\"busy\":").append(busy).append(',');
+        json.append("\"errors\":").append(errors).append(',');
+        json.append("\"lateStarts\":").append(lateStarts).append(',');
+        json.append("\"throughput\":").append(String.format(Locale.ROOT, "%.3f", getThroughput())).append(',');
+        json.append("\"responseTimeMicros\":");
+        appendHistogramJson(json, responseTime);
+        json.append(",\"serviceTimeMicros\":");
+        appendHistogramJson(json, serviceTime);
+        json.append(",\"errorSamples\":[");
+        for (int i = 0; i < errorSamples.size(); i++) {
+            if (i > 0) json.append(',');
+            json.append('"').append(escape(errorSamples.get(i))).append('"');
+        }
+        json.append("]}");
+        return json.toString();
+    }
+    
+    private static void appendHistogramJson(StringBuilder json, LatencyHistogram histogram) {
+        json.append("{\"count\":").append(histogram.getTotalCount());
+        json.append(",\"min\":").append(histogram.getMinValue());
+        json.append(",\"max\":").append(histogram.getMaxValue());
+        json.append(",\"mean\":").append(String.format(Locale.ROOT, "%.3f", histogram.getMean()));
+        json.append(",\"percentiles\":{");
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            if (i > 0) json.append(',');
+            json.append("\"p").append(formatPercentile(PERCENTILES[i])).append("\":")
+                .append(histogram.getValueAtPercentile(PERCENTILES[i]));
+        }
+        json.append("},\"buckets\":[");
+        boolean first = true;
+        for (int i = 0; i < histogram.getBucketCount(); i++) {
+            long count = histogram.getCountAtIndex(i);
+            if (count == 0) continue;
+            if (!first) json.append(',');
+            json.append('[').append(histogram.getValueAtIndex(i)).append(',').append(count).append(']');
+            first = false;
+        }
+        json.append("]}");
+    }
+    
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile)
+            ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+    
+    private static String escape(String str) {
+        return str.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,181 @@
+package com.vinylsystem.loadgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a workload in open-loop (fixed arrival rate) or closed-loop mode.
+ * 
+ * In open-loop mode every operation has an intended start time on a fixed
+ * schedule and its latency is measured from that intended time, not from when
+ * a worker got around to sending it. A stalled system therefore shows up as
+ * queueing delay in the histogram instead of silently lowering the request
+ * rate (coordinated omission).
+ */
+public class LoadRunner {
+    public enum Mode { OPEN, CLOSED }
+    
+    // An operation starting later than this behind schedule counts as a late start
+    private static final long LATE_START_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int MAX_ERROR_SAMPLES = 5;
+    
+    private final Mode mode;
+    private final double ratePerSecond;
+    private final int concurrency;
+    private final int durationSeconds;
+    private final int warmupSeconds;
+    
+    public LoadRunner(Mode mode, double ratePerSecond, int concurrency, int durationSeconds, int warmupSeconds) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Concurrency must be positive");
+        }
+        if (mode == Mode.OPEN && ratePerSecond <= 0) {
+            throw new IllegalArgumentException("Open-loop mode requires a positive rate");
+        }
+        this.mode = mode;
+        this.ratePerSecond = ratePerSecond;
+        this.concurrency = concurrency;
+        this.durationSeconds = durationSeconds;
+        this.warmupSeconds = warmupSeconds;
+    }
+    
+    /**
+     * Run the workload and collect the merged report
+     */
+    public LoadReport run(Workload.Factory factory) throws InterruptedException {
+        long startTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100); // let workers spin up
+        long measureStart = startTime + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long endTime = measureStart + TimeUnit.SECONDS.toNanos(durationSeconds);
+        long intervalNanos = mode == Mode.OPEN ? (long) (1_000_000_000L / ratePerSecond) : 0;
+        AtomicLong sequence = new AtomicLong();
+        
+        List<Worker> workers = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            Worker worker = new Worker(i, factory, sequence, startTime, measureStart, endTime, intervalNanos);
+            Thread thread = new Thread(worker, "loadgen-worker-" + i);
+            workers.add(worker);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        LoadReport report = new LoadReport(factory.describe(), mode, ratePerSecond, concurrency,
+                                           durationSeconds, warmupSeconds);
+        for (Worker worker : workers) {
+            report.merge(worker.responseTime, worker.serviceTime, worker.completed, worker.busy, worker.errors,
+                         worker.lateStarts, worker.errorSamples);
+        }
+        return report;
+    }
+    
+    private class Worker implements Runnable {
+        private final int workerId;
+        private final Workload.Factory factory;
+        private final AtomicLong sequence;
+        private final long startTime;
+        private final long measureStart;
+        private final long endTime;
+        private final long intervalNanos;
+        
+        final LatencyHistogram responseTime = new LatencyHistogram();
+        final LatencyHistogram serviceTime = new LatencyHistogram();
+        final List<String> errorSamples = new ArrayList<>();
+        long completed;
+        long busy;
+        long errors;
+        long lateStarts;
+        
+        Worker(int workerId, Workload.Factory factory, AtomicLong sequence,
+               long startTime, long measureStart, long endTime, long intervalNanos) {
+            this.workerId = workerId;
+            this.factory = factory;
+            this.sequence = sequence;
+            this.startTime = startTime;
+            this.measureStart = measureStart;
+            this.endTime = endTime;
+            this.intervalNanos = intervalNanos;
+        }
+        
+        @Override
+        public void run() {
+            Workload workload;
+            try {
+                workload = factory.create(workerId);
+            } catch (Exception e) {
+                recordError(e);
+                return;
+            }
+            
+            try {
+                waitUntil(startTime);
+                while (true) {
+                    long intendedStart;
+                    if (mode == Mode.OPEN) {
+                        intendedStart = startTime + sequence.getAndIncrement() * intervalNanos;
+                        if (intendedStart >= endTime) break;
+                        waitUntil(intendedStart);
+                    } else {
+                        intendedStart = System.nanoTime();
+                        if (intendedStart >= endTime) break;
+                    }
+                    
+                    long actualStart = System.nanoTime();
+                    boolean measured = intendedStart >= measureStart;
+                    try {
+                        workload.execute();
+                        long done = System.nanoTime();
+                        if (measured) {
+                            completed++;
+                            responseTime.recordValue(TimeUnit.NANOSECONDS.toMicros(done - intendedStart));
+                            serviceTime.recordValue(TimeUnit.NANOSECONDS.toMicros(done - actualStart));
+                            if (actualStart - intendedStart > LATE_START_NANOS) lateStarts++;
+                        }
+                    } catch (Workload.BusyException e) {
+                        // Shed operations are neither successes nor failures of the system
+                        if (measured) busy++;
+                        workload.close();
+                        workload = recreate();
+                        if (workload == null) return;
+                    } catch (Exception e) {
+                        if (measured) recordError(e);
+                        // Continue on a fresh connection
+                        workload.close();
+                        workload = recreate();
+                        if (workload == null) return;
+                    }
+                }
+            } finally {
+                if (workload != null) workload.close();
+            }
+        }
+        
+        private Workload recreate() {
+            try {
+                return factory.create(workerId);
+            } catch (Exception e) {
+                recordError(e);
+                return null;
+            }
+        }
+        
+        private void recordError(Exception e) {
+            errors++;
+            if (errorSamples.size() < MAX_ERROR_SAMPLES) {
+                errorSamples.add(e.getClass().getSimpleName() + ": " + e.getMessage());
+            }
+        }
+        
+        private void waitUntil(long deadline) {
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.vinylsystem.loadgen;
+
+import com.vinylsystem.common.JsonUtils;
+import com.vinylsystem.common.LookupMessage;
+import com.vinylsystem.common.ProtocolConstants;
+import com.vinylsystem.common.ResponseMessage;
+import com.vinylsystem.common.StatusCodes;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+
+/**
+ * Sends LOOKUP datagrams to the directory UDP port
+ */
+public class LookupWorkload implements Workload {
+    private final DatagramSocket socket;
+    private final InetAddress directoryAddress;
+    private final int directoryPort;
+    private final byte[] requestBytes;
+    private final byte[] responseBuffer = new byte[ProtocolConstants.MAX_MESSAGE_SIZE];
+    
+    public LookupWorkload(String directoryIP, int directoryPort, String serverName) throws IOException {
+        this.socket = new DatagramSocket();
+        this.socket.setSoTimeout(ProtocolConstants.SOCKET_TIMEOUT);
+        this.directoryAddress = InetAddress.getByName(directoryIP);
+        this.directoryPort = directoryPort;
+        this.requestBytes = JsonUtils.toJson(new LookupMessage(ProtocolConstants.MSG_LOOKUP, serverName)).getBytes();
+    }
+    
+    @Override
+    public void execute() throws IOException {
+        socket.send(new DatagramPacket(requestBytes, requestBytes.length, directoryAddress, directoryPort));
+        
+        DatagramPacket responsePacket = new DatagramPacket(responseBuffer, responseBuffer.length);
+        socket.receive(responsePacket);
+        
+        String responseJson = new String(responsePacket.getData(), 0, responsePacket.getLength());
+        ResponseMessage response = JsonUtils.parseResponseMessage(responseJson);
+        if (!StatusCodes.SUCCESS.equals(response.getStatusCode())) {
+            throw new IOException("Lookup failed: " + response.getMessage());
+        }
+    }
+    
+    @Override
+    public void close() {
+        socket.close();
+    }
+    
+    public static Workload.Factory factory(String directoryIP, int directoryPort, String serverName) {
+        return new Workload.Factory() {
+            @Override
+            public Workload create(int workerId) throws IOException {
+                return new LookupWorkload(directoryIP, directoryPort, serverName);
+            }
+            
+            @Override
+            public String describe() {
+                return "UDP LOOKUP " + serverName + " via " + directoryIP + ":" + directoryPort;
+            }
+        };
+    }
+}
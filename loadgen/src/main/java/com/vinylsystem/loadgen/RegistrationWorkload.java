@@ -0,0 +1,72 @@
+package com.vinylsystem.loadgen;
+
+import com.vinylsystem.common.JsonUtils;
+import com.vinylsystem.common.ProtocolConstants;
+import com.vinylsystem.common.RegistrationMessage;
+import com.vinylsystem.common.ResponseMessage;
+import com.vinylsystem.common.StatusCodes;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Sends REGISTER/UPDATE messages to the directory TCP port, one connection per
+ * operation as a real vinyl server does. Each worker refreshes its own name.
+ */
+public class RegistrationWorkload implements Workload {
+    private final String directoryIP;
+    private final int directoryPort;
+    private final String registerJson;
+    private final String updateJson;
+    private boolean registered = false;
+    
+    public RegistrationWorkload(String directoryIP, int directoryPort, String serverName, int ttlSeconds) {
+        this.directoryIP = directoryIP;
+        this.directoryPort = directoryPort;
+        this.registerJson = JsonUtils.toJson(new RegistrationMessage(
+            ProtocolConstants.MSG_REGISTER, serverName, "127.0.0.1", ProtocolConstants.DEFAULT_VINYL_SERVER_PORT, ttlSeconds));
+        this.updateJson = JsonUtils.toJson(new RegistrationMessage(
+            ProtocolConstants.MSG_UPDATE, serverName, "127.0.0.1", ProtocolConstants.DEFAULT_VINYL_SERVER_PORT, ttlSeconds));
+    }
+    
+    @Override
+    public void execute() throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(directoryIP, directoryPort), ProtocolConstants.SOCKET_TIMEOUT);
+            socket.setSoTimeout(ProtocolConstants.SOCKET_TIMEOUT);
+            
+            PrintWriter writer = new PrintWriter(socket.getOutputStream(), true);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            
+            writer.println(registered ? updateJson : registerJson);
+            String response = reader.readLine();
+            if (response == null) {
+                throw new IOException("Directory closed connection without response");
+            }
+            
+            ResponseMessage responseMsg = JsonUtils.parseResponseMessage(response);
+            if (!StatusCodes.SUCCESS.equals(responseMsg.getStatusCode())) {
+                throw new IOException("Registration failed: " + responseMsg.getMessage());
+            }
+            registered = true;
+        }
+    }
+    
+    public static Workload.Factory factory(String directoryIP, int directoryPort, int group, int ttlSeconds) {
+        return new Workload.Factory() {
+            @Override
+            public Workload create(int workerId) {
+                String serverName = "loadgen" + workerId + ".group" + group + ".pro2x";
+                return new RegistrationWorkload(directoryIP, directoryPort, serverName, ttlSeconds);
+            }
+            
+            @Override
+            public String describe() {
+                return "TCP REGISTER/UPDATE loadgen#.group" + group + ".pro2x via " + directoryIP + ":" + directoryPort;
+            }
+        };
+    }
+}
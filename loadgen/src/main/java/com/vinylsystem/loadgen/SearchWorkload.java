@@ -0,0 +1,75 @@
+package com.vinylsystem.loadgen;
+
+import com.vinylsystem.common.ProtocolConstants;
+import com.vinylsystem.common.ResponseFraming;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+
+/**
+ * Runs a keep-alive search session against a vinyl server: each worker holds
+ * one connection and sends queries back-to-back, reading one framed response
+ * per query. Queries are taken round-robin from the configured query mix.
+ */
+public class SearchWorkload implements Workload {
+    private final Socket socket;
+    private final PrintWriter writer;
+    private final BufferedReader reader;
+    private final List<String> queries;
+    private int next;
+    
+    public SearchWorkload(String serverIP, int serverPort, List<String> queries, int offset) throws IOException {
+        this.socket = new Socket();
+        this.socket.connect(new InetSocketAddress(serverIP, serverPort), ProtocolConstants.SOCKET_TIMEOUT);
+        this.socket.setSoTimeout(ProtocolConstants.SOCKET_TIMEOUT);
+        this.writer = new PrintWriter(socket.getOutputStream(), true);
+        this.reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        this.queries = queries;
+        this.next = offset;
+    }
+    
+    @Override
+    public void execute() throws IOException {
+        String query = queries.get(next++ % queries.size());
+        
+        writer.println(query);
+        String response = ResponseFraming.readResponse(reader);
+        if (response == null) {
+            throw new IOException("Server closed session without response");
+        }
+        if (response.startsWith(ProtocolConstants.BUSY_PREFIX)) {
+            throw new Workload.BusyException(response);
+        }
+        if (response.startsWith("ERROR") || response.startsWith("Error")) {
+            throw new IOException(response);
+        }
+    }
+    
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // nothing left to clean up
+        }
+    }
+    
+    public static Workload.Factory factory(String serverIP, int serverPort, List<String> queries) {
+        return new Workload.Factory() {
+            @Override
+            public Workload create(int workerId) throws IOException {
+                return new SearchWorkload(serverIP, serverPort, queries, workerId);
+            }
+            
+            @Override
+            public String describe() {
+                return "TCP keep-alive search sessions against " + serverIP + ":" + serverPort +
+                       " (" + queries.size() + " queries)";
+            }
+        };
+    }
+}
@@ -0,0 +1,43 @@
+package com.vinylsystem.loadgen;
+
+import java.io.IOException;
+
+/**
+ * A single kind of operation the load generator drives against the system.
+ * Each worker thread gets its own instance, so implementations may keep
+ * per-worker state such as an open connection.
+ */
+public interface Workload extends AutoCloseable {
+    
+    /**
+     * Perform one operation, throwing on any protocol or network failure
+     */
+    void execute() throws Exception;
+    
+    /**
+     * Release per-worker resources
+     */
+    @Override
+    default void close() {
+    }
+    
+    /**
+     * The server shed the operation with a BUSY answer; reported apart from errors
+     */
+    class BusyException extends IOException {
+        private static final long serialVersionUID = 1L;
+        
+        public BusyException(String message) {
+            super(message);
+        }
+    }
+    
+    /**
+     * Creates one workload instance per worker thread
+     */
+    interface Factory {
+        Workload create(int workerId) throws Exception;
+        
+        String describe();
+    }
+}
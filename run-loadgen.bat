@@ -0,0 +1,13 @@
+@echo off
+REM Run Load Generator
+REM Simple usage: run-loadgen.bat [lookup|register|search] [--key=value ...]
+REM Example: run-loadgen.bat lookup --mode=open --rate=2000 --concurrency=32 --json=lookup.json
+
+set TARGET=%1
+if "%TARGET%"=="" set TARGET=lookup
+
+echo Starting Load Generator...
+echo Target: %TARGET%
+echo.
+
+java -cp "build" com.vinylsystem.loadgen.LoadGenerator %*
@@ -0,0 +1,517 @@
+package com.vinylsystem.server;
+
+import com.vinylsystem.common.ProtocolConstants;
+import com.vinylsystem.common.ResponseFraming;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Selector-based session layer for vinyl server clients.
+ *
+ * One event loop thread accepts connections and does all socket reads and writes,
+ * so idle keep-alive connections cost a buffer rather than a thread. Request lines
+ * are handed to the worker executor one at a time per connection, in order; reading
+ * pauses while a request is being answered.
+ *
+ * Workers write their response through a {@link ResponseWriter} that queues bytes for
+ * the event loop; already encoded responses are queued as they are, without a copy. Once more than the high watermark is queued for a connection, the
+ * writing worker waits until the client has read it down to the low watermark, so a
+ * slow reader holds back its own response instead of filling the heap.
+ */
+public class ClientSessionLoop {
+
+    /**
+     * Answers one request line; every response must be fully written before returning
+     */
+    public interface RequestHandler {
+        void handle(String request, ResponseWriter out);
+    }
+
+    private static final int INITIAL_READ_BUFFER = 1024;
+    private static final long IDLE_CHECK_INTERVAL_MS = 1000;
+    private static final int ACCEPT_BACKLOG = 1024;
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final Executor workers;
+    private final RequestHandler handler;
+    private final int maxLineLength;
+    private final long idleTimeoutMillis;
+    private final int highWatermark;
+    private final int lowWatermark;
+    private final int maxConnections;
+    // Work for the event loop thread submitted by workers
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private volatile boolean running;
+    private Thread thread;
+
+    private volatile int openSessions; // changed only by the event loop
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong busyRejections = new AtomicLong();
+    private final AtomicLong idleClosed = new AtomicLong();
+    private final AtomicLong oversizedLines = new AtomicLong();
+    private final AtomicLong writeStalls = new AtomicLong();
+
+    /**
+     * @param maxLineLength longest request line in bytes; longer lines close the connection
+     * @param idleTimeoutMillis how long a connection may sit without traffic, and how long
+     *                          a worker waits for a slow reader, before the connection is closed
+     * @param highWatermark queued response bytes at which writing workers start to wait
+     * @param lowWatermark queued response bytes at which waiting workers resume
+     * @param maxConnections open connections beyond which new ones are answered BUSY
+     */
+    public ClientSessionLoop(int port, Executor workers, RequestHandler handler, int maxLineLength,
+                             long idleTimeoutMillis, int highWatermark, int lowWatermark,
+                             int maxConnections) throws IOException {
+        if (maxLineLength <= 0) {
+            throw new IllegalArgumentException("Maximum request line length must be positive");
+        }
+        if (lowWatermark > highWatermark) {
+            throw new IllegalArgumentException("Low write watermark must not exceed the high watermark");
+        }
+        this.workers = workers;
+        this.handler = handler;
+        this.maxLineLength = maxLineLength;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        this.maxConnections = maxConnections;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            serverChannel.bind(new InetSocketAddress(port), ACCEPT_BACKLOG);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(this::run, "vinyl-io");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Close the port and stop the event loop; a loop that was never started closes its selector here
+     */
+    public void stop() {
+        running = false;
+        selector.wakeup();
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing server socket: " + e.getMessage());
+        }
+        if (thread == null) {
+            try {
+                selector.close();
+            } catch (IOException e) {
+                System.err.println("Error closing selector: " + e.getMessage());
+            }
+        }
+    }
+
+    private void run() {
+        long nextIdleCheck = System.currentTimeMillis() + IDLE_CHECK_INTERVAL_MS;
+        try {
+            while (running) {
+                selector.select(IDLE_CHECK_INTERVAL_MS);
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                while (selected.hasNext()) {
+                    SelectionKey key = selected.next();
+                    selected.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        try {
+                            accept();
+                        } catch (IOException e) {
+                            System.err.println("Error accepting client connection: " + e.getMessage());
+                        }
+                        continue;
+                    }
+                    Session session = (Session) key.attachment();
+                    try {
+                        if (key.isWritable()) session.writeQueued();
+                        if (key.isValid() && key.isReadable()) session.read();
+                    } catch (IOException | RuntimeException e) {
+                        session.close();
+                    }
+                }
+                long now = System.currentTimeMillis();
+                if (now >= nextIdleCheck) {
+                    closeIdleSessions(now);
+                    nextIdleCheck = now + IDLE_CHECK_INTERVAL_MS;
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) {
+                System.err.println("Client event loop failed: " + e.getMessage());
+            }
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Session) {
+                    ((Session) key.attachment()).close();
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                System.err.println("Error closing selector: " + e.getMessage());
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            accepted.incrementAndGet();
+            if (openSessions >= maxConnections) {
+                busyRejections.incrementAndGet();
+                try (SocketChannel rejected = channel) {
+                    // Best effort: a fresh socket buffer always has room for one short frame
+                    rejected.configureBlocking(false);
+                    rejected.write(encode(ResponseFraming.encode(ProtocolConstants.BUSY_RESPONSE)));
+                }
+                continue;
+            }
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Session session = new Session(channel);
+            session.key = channel.register(selector, SelectionKey.OP_READ, session);
+            openSessions++;
+            System.out.println("Client connected: " + channel.getRemoteAddress());
+        }
+    }
+
+    private void closeIdleSessions(long now) {
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Session) {
+                Session session = (Session) key.attachment();
+                if (!session.inFlight && now - session.lastActivity > idleTimeoutMillis) {
+                    idleClosed.incrementAndGet();
+                    session.close();
+                }
+            }
+        }
+    }
+
+    private void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    private static ByteBuffer encode(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * One client connection. Reads, parsing and socket writes happen on the event loop;
+     * workers only append to the write queue, which is guarded by the session's monitor.
+     */
+    private class Session {
+        final SocketChannel channel;
+        SelectionKey key;
+        // Never larger than the line cap, since the cap is only checked once the buffer is full
+        ByteBuffer readBuffer = ByteBuffer.allocate(Math.min(INITIAL_READ_BUFFER, maxLineLength));
+        boolean inFlight;
+        boolean inputClosed;
+        long lastActivity = System.currentTimeMillis();
+
+        // Guarded by this
+        private final ArrayDeque<ByteBuffer> writeQueue = new ArrayDeque<>();
+        private int queuedBytes;
+        private boolean writable = true;
+        private boolean closed;
+
+        Session(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void read() throws IOException {
+            if (!readBuffer.hasRemaining()) {
+                grow();
+            }
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                inputClosed = true;
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            } else if (read > 0) {
+                lastActivity = System.currentTimeMillis();
+            }
+            dispatchLines();
+        }
+
+        /**
+         * Hand the next complete line to a worker, or close if nothing more will come
+         */
+        void dispatchLines() {
+            while (!inFlight && !closed) {
+                String line = nextLine();
+                if (line == null) {
+                    if (readBuffer.position() >= maxLineLength) {
+                        oversizedLines.incrementAndGet();
+                        enqueueNow(encode(ResponseFraming.encode(
+                            "ERROR: Request line exceeds " + maxLineLength + " bytes")));
+                        inputClosed = true;
+                        readBuffer.clear();
+                    }
+                    if (inputClosed) {
+                        closeWhenFlushed();
+                    } else if (key.isValid()) {
+                        key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+                    }
+                    return;
+                }
+                requests.incrementAndGet();
+                inFlight = true;
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                try {
+                    workers.execute(() -> respond(line));
+                } catch (RejectedExecutionException e) {
+                    busyRejections.incrementAndGet();
+                    enqueueNow(encode(ResponseFraming.encode(ProtocolConstants.BUSY_RESPONSE)));
+                    inFlight = false;
+                }
+            }
+        }
+
+        /**
+         * Runs on a worker
+         */
+        private void respond(String line) {
+            try (ResponseWriter out = new ResponseWriter(new SessionWriter(this))) {
+                handler.handle(line, out);
+            } catch (RuntimeException e) {
+                System.err.println("Error handling client request: " + e.getMessage());
+            } finally {
+                execute(() -> {
+                    inFlight = false;
+                    lastActivity = System.currentTimeMillis();
+                    dispatchLines();
+                });
+            }
+        }
+
+        /**
+         * The next request line without its line terminator, or null if none is complete
+         */
+        private String nextLine() {
+            for (int i = 0; i < readBuffer.position(); i++) {
+                if (readBuffer.get(i) == '\n') {
+                    int end = i > 0 && readBuffer.get(i - 1) == '\r' ? i - 1 : i;
+                    String line = new String(readBuffer.array(), 0, end, StandardCharsets.UTF_8);
+                    readBuffer.flip().position(i + 1);
+                    readBuffer.compact();
+                    return line;
+                }
+            }
+            return null;
+        }
+
+        private void grow() {
+            int capacity = Math.min(maxLineLength, readBuffer.capacity() * 2);
+            if (capacity <= readBuffer.capacity()) {
+                return; // full at the cap; dispatchLines rejects the line
+            }
+            ByteBuffer larger = ByteBuffer.allocate(capacity);
+            readBuffer.flip();
+            larger.put(readBuffer);
+            readBuffer = larger;
+        }
+
+        /**
+         * Queue response bytes from a worker, waiting while the client is behind by more
+         * than the high watermark
+         */
+        synchronized void enqueue(ByteBuffer bytes) throws IOException {
+            long deadline = System.currentTimeMillis() + idleTimeoutMillis;
+            if (!writable && !closed) {
+                writeStalls.incrementAndGet();
+            }
+            while (!writable && !closed) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    execute(this::close);
+                    throw new IOException("Client stopped reading");
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for a slow client");
+                }
+            }
+            if (closed) {
+                throw new IOException("Client connection closed");
+            }
+            append(bytes);
+            execute(this::requestWrite);
+        }
+
+        /**
+         * Queue bytes from the event loop itself, which must never wait
+         */
+        synchronized void enqueueNow(ByteBuffer bytes) {
+            if (!closed) {
+                append(bytes);
+                requestWrite();
+            }
+        }
+
+        private void append(ByteBuffer bytes) {
+            writeQueue.add(bytes);
+            queuedBytes += bytes.remaining();
+            if (queuedBytes > highWatermark) {
+                writable = false;
+            }
+        }
+
+        private void requestWrite() {
+            if (key.isValid()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }
+
+        synchronized void writeQueued() throws IOException {
+            while (!writeQueue.isEmpty()) {
+                ByteBuffer head = writeQueue.peek();
+                int written = channel.write(head);
+                queuedBytes -= written;
+                if (written > 0) {
+                    lastActivity = System.currentTimeMillis();
+                }
+                if (head.hasRemaining()) {
+                    break; // socket buffer full; wait for the next OP_WRITE
+                }
+                writeQueue.poll();
+            }
+            if (!writable && queuedBytes <= lowWatermark) {
+                writable = true;
+                notifyAll();
+            }
+            if (writeQueue.isEmpty()) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                if (inputClosed && !inFlight) {
+                    close();
+                }
+            }
+        }
+
+        private synchronized void closeWhenFlushed() {
+            if (writeQueue.isEmpty()) {
+                close();
+            }
+        }
+
+        void close() {
+            synchronized (this) {
+                if (closed) return;
+                closed = true;
+                writeQueue.clear();
+                queuedBytes = 0;
+                notifyAll();
+            }
+            openSessions--;
+            key.cancel();
+            try {
+                channel.close();
+                System.out.println("Client disconnected");
+            } catch (IOException e) {
+                System.err.println("Error closing client socket: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Collects characters from a worker's PrintWriter and queues them as UTF-8 bytes on
+     * every flush; ResponseFraming flushes once per frame
+     */
+    private static class SessionWriter extends Writer {
+        private final Session session;
+        private final StringBuilder pending = new StringBuilder();
+
+        SessionWriter(Session session) {
+            this.session = session;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            pending.append(chars, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (pending.length() == 0) return;
+            ByteBuffer bytes = encode(pending.toString());
+            pending.setLength(0);
+            session.enqueue(bytes);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * The writer a worker answers through. Text is encoded and queued on every flush;
+     * {@link #write(ByteBuffer)} queues a view of already encoded bytes, which a direct
+     * buffer lets the socket write without copying.
+     */
+    public static class ResponseWriter extends PrintWriter {
+        private final SessionWriter sessionWriter;
+
+        ResponseWriter(SessionWriter sessionWriter) {
+            super(sessionWriter);
+            this.sessionWriter = sessionWriter;
+        }
+
+        /**
+         * Queue encoded response bytes after any text written so far; the buffer itself is not changed
+         */
+        public void write(ByteBuffer bytes) {
+            flush();
+            try {
+                sessionWriter.session.enqueue(bytes.duplicate());
+            } catch (IOException e) {
+                setError();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "open=" + openSessions + ", accepted=" + accepted.get() + ", requests=" + requests.get() + ", busyRejections=" + busyRejections.get() +
+               ", idleClosed=" + idleClosed.get() + ", oversizedLines=" + oversizedLines.get() +
+               ", writeStalls=" + writeStalls.get();
+    }
+}
@@ -0,0 +1,201 @@
+package com.vinylsystem.server;
+
+import com.vinylsystem.common.QueryCanonicalizer;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the searches a vinyl server sends to its catalog providers, so the most
+ * frequent ones can be replayed to warm the caches after a restart.
+ *
+ * Queries are canonicalized like cache keys. Counts are kept in memory and appended to
+ * the log file as "delta kind size query" lines on each flush; loading sums them.
+ * When the file holds many more lines than distinct queries, it is rewritten with one
+ * line per query, and only the most frequent maxQueries are kept.
+ */
+public class QueryLog {
+    /** A release search with a result limit */
+    public static final String SEARCH = "search";
+    /** The first page of a paged Discogs search with a page size */
+    public static final String PAGE = "page";
+
+    private static final int COMPACT_LINES_PER_QUERY = 4;
+
+    private final Path file;
+    private final int maxQueries;
+    private final Map<String, Long> counts = new ConcurrentHashMap<>();
+    // Counts recorded since the last flush
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private long fileLines;
+
+    private QueryLog(Path file, int maxQueries) {
+        this.file = file;
+        this.maxQueries = maxQueries;
+    }
+
+    /**
+     * Load the log, creating its directory if needed
+     * @param maxQueries distinct queries counted; new queries beyond it are ignored until the next compaction
+     */
+    public static QueryLog open(Path file, int maxQueries) throws IOException {
+        if (maxQueries <= 0) {
+            throw new IllegalArgumentException("Query log size must be positive");
+        }
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        QueryLog log = new QueryLog(file, maxQueries);
+        log.load();
+        return log;
+    }
+
+    public void record(String kind, int size, String query) {
+        String normalized = QueryCanonicalizer.canonical(query);
+        if (normalized.isEmpty()) {
+            return;
+        }
+        String key = kind + " " + size + " " + normalized;
+        if (!counts.containsKey(key) && counts.size() >= maxQueries) {
+            dropped.incrementAndGet();
+            return;
+        }
+        counts.merge(key, 1L, Long::sum);
+        pending.merge(key, 1L, Long::sum);
+    }
+
+    /**
+     * The most frequent queries, most frequent first
+     */
+    public List<Entry> top(int limit) {
+        List<Map.Entry<String, Long>> sorted = new ArrayList<>(counts.entrySet());
+        sorted.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()));
+        List<Entry> top = new ArrayList<>(Math.min(limit, sorted.size()));
+        for (Map.Entry<String, Long> entry : sorted) {
+            if (top.size() >= limit) {
+                break;
+            }
+            String[] parts = entry.getKey().split(" ", 3);
+            top.add(new Entry(parts[0], Integer.parseInt(parts[1]), parts[2], entry.getValue()));
+        }
+        return top;
+    }
+
+    /**
+     * Append the counts recorded since the last flush, compacting the file when it has grown
+     */
+    public synchronized void flush() throws IOException {
+        if (fileLines > (long) COMPACT_LINES_PER_QUERY * counts.size() + maxQueries / 10
+            || counts.size() >= maxQueries) {
+            compact();
+            return;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (String key : new ArrayList<>(pending.keySet())) {
+                Long delta = pending.remove(key);
+                if (delta != null) {
+                    writer.write(delta + " " + key);
+                    writer.newLine();
+                    fileLines++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Rewrite the file with one line per query, keeping three quarters of the
+     * maximum so new queries can be counted again
+     */
+    private void compact() throws IOException {
+        pending.clear();
+        List<Map.Entry<String, Long>> sorted = new ArrayList<>(counts.entrySet());
+        sorted.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()));
+        int keep = counts.size() >= maxQueries ? Math.max(1, maxQueries * 3 / 4) : sorted.size();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < sorted.size(); i++) {
+                Map.Entry<String, Long> entry = sorted.get(i);
+                if (i < keep) {
+                    writer.write(entry.getValue() + " " + entry.getKey());
+                    writer.newLine();
+                } else {
+                    counts.remove(entry.getKey());
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        fileLines = Math.min(keep, sorted.size());
+    }
+
+    private void load() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ", 4);
+                fileLines++;
+                if (parts.length < 4 || (!SEARCH.equals(parts[1]) && !PAGE.equals(parts[1]))) {
+                    continue;
+                }
+                try {
+                    long delta = Long.parseLong(parts[0]);
+                    Integer.parseInt(parts[2]);
+                    counts.merge(parts[1] + " " + parts[2] + " " + parts[3], delta, Long::sum);
+                } catch (NumberFormatException e) {
+                    // a torn last line after a crash
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // first start
+        }
+    }
+
+    public int size() {
+        return counts.size();
+    }
+
+    @Override
+    public String toString() {
+        return "queries=" + counts.size() + ", unflushed=" + pending.size() + ", dropped=" + dropped.get() +
+               ", fileLines=" + fileLines;
+    }
+
+    /**
+     * One logged search and how often it was asked
+     */
+    public static class Entry {
+        private final String kind;
+        private final int size;
+        private final String query;
+        private final long count;
+
+        Entry(String kind, int size, String query, long count) {
+            this.kind = kind;
+            this.size = size;
+            this.query = query;
+            this.count = count;
+        }
+
+        public String getKind() { return kind; }
+        public int getSize() { return size; }
+        public String getQuery() { return query; }
+        public long getCount() { return count; }
+    }
+}
@@ -3,15 +3,32 @@ package com.vinylsystem.server;
 import com.vinylsystem.common.*;
 import java.net.*;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * Vinyl Server that registers with directory server and handles client connections
  */
 public class VinylServer {
+    // Formats of encoded responses kept with cached search results
+    private static final String TEXT_FORMAT = "text";
+    private static final String JSON_FORMAT = "json";
+    
     private final String serverName;
     private final String serverIP;
     private final int serverPort;
@@ -19,10 +36,23 @@ public class VinylServer {
     private final int directoryTcpPort;
     private final int ttlSeconds;
     
+    // Directory heartbeats and statistics; never shares threads with client work
     private final ScheduledExecutorService scheduler;
-    private final DiscogsApiService discogsApi;
+    // Client requests, behind a bounded queue; overflow is answered BUSY
+    private final ThreadPoolExecutor workers;
+    private final DiscogsApiService discogsApi; // null when Discogs is not in the provider chain
+    private final MusicCatalogProvider catalog;
+    private final SearchResultCache searchCache;
+    private final ReleaseDetailCache releaseCache;
+    private final ReleasePrefetcher prefetcher;
+    private volatile ReleaseSearchIndex localIndex;
+    private final int defaultPageSize;
+    private final int discogsPageSize;
+    private final ParallelPageFetcher pageFetcher;
+    private QueryLog queryLog; // null when disabled or unavailable
+    private Thread cacheWarmer;
     
-    private ServerSocket serverSocket;
+    private ClientSessionLoop sessionLoop;
     private volatile boolean running = false;
     
     public VinylServer(String serverName, String serverIP, int serverPort, 
@@ -34,8 +64,87 @@ public class VinylServer {
         this.directoryTcpPort = directoryTcpPort;
         this.ttlSeconds = ttlSeconds;
         
-        this.scheduler = Executors.newScheduledThreadPool(2);
-        this.discogsApi = new DiscogsApiService();
+        this.scheduler = Executors.newScheduledThreadPool(1, namedThreads("vinyl-maintenance"));
+        int workerThreads = Math.max(1, ConfigManager.getIntConfig("server.worker.threads",
+                                                                   ProtocolConstants.DEFAULT_WORKER_THREADS));
+        this.workers = new ThreadPoolExecutor(workerThreads, workerThreads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, ConfigManager.getIntConfig("server.worker.queue",
+                                                                            ProtocolConstants.DEFAULT_WORKER_QUEUE_SIZE))),
+            namedThreads("vinyl-worker"));
+        this.searchCache = new SearchResultCache(
+            ConfigManager.getLongConfig("cache.max.bytes", ProtocolConstants.DEFAULT_CACHE_MAX_BYTES),
+            TimeUnit.SECONDS.toMillis(ConfigManager.getLongConfig("cache.ttl.seconds", ProtocolConstants.DEFAULT_CACHE_TTL_SECONDS)),
+            TimeUnit.SECONDS.toMillis(ConfigManager.getLongConfig("cache.stale.seconds", ProtocolConstants.DEFAULT_CACHE_STALE_SECONDS)));
+        this.releaseCache = new ReleaseDetailCache(
+            ConfigManager.getLongConfig("release.cache.max.bytes", ProtocolConstants.DEFAULT_RELEASE_CACHE_MAX_BYTES),
+            TimeUnit.SECONDS.toMillis(ConfigManager.getLongConfig("release.cache.ttl.seconds",
+                                                                  ProtocolConstants.DEFAULT_RELEASE_CACHE_TTL_SECONDS)));
+        List<String> providerNames = Arrays.asList(ConfigManager.getConfig("catalog.providers",
+            ProtocolConstants.DEFAULT_CATALOG_PROVIDERS).trim().toLowerCase(Locale.ROOT).split("\\s*,\\s*"));
+        // One pool fetches the pages of large searches, for the pager and for Discogs searches alike
+        this.pageFetcher = new ParallelPageFetcher(
+            ConfigManager.getIntConfig("discogs.page.parallelism", ProtocolConstants.DEFAULT_DISCOGS_PAGE_PARALLELISM),
+            ProtocolConstants.PAGE_FETCH_QUEUE_SIZE);
+        this.discogsApi = providerNames.contains("discogs") ? new DiscogsApiService(pageFetcher) : null;
+        this.catalog = buildCatalogChain(providerNames);
+        this.prefetcher = new ReleasePrefetcher(catalog, releaseCache,
+            ConfigManager.getIntConfig("prefetch.top.results", ProtocolConstants.DEFAULT_PREFETCH_TOP_RESULTS),
+            Math.max(1, ConfigManager.getIntConfig("prefetch.concurrency", ProtocolConstants.DEFAULT_PREFETCH_CONCURRENCY)),
+            ProtocolConstants.PREFETCH_QUEUE_SIZE, ProtocolConstants.PREFETCH_MIN_BUDGET);
+        this.defaultPageSize = Math.max(1, Math.min(ProtocolConstants.MAX_SEARCH_PAGE_SIZE,
+            ConfigManager.getIntConfig("search.page.size", ProtocolConstants.DEFAULT_SEARCH_PAGE_SIZE)));
+        this.discogsPageSize = Math.max(1, Math.min(ProtocolConstants.MAX_DISCOGS_PAGE_SIZE,
+            ConfigManager.getIntConfig("discogs.page.size", ProtocolConstants.DEFAULT_DISCOGS_PAGE_SIZE)));
+    }
+    
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    /**
+     * Chain the configured catalog providers in order. A "cache" entry caches
+     * everything listed after it.
+     */
+    private MusicCatalogProvider buildCatalogChain(List<String> providerNames) {
+        List<MusicCatalogProvider> providers = new ArrayList<>();
+        for (int i = providerNames.size() - 1; i >= 0; i--) {
+            String name = providerNames.get(i).trim();
+            switch (name) {
+                case "cache":
+                    if (providers.isEmpty()) {
+                        throw new IllegalArgumentException("catalog.providers: cache must be followed by another provider");
+                    }
+                    MusicCatalogProvider rest = providers.size() == 1 ? providers.get(0) : new CatalogProviderChain(providers);
+                    providers = new ArrayList<>(List.of(new CachedCatalogProvider(searchCache, releaseCache, rest)));
+                    break;
+                case "local":
+                    providers.add(0, new LocalIndexCatalogProvider(() -> localIndex));
+                    break;
+                case "replay":
+                    String directory = ConfigManager.getConfig("catalog.replay.dir", "recordings");
+                    try {
+                        providers.add(0, new ReplayCatalogProvider(Paths.get(directory),
+                            ConfigManager.getLongConfig("catalog.replay.latency.ms", 0)));
+                    } catch (IOException e) {
+                        throw new IllegalArgumentException("catalog.providers: " + e.getMessage());
+                    }
+                    break;
+                case "discogs":
+                    providers.add(0, discogsApi);
+                    break;
+                default:
+                    throw new IllegalArgumentException("catalog.providers: unknown provider '" + name + "'");
+            }
+        }
+        if (providers.isEmpty()) {
+            throw new IllegalArgumentException("catalog.providers: no providers configured");
+        }
+        return new CatalogProviderChain(providers);
     }
     
     public VinylServer(String serverName, String serverIP, int serverPort) {
@@ -64,20 +173,48 @@ public class VinylServer {
         System.out.println("Server IP: " + serverIP + ":" + serverPort);
         System.out.println("Directory: " + directoryIP + ":" + directoryTcpPort);
         
-        // Start server socket
-        serverSocket = new ServerSocket(serverPort);
+        // Open the client port; connections are accepted once everything is set up
+        sessionLoop = new ClientSessionLoop(serverPort, workers, this::handleRequest,
+            ConfigManager.getIntConfig("server.max.line.length", ProtocolConstants.DEFAULT_MAX_REQUEST_LINE),
+            ConfigManager.getLongConfig("server.idle.timeout.ms", ProtocolConstants.DEFAULT_IDLE_TIMEOUT_MS),
+            ConfigManager.getIntConfig("server.write.high.watermark", ProtocolConstants.DEFAULT_WRITE_HIGH_WATERMARK),
+            ConfigManager.getIntConfig("server.write.low.watermark", ProtocolConstants.DEFAULT_WRITE_LOW_WATERMARK),
+            ConfigManager.getIntConfig("server.max.connections", ProtocolConstants.DEFAULT_MAX_CONNECTIONS));
         running = true;
         
         // Register with directory
         if (!registerWithDirectory()) {
+            // Release the port so a retry or another server can bind it
+            running = false;
+            sessionLoop.stop();
+            sessionLoop = null;
             throw new IOException("Failed to register with directory server");
         }
         
         // Schedule TTL refresh
         scheduleTTLRefresh();
         
+        // Set up the shared HTTP client before the first search needs it
+        scheduler.submit(HttpClient::warmUp);
+        
+        // Attach the off-heap and persistent cache tiers
+        openOffHeapCache();
+        openDiskCache();
+        
+        System.out.println("Catalog providers: " + catalog.getName());
+        
+        // Replay popular searches from earlier runs in the background
+        openQueryLog();
+        startCacheWarming();
+        
+        // Index the local catalog in the background; Discogs answers until it is ready
+        loadLocalCatalog();
+        
+        // Report cache effectiveness periodically
+        scheduleCacheStats();
+        
         // Start accepting client connections
-        startClientListener();
+        sessionLoop.start();
         
         System.out.println("Vinyl Server started successfully");
     }
@@ -89,13 +226,19 @@ public class VinylServer {
         System.out.println("Stopping Vinyl Server: " + serverName);
         running = false;
         
-        try {
-            if (serverSocket != null && !serverSocket.isClosed()) {
-                serverSocket.close();
-            }
-        } catch (IOException e) {
-            System.err.println("Error closing server socket: " + e.getMessage());
+        if (sessionLoop != null) {
+            sessionLoop.stop();
         }
+        workers.shutdownNow();
+        pageFetcher.shutdown();
+        prefetcher.shutdown();
+        if (cacheWarmer != null) {
+            cacheWarmer.interrupt();
+        }
+        flushQueryLog();
+        System.out.println("Search cache: " + searchCache.stats());
+        System.out.println("Release cache: " + releaseCache.stats());
+        searchCache.close();
         
         scheduler.shutdown();
         try {
@@ -199,106 +342,616 @@ public class VinylServer {
     }
     
     /**
-     * Start listening for client connections
+     * Create the off-heap search cache tier if a size is configured
+     */
+    private void openOffHeapCache() {
+        long maxBytes = ConfigManager.getLongConfig("cache.offheap.max.bytes", ProtocolConstants.DEFAULT_OFFHEAP_CACHE_MAX_BYTES);
+        if (maxBytes <= 0) {
+            return;
+        }
+        OffHeapCacheStore store = new OffHeapCacheStore(maxBytes,
+            ConfigManager.getLongConfig("cache.offheap.slab.bytes", ProtocolConstants.DEFAULT_OFFHEAP_SLAB_BYTES));
+        searchCache.setOffHeapStore(store,
+            TimeUnit.SECONDS.toMillis(ConfigManager.getLongConfig("cache.ttl.seconds", ProtocolConstants.DEFAULT_CACHE_TTL_SECONDS)));
+        System.out.println("Off-heap search cache: " + (maxBytes / (1024 * 1024)) + " MB");
+    }
+    
+    /**
+     * Open the on-disk cache tier unless disabled; the server still runs without it
+     */
+    private void openDiskCache() {
+        if (!ConfigManager.getBooleanConfig("cache.disk.enabled", true)) {
+            return;
+        }
+        String directory = ConfigManager.getConfig("cache.disk.dir", "cache/" + serverName);
+        try {
+            DiskCacheStore store = DiskCacheStore.open(Paths.get(directory),
+                ConfigManager.getLongConfig("cache.disk.segment.bytes", ProtocolConstants.DEFAULT_DISK_SEGMENT_BYTES),
+                ProtocolConstants.DISK_COMPACTION_INTERVAL_SECONDS);
+            long diskTtlMillis = TimeUnit.SECONDS.toMillis(
+                ConfigManager.getLongConfig("cache.disk.ttl.seconds", ProtocolConstants.DEFAULT_DISK_CACHE_TTL_SECONDS));
+            searchCache.setDiskStore(store, diskTtlMillis);
+            releaseCache.setDiskStore(store, diskTtlMillis);
+        } catch (IOException e) {
+            System.err.println("Disk cache unavailable (" + directory + "): " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Open the query log unless disabled, and flush it periodically; the server still runs without it
+     */
+    private void openQueryLog() {
+        if (!ConfigManager.getBooleanConfig("query.log.enabled", true)) {
+            return;
+        }
+        String file = ConfigManager.getConfig("query.log.file", "cache/" + serverName + "/queries.log");
+        try {
+            queryLog = QueryLog.open(Paths.get(file),
+                ConfigManager.getIntConfig("query.log.max.queries", ProtocolConstants.DEFAULT_QUERY_LOG_MAX_QUERIES));
+            System.out.println("Query log " + file + ": " + queryLog);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Query log unavailable (" + file + "): " + e.getMessage());
+            return;
+        }
+        scheduler.scheduleAtFixedRate(this::flushQueryLog, ProtocolConstants.QUERY_LOG_FLUSH_SECONDS,
+                                      ProtocolConstants.QUERY_LOG_FLUSH_SECONDS, TimeUnit.SECONDS);
+    }
+    
+    private void flushQueryLog() {
+        if (queryLog == null) {
+            return;
+        }
+        try {
+            queryLog.flush();
+        } catch (IOException e) {
+            System.err.println("Could not write query log: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Re-run the most frequent logged searches through the catalog chain on a background
+     * thread, so they are cache hits again soon after a restart. Searches are spaced by
+     * the warm interval and wait while the Discogs budget is below the prefetch minimum.
      */
-    private void startClientListener() {
-        scheduler.submit(() -> {
-            while (running) {
+    private void startCacheWarming() {
+        int topQueries = ConfigManager.getIntConfig("cache.warm.top.queries", ProtocolConstants.DEFAULT_CACHE_WARM_TOP_QUERIES);
+        if (queryLog == null || topQueries <= 0) {
+            return;
+        }
+        List<QueryLog.Entry> queries = queryLog.top(topQueries);
+        if (queries.isEmpty()) {
+            return;
+        }
+        long intervalMillis = Math.max(0, ConfigManager.getLongConfig("cache.warm.interval.ms",
+                                                                      ProtocolConstants.DEFAULT_CACHE_WARM_INTERVAL_MS));
+        cacheWarmer = namedThreads("cache-warm").newThread(() -> warmCache(queries, intervalMillis));
+        cacheWarmer.start();
+    }
+    
+    private void warmCache(List<QueryLog.Entry> queries, long intervalMillis) {
+        long start = System.nanoTime();
+        int warmed = 0;
+        int failed = 0;
+        try {
+            for (QueryLog.Entry entry : queries) {
+                while (catalog.getAvailableRequests() < ProtocolConstants.PREFETCH_MIN_BUDGET) {
+                    Thread.sleep(Math.max(intervalMillis, 100));
+                }
                 try {
-                    Socket clientSocket = serverSocket.accept();
-                    scheduler.submit(() -> handleClient(clientSocket));
-                } catch (IOException e) {
-                    if (running) {
-                        System.err.println("Error accepting client connection: " + e.getMessage());
+                    if (QueryLog.PAGE.equals(entry.getKind())) {
+                        catalog.searchReleasesPage(entry.getQuery(), 1, entry.getSize(),
+                                                   DiscogsRateLimiter.Priority.BACKGROUND, release -> { });
+                    } else {
+                        catalog.searchReleaseResults(entry.getQuery(), entry.getSize(),
+                                                     DiscogsRateLimiter.Priority.BACKGROUND);
                     }
+                    warmed++;
+                } catch (IOException | RuntimeException e) {
+                    failed++;
+                    System.err.println("Cache warm-up of '" + entry.getQuery() + "' failed: " + e.getMessage());
                 }
+                Thread.sleep(intervalMillis);
             }
-        });
+        } catch (InterruptedException e) {
+            return; // server stopping
+        }
+        System.out.printf("Cache warm-up: %d of %d searches in %.1f s (%d failed)%n",
+                          warmed, queries.size(), (System.nanoTime() - start) / 1e9, failed);
     }
     
     /**
-     * Handle client connection
+     * Build the local search index from the configured catalog file, if any
      */
-    private void handleClient(Socket clientSocket) {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-             PrintWriter writer = new PrintWriter(clientSocket.getOutputStream(), true)) {
-            
-            clientSocket.setSoTimeout(ProtocolConstants.SOCKET_TIMEOUT);
-            
-            System.out.println("Client connected: " + clientSocket.getRemoteSocketAddress());
-            
-            String request;
-            while ((request = reader.readLine()) != null && running) {
-                System.out.println("Client request: " + request);
-                
-                String response = handleMusicRequest(request);
-                writer.println(response);
-                
-                System.out.println("Client response: " + response);
-            }
-            
-        } catch (IOException e) {
-            System.err.println("Error handling client: " + e.getMessage());
-        } finally {
+    private void loadLocalCatalog() {
+        String catalogFile = ConfigManager.getConfig("catalog.file", null);
+        if (catalogFile == null) {
+            return;
+        }
+        Thread loader = new Thread(() -> {
             try {
-                clientSocket.close();
-                System.out.println("Client disconnected");
-            } catch (IOException e) {
-                System.err.println("Error closing client socket: " + e.getMessage());
+                long start = System.nanoTime();
+                localIndex = ReleaseSearchIndex.fromCatalog(Paths.get(catalogFile));
+                System.out.printf("Local catalog indexed in %.1f s: %s%n",
+                                  (System.nanoTime() - start) / 1e9, localIndex);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Could not load local catalog " + catalogFile + ": " + e.getMessage());
+            }
+        }, "catalog-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+    
+    /**
+     * Schedule periodic search cache statistics
+     */
+    private void scheduleCacheStats() {
+        scheduler.scheduleAtFixedRate(() -> {
+            System.out.println("Search cache: " + searchCache.stats() + ", staleHits=" + searchCache.getStaleHits());
+            String offHeapStats = searchCache.offHeapStats();
+            if (offHeapStats != null) {
+                System.out.println("Off-heap cache: " + offHeapStats);
+            }
+            String diskStats = searchCache.diskStats();
+            if (diskStats != null) {
+                System.out.println("Disk cache: " + diskStats);
+            }
+            System.out.println("Release cache: " + releaseCache.stats() + ", diskHits=" + releaseCache.getDiskHits());
+            System.out.println("Release prefetch: " + prefetcher);
+            System.out.println("Query canonicalizer: " + QueryCanonicalizer.getDefault());
+            if (queryLog != null) {
+                System.out.println("Query log: " + queryLog);
             }
+            System.out.println("Workers: active=" + workers.getActiveCount() + "/" + workers.getMaximumPoolSize() +
+                               ", queued=" + workers.getQueue().size() + ", completed=" + workers.getCompletedTaskCount());
+            System.out.println("Client sessions: " + sessionLoop);
+            if (discogsApi != null) {
+                System.out.println("Discogs requests coalesced: " + discogsApi.getCoalescedRequestCount());
+                System.out.println("Discogs rate limiter: " + discogsApi.getRateLimiterStatus());
+                System.out.println("Discogs circuit breaker: " + discogsApi.getCircuitBreakerStatus());
+            }
+        }, ProtocolConstants.CACHE_STATS_INTERVAL_SECONDS, ProtocolConstants.CACHE_STATS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Answer one client request line; runs on a worker
+     */
+    private void handleRequest(String request, ClientSessionLoop.ResponseWriter writer) {
+        System.out.println("Client request: " + request);
+        
+        SearchQuery paged = parsePagedQuery(request);
+        if (paged != null) {
+            streamSearch(request, paged, new ResponseFraming.Stream(writer));
+            return;
         }
+        
+        ByteBuffer response = handleMusicRequest(request);
+        System.out.println("Client response: " + response.remaining() + " bytes");
+        writer.write(response);
     }
     
     /**
-     * Handle music search requests from clients
+     * Handle music search requests from clients: JSON objects are structured
+     * SEARCH_MUSIC messages, any other line is a free text search
+     * @return the framed response as it goes on the wire
      */
-    private String handleMusicRequest(String request) {
+    private ByteBuffer handleMusicRequest(String request) {
         try {
-            // For simplicity, treat all requests as simple music searches
+            if (request.trim().startsWith("{")) {
+                MusicSearchResponse response = processStructuredSearch(JsonUtils.parseMusicSearchRequest(request));
+                return encodeResponse(JSON_FORMAT, request, response.getResults(), response.isStale(),
+                                      () -> JsonUtils.toJson(response));
+            }
             return processSimpleSearch(request);
             
         } catch (Exception e) {
             System.err.println("Error processing music request: " + e.getMessage());
-            return "ERROR: Could not process music search request";
+            return encodeResponse("ERROR: Could not process music search request");
+        }
+    }
+    
+    /**
+     * The framed wire bytes of a response. A response built from cached search results is
+     * kept with them in a direct buffer, counted in the cache's memory budget, and written
+     * again without formatting or encoding while the same request hits the same cached results.
+     */
+    private static ByteBuffer encodeResponse(String format, String request, List<MusicRelease> results,
+                                             boolean stale, Supplier<String> text) {
+        if (!(results instanceof CachedReleaseList)) {
+            return encodeResponse(text.get());
+        }
+        CachedReleaseList cached = (CachedReleaseList) results;
+        String key = (stale ? format + "|stale|" : format + "|") + request;
+        ByteBuffer bytes = cached.getEncoded(key);
+        if (bytes == null) {
+            byte[] encoded = ResponseFraming.encode(text.get()).getBytes(StandardCharsets.UTF_8);
+            bytes = ByteBuffer.allocateDirect(encoded.length).put(encoded).flip();
+            cached.putEncoded(key, bytes);
         }
+        return bytes;
+    }
+    
+    private static ByteBuffer encodeResponse(String text) {
+        return ByteBuffer.wrap(ResponseFraming.encode(text).getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Dispatch a SEARCH_MUSIC message on its search type
+     */
+    private MusicSearchResponse processStructuredSearch(MusicSearchRequest request) {
+        System.out.println("Processing structured search: " + request);
+        if (!ProtocolConstants.MSG_SEARCH_MUSIC.equals(request.getMessageType())) {
+            return musicError(StatusCodes.INVALID_REQUEST, "Unsupported message type: " + request.getMessageType());
+        }
+        String query = request.getQuery();
+        if (query == null || query.isBlank()) {
+            return musicError(StatusCodes.INVALID_REQUEST, "Search query cannot be empty");
+        }
+        int limit = request.getLimit() > 0
+            ? Math.min(request.getLimit(), ProtocolConstants.MAX_SEARCH_LIMIT)
+            : ProtocolConstants.DEFAULT_SEARCH_PAGE_SIZE;
+        String searchType = request.getSearchType() != null
+            ? request.getSearchType().toLowerCase() : ProtocolConstants.SEARCH_TYPE_RELEASE;
+        
+        try {
+            switch (searchType) {
+                case ProtocolConstants.SEARCH_TYPE_RELEASE:
+                case "album":
+                    return searchReleasesStructured(query, limit);
+                    
+                case ProtocolConstants.SEARCH_TYPE_ARTIST:
+                    List<MusicArtist> artists = catalog.searchArtists(query, limit);
+                    if (artists == null) {
+                        artists = List.of();
+                    }
+                    MusicSearchResponse artistResponse = new MusicSearchResponse(
+                        ProtocolConstants.MSG_MUSIC_RESPONSE, StatusCodes.SUCCESS, null, artists.size());
+                    artistResponse.setArtists(artists);
+                    return artistResponse;
+                    
+                case ProtocolConstants.SEARCH_TYPE_RELEASE_ID:
+                    String releaseId = query.trim();
+                    if (!releaseId.chars().allMatch(Character::isDigit)) {
+                        return musicError(StatusCodes.INVALID_REQUEST, "Release ID must be numeric: " + releaseId);
+                    }
+                    MusicRelease release = catalog.getRelease(releaseId, DiscogsRateLimiter.Priority.INTERACTIVE);
+                    if (release == null) {
+                        return musicError(StatusCodes.NOT_FOUND, "Release not found: " + releaseId);
+                    }
+                    return new MusicSearchResponse(ProtocolConstants.MSG_MUSIC_RESPONSE, StatusCodes.SUCCESS,
+                                                   List.of(release), 1);
+                    
+                default:
+                    return musicError(StatusCodes.INVALID_REQUEST, "Unknown search type: " + request.getSearchType());
+            }
+        } catch (HttpStatusException e) {
+            if (e.getStatusCode() == 404) {
+                return musicError(StatusCodes.NOT_FOUND, "Not found: " + query.trim());
+            }
+            return musicError(StatusCodes.SERVER_ERROR, "Discogs request failed: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return musicError(StatusCodes.INVALID_REQUEST, e.getMessage());
+        } catch (IOException e) {
+            return musicError(StatusCodes.SERVER_ERROR, "Discogs request failed: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Release search for structured requests: local catalog first, then the cache and Discogs
+     */
+    private MusicSearchResponse searchReleasesStructured(String query, int limit) throws IOException {
+        SearchQuery parsed = SearchQuery.parse(query);
+        ReleaseSearchIndex.Result local = searchLocalCatalog(parsed, limit);
+        List<MusicRelease> results = local != null ? local.getReleases() : List.of();
+        int totalFound = local != null ? Math.max(local.getTotalMatches(), results.size()) : 0;
+        boolean stale = false;
+        if (results.isEmpty() && (local == null || !parsed.hasFilters())) {
+            DiscogsSearchResult remote = searchRemote(query, limit);
+            results = remote.getResults();
+            totalFound = results.size();
+            stale = remote.isStale();
+        }
+        prefetcher.prefetch(results);
+        MusicSearchResponse response = new MusicSearchResponse(ProtocolConstants.MSG_MUSIC_RESPONSE, StatusCodes.SUCCESS,
+                                                               results, totalFound);
+        response.setStale(stale);
+        return response;
+    }
+    
+    private static MusicSearchResponse musicError(String statusCode, String message) {
+        return new MusicSearchResponse(ProtocolConstants.MSG_MUSIC_RESPONSE, statusCode, message);
+    }
+    
+    /**
+     * Releases for a query from the catalog provider chain; may be stale while Discogs is unavailable
+     */
+    private DiscogsSearchResult searchRemote(String query, int limit) throws IOException {
+        if (queryLog != null) {
+            queryLog.record(QueryLog.SEARCH, limit, query);
+        }
+        DiscogsSearchResult result = catalog.searchReleaseResults(query, limit, DiscogsRateLimiter.Priority.INTERACTIVE);
+        return result != null ? result : new DiscogsSearchResult(List.of(), 0);
     }
     
     /**
      * Process simple text search queries
      */
-    private String processSimpleSearch(String query) {
+    private ByteBuffer processSimpleSearch(String query) {
         try {
             System.out.println("Processing simple search for: " + query);
             
-            // Search using Discogs API
-            List<MusicRelease> results = discogsApi.searchReleases(query, 3);
+            // Prefer the local catalog; serve repeated queries from the cache, otherwise search using Discogs API
+            SearchQuery parsed = SearchQuery.parse(query);
+            ReleaseSearchIndex.Result local = searchLocalCatalog(parsed, 3);
+            List<MusicRelease> results = local != null ? local.getReleases() : List.of();
+            boolean stale = false;
+            // Facet filters are only understood locally, so a filtered local miss is final
+            if (results.isEmpty() && (local == null || !parsed.hasFilters())) {
+                DiscogsSearchResult remote = searchRemote(query, 3);
+                results = remote.getResults();
+                stale = remote.isStale();
+            }
+            prefetcher.prefetch(results);
             
-            // Create a simple text response for basic clients
-            StringBuilder response = new StringBuilder();
-            response.append("Music Search Results from ").append(serverName).append(":\n");
-            response.append("Query: ").append(query).append("\n");
-            response.append("Found ").append(results.size()).append(" vinyl records:\n");
+            List<MusicRelease> found = results;
+            boolean foundStale = stale;
+            return encodeResponse(TEXT_FORMAT, query, results, stale,
+                                  () -> formatSimpleResponse(query, found, foundStale, local));
             
-            for (int i = 0; i < results.size(); i++) {
-                MusicRelease release = results.get(i);
-                response.append(String.format("%d. %s - %s (%s) [%s]\n", 
-                    i + 1,
-                    release.getArtist() != null ? release.getArtist() : "Unknown Artist",
-                    release.getTitle() != null ? release.getTitle() : "Unknown Title",
-                    release.getYear() != null ? release.getYear() : "Unknown Year",
-                    release.getFormat() != null ? release.getFormat() : "Vinyl"
-                ));
+        } catch (Exception e) {
+            return encodeResponse("Error searching for music: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * The plain text response for basic clients
+     */
+    private String formatSimpleResponse(String query, List<MusicRelease> results, boolean stale,
+                                        ReleaseSearchIndex.Result local) {
+        StringBuilder response = new StringBuilder();
+        response.append("Music Search Results from ").append(serverName).append(":\n");
+        response.append("Query: ").append(query).append("\n");
+        if (stale) {
+            response.append(ProtocolConstants.STALE_RESULTS_LINE).append("\n");
+        }
+        response.append("Found ").append(results.size()).append(" vinyl records:\n");
+        
+        for (int i = 0; i < results.size(); i++) {
+            response.append(formatResult(i + 1, results.get(i))).append("\n");
+        }
+        
+        if (results.isEmpty()) {
+            response.append("No vinyl records found for your search.\n");
+        } else if (local != null && local.getTotalMatches() >= 0) {
+            for (String line : facetCountLines(local)) {
+                response.append(line).append("\n");
+            }
+        }
+        
+        return response.toString();
+    }
+    
+    /**
+     * Format one result row: "1. Artist - Title (Year) [Format] [ID: 123]"
+     */
+    private static String formatResult(int number, MusicRelease release) {
+        return new StringBuilder(96).append(number).append(". ")
+            .append(release.getArtist() != null ? release.getArtist() : "Unknown Artist").append(" - ")
+            .append(release.getTitle() != null ? release.getTitle() : "Unknown Title").append(" (")
+            .append(release.getYear() != null ? release.getYear() : "Unknown Year").append(") [")
+            .append(release.getFormat() != null ? release.getFormat() : "Vinyl").append("] [ID: ")
+            .append(release.getId() != null ? release.getId() : "-").append(']')
+            .toString();
+    }
+    
+    /**
+     * The parsed query if the request asks for a page (limit: or cursor:), otherwise null
+     */
+    private static SearchQuery parsePagedQuery(String request) {
+        if (request.trim().startsWith("{")) {
+            return null; // structured message
+        }
+        try {
+            SearchQuery query = SearchQuery.parse(request);
+            return query.isPaged() ? query : null;
+        } catch (IllegalArgumentException e) {
+            return null; // reported by the regular search path
+        }
+    }
+    
+    /**
+     * Answer a paged search, sending every result to the client as soon as it is available.
+     * The first page picks the local catalog or Discogs, and the cursor keeps later pages
+     * on the same source. Only the Discogs pages the client page covers are fetched; after
+     * the first, they are fetched concurrently and written in order.
+     */
+    private void streamSearch(String request, SearchQuery query, ResponseFraming.Stream out) {
+        try {
+            int pageSize = Math.min(query.getPageSize() > 0 ? query.getPageSize() : defaultPageSize,
+                                    ProtocolConstants.MAX_SEARCH_LIMIT);
+            SearchCursor cursor = query.getCursor() != null
+                ? SearchCursor.decode(query.getCursor(), query.getSearchKey()) : null;
+            int offset = cursor != null ? cursor.getOffset() : 0;
+            if (offset + pageSize > ProtocolConstants.MAX_SEARCH_RESULT_WINDOW) {
+                throw new IllegalArgumentException("Results beyond " + ProtocolConstants.MAX_SEARCH_RESULT_WINDOW +
+                                                   " are not available; refine the query");
             }
             
-            if (results.isEmpty()) {
-                response.append("No vinyl records found for your search.\n");
+            ReleaseSearchIndex index = localIndex;
+            ReleaseSearchIndex.Result local = null;
+            SearchCursor.Source source;
+            if (cursor != null) {
+                source = cursor.getSource();
+                if (source == SearchCursor.Source.LOCAL && index == null) {
+                    throw new IllegalArgumentException("Invalid or expired cursor for this query");
+                }
+            } else if (index != null) {
+                local = index.search(query, offset + pageSize + 1, query.hasFilters());
+                source = !local.getHits().isEmpty() || query.hasFilters()
+                    ? SearchCursor.Source.LOCAL : SearchCursor.Source.DISCOGS;
+            } else {
+                source = SearchCursor.Source.DISCOGS;
+            }
+            if (source == SearchCursor.Source.DISCOGS && query.getText().isBlank()) {
+                throw new IllegalArgumentException("Search query cannot be empty");
             }
             
-            return response.toString();
+            out.line("Music Search Results from " + serverName + ":");
+            out.line("Query: " + request);
+            out.flush();
             
-        } catch (Exception e) {
-            return "Error searching for music: " + e.getMessage();
+            int written;
+            boolean more;
+            boolean stale = false;
+            List<MusicRelease> page;
+            if (source == SearchCursor.Source.LOCAL) {
+                if (local == null) {
+                    local = index.search(query, offset + pageSize + 1, false);
+                }
+                List<ReleaseSearchIndex.Hit> hits = local.getHits();
+                written = Math.max(0, Math.min(pageSize, hits.size() - offset));
+                page = new ArrayList<>(written);
+                for (int i = 0; i < written; i++) {
+                    MusicRelease release = hits.get(offset + i).getRelease();
+                    out.line(formatResult(offset + i + 1, release));
+                    page.add(release);
+                }
+                more = hits.size() > offset + pageSize;
+            } else {
+                DiscogsPager pager = new DiscogsPager(query.getText(), offset, pageSize, out);
+                pager.run();
+                written = pager.written;
+                more = pager.more;
+                stale = pager.stale;
+                page = pager.page;
+            }
+            prefetcher.prefetch(page);
+            if (stale) {
+                out.line(ProtocolConstants.STALE_RESULTS_LINE);
+            }
+            
+            if (written == 0) {
+                out.line("No vinyl records found for your search.");
+            } else {
+                out.line(String.format("Found %d vinyl records (results %d-%d)", written, offset + 1, offset + written));
+                if (source == SearchCursor.Source.LOCAL && local.getTotalMatches() >= 0) {
+                    facetCountLines(local).forEach(out::line);
+                }
+            }
+            if (more && offset + written < ProtocolConstants.MAX_SEARCH_RESULT_WINDOW) {
+                out.line(ProtocolConstants.NEXT_CURSOR_PREFIX +
+                         new SearchCursor(source, offset + written, query.getSearchKey()).encode());
+            }
+        } catch (IllegalArgumentException | IOException e) {
+            out.line("Error searching for music: " + e.getMessage());
+        } finally {
+            out.finish();
+        }
+    }
+    
+    /**
+     * Fetches the Discogs search pages covering a client page from a result offset,
+     * writing each release to the client in order as its page arrives. Client pages
+     * larger than the configured Discogs page use full 100-result Discogs pages.
+     */
+    private class DiscogsPager implements Consumer<MusicRelease> {
+        private final String text;
+        private final int offset;
+        private final int pageSize;
+        private final int perPage;
+        private final ResponseFraming.Stream out;
+        private int skip;
+        int written;
+        boolean more;
+        boolean stale;
+        final List<MusicRelease> page = new ArrayList<>();
+        
+        DiscogsPager(String text, int offset, int pageSize, ResponseFraming.Stream out) {
+            this.text = text;
+            this.offset = offset;
+            this.pageSize = pageSize;
+            this.perPage = pageSize > discogsPageSize ? ProtocolConstants.MAX_DISCOGS_PAGE_SIZE : discogsPageSize;
+            this.out = out;
+            this.skip = offset % perPage;
+        }
+        
+        void run() throws IOException {
+            int firstPage = offset / perPage + 1;
+            int lastPage = (offset + pageSize - 1) / perPage + 1;
+            if (offset == 0 && queryLog != null) {
+                queryLog.record(QueryLog.PAGE, perPage, text);
+            }
+            DiscogsSearchResult result;
+            try {
+                result = pageFetcher.fetch(catalog, text, firstPage, lastPage - firstPage + 1, perPage,
+                                           DiscogsRateLimiter.Priority.INTERACTIVE, this);
+            } catch (IOException e) {
+                if (written == 0) {
+                    throw e;
+                }
+                // Keep what was sent; the cursor lets the client retry the rest
+                System.err.println("Discogs search page failed after " + written + " results: " + e.getMessage());
+                more = true;
+                return;
+            }
+            if (result == null) {
+                return;
+            }
+            stale = result.isStale();
+            int fetched = result.getPage() - firstPage + 1;
+            int pages = result.getPages();
+            // A short page is the last one; otherwise trust the reported page count if there is one
+            boolean lastFetched = result.getResults().size() < fetched * perPage
+                || (pages > 0 && result.getPage() >= pages);
+            more = more || (written == pageSize && !lastFetched);
+        }
+        
+        @Override
+        public void accept(MusicRelease release) {
+            if (skip > 0) {
+                skip--;
+            } else if (written < pageSize) {
+                out.line(formatResult(offset + written + 1, release));
+                out.flush();
+                page.add(release);
+                written++;
+            } else {
+                more = true;
+            }
+        }
+    }
+    
+    /**
+     * Search the local catalog index; null if there is none.
+     * Filtered queries also count matches per facet value.
+     */
+    private ReleaseSearchIndex.Result searchLocalCatalog(SearchQuery query, int limit) {
+        ReleaseSearchIndex index = localIndex;
+        if (index == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        ReleaseSearchIndex.Result result = index.search(query, limit, query.hasFilters());
+        System.out.printf("Local catalog search: %d results in %.2f ms%n",
+                          result.getHits().size(), (System.nanoTime() - start) / 1e6);
+        return result;
+    }
+    
+    /**
+     * The match total and the most frequent values of each facet, one line each
+     */
+    private static List<String> facetCountLines(ReleaseSearchIndex.Result result) {
+        List<String> lines = new ArrayList<>();
+        lines.add("Total matches: " + result.getTotalMatches());
+        for (Map.Entry<FacetIndex.Facet, List<FacetIndex.Count>> facet : result.getFacetCounts().entrySet()) {
+            if (facet.getValue().isEmpty()) continue;
+            StringBuilder line = new StringBuilder("  ").append(facet.getKey().name().toLowerCase()).append(": ");
+            for (int i = 0; i < facet.getValue().size(); i++) {
+                if (i > 0) line.append(", ");
+                line.append(facet.getValue().get(i));
+            }
+            lines.add(line.toString());
         }
+        return lines;
     }
     
     /**